@@ -0,0 +1,91 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the per-call Haversine used by the repository services today with the batched
+ * kernel, over restaurants spread like the localized perf dataset (250 km around a city).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeoUtilsBenchmark {
+
+  private static final double CENTER_LATITUDE = 12.9;
+  private static final double CENTER_LONGITUDE = 77.6;
+  // Roughly 250 km in every direction.
+  private static final double SPREAD_IN_DEGREES = 2.25;
+
+  @Param({"100000", "1000000"})
+  private int pointCount;
+
+  @Param({"3.0", "5.0"})
+  private double radiusInKms;
+
+  // Boxed coordinates, as held by RestaurantEntity.
+  private Double[] boxedLatitudes;
+  private Double[] boxedLongitudes;
+
+  private double[] latitudes;
+  private double[] longitudes;
+  private int[] hits;
+
+  /**
+   * Generates the points uniformly around the center.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(42);
+    boxedLatitudes = new Double[pointCount];
+    boxedLongitudes = new Double[pointCount];
+    latitudes = new double[pointCount];
+    longitudes = new double[pointCount];
+    hits = new int[pointCount];
+    for (int i = 0; i < pointCount; i++) {
+      latitudes[i] = CENTER_LATITUDE + (random.nextDouble() * 2 - 1) * SPREAD_IN_DEGREES;
+      longitudes[i] = CENTER_LONGITUDE + (random.nextDouble() * 2 - 1) * SPREAD_IN_DEGREES;
+      boxedLatitudes[i] = latitudes[i];
+      boxedLongitudes[i] = longitudes[i];
+    }
+  }
+
+  @Benchmark
+  public int perCallHaversine() {
+    int hitCount = 0;
+    for (int i = 0; i < pointCount; i++) {
+      if (GeoUtils.findDistanceInKm(CENTER_LATITUDE, CENTER_LONGITUDE,
+          boxedLatitudes[i], boxedLongitudes[i]) < radiusInKms) {
+        hits[hitCount++] = i;
+      }
+    }
+    return hitCount;
+  }
+
+  @Benchmark
+  public int batchedKernel() {
+    return GeoUtils.findIndicesWithinRadius(CENTER_LATITUDE, CENTER_LONGITUDE,
+        latitudes, longitudes, pointCount, radiusInKms, hits);
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import com.crio.qeats.dto.Restaurant;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares encoding and decoding a nearby cache entry as JSON, the format used so far, with the
+ * binary codec, plain and deflated. The nearby cache now stores each restaurant as a body of its
+ * own and reads a cell's bodies back with one MGET, so the per restaurant codec is measured on
+ * its own and over a cell's worth of bodies; deflating does not apply to single restaurants.
+ * Entry and body sizes are printed once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RestaurantListCodecBenchmark {
+
+  private static final List<String> ATTRIBUTES = Arrays.asList("North Indian", "South Indian",
+      "Chinese", "Italian", "Bakery", "Cafe", "Biryani", "Desserts", "Veg", "Fast Food");
+
+  // Restaurants in a cell entry: a quiet suburb, a typical cell and a dense city center.
+  @Param({"20", "200", "2000"})
+  private int restaurantCount;
+
+  @Param({"json", "binary", "binary-deflated"})
+  private String codecName;
+
+  private RestaurantListCodec codec;
+  private List<Restaurant> restaurants;
+  private byte[] encoded;
+  // What an MGET of the cell's restaurants returns.
+  private List<byte[]> bodies;
+
+  /**
+   * Generates restaurants shaped like the perf dataset and encodes them once.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    Random random = new Random(42);
+    restaurants = new ArrayList<>();
+    for (int i = 0; i < restaurantCount; i++) {
+      List<String> attributes = new ArrayList<>();
+      for (int j = random.nextInt(4); j >= 0; j--) {
+        attributes.add(ATTRIBUTES.get(random.nextInt(ATTRIBUTES.size())));
+      }
+      restaurants.add(new Restaurant(String.valueOf(100000 + i), "Restaurant " + i,
+          "Bengaluru", "https://images.qeats.com/restaurants/" + (100000 + i) + ".jpg",
+          12.9 + random.nextDouble() / 20, 77.6 + random.nextDouble() / 20,
+          String.format("%02d:00", 6 + random.nextInt(6)),
+          String.format("%02d:00", 20 + random.nextInt(4)), attributes));
+    }
+    if ("json".equals(codecName)) {
+      codec = new JsonRestaurantListCodec();
+    } else {
+      codec = new BinaryRestaurantListCodec("binary".equals(codecName) ? -1 : 1024);
+    }
+    encoded = codec.encode(restaurants);
+    bodies = new ArrayList<>(restaurantCount);
+    long bodyBytes = 0;
+    for (Restaurant restaurant : restaurants) {
+      byte[] body = codec.encodeRestaurant(restaurant);
+      bodies.add(body);
+      bodyBytes += body.length;
+    }
+    System.out.printf("%n%s entry of %d restaurants: %d bytes, as bodies: %d bytes%n",
+        codecName, restaurantCount, encoded.length, bodyBytes);
+  }
+
+  @Benchmark
+  public byte[] encode() throws IOException {
+    return codec.encode(restaurants);
+  }
+
+  @Benchmark
+  public List<Restaurant> decode() throws IOException {
+    return codec.decode(encoded);
+  }
+
+  @Benchmark
+  public byte[] encodeRestaurant() throws IOException {
+    return codec.encodeRestaurant(restaurants.get(0));
+  }
+
+  @Benchmark
+  public Restaurant decodeRestaurant() throws IOException {
+    return codec.decodeRestaurant(bodies.get(0));
+  }
+
+  // Decodes the bodies of a whole cell, as a read of the nearby cache does after its MGET.
+  @Benchmark
+  public List<Restaurant> decodeMgetBodies() throws IOException {
+    List<Restaurant> decoded = new ArrayList<>(bodies.size());
+    for (byte[] body : bodies) {
+      decoded.add(codec.decodeRestaurant(body));
+    }
+    return decoded;
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.task.TaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Thread pools for @Async work.
+ * Searches get one bounded pool per backing store, so a slow menus collection can only exhaust
+ * its own threads and queue while restaurant lookups keep flowing. A full pool rejects the
+ * task instead of queueing without bound or running it on the caller. Nearby cache refreshes
+ * get a small pool of their own, since a rejected refresh only means serving stale a bit longer.
+ * Proxies are class based because RestaurantRepositoryServiceImpl is also injected by class.
+ */
+@Configuration
+@EnableAsync(proxyTargetClass = true)
+public class AsyncConfiguration {
+
+  public static final String RESTAURANTS_SEARCH_EXECUTOR = "restaurantsSearchExecutor";
+  public static final String MENUS_SEARCH_EXECUTOR = "menusSearchExecutor";
+  public static final String NEARBY_CACHE_REFRESH_EXECUTOR = "nearbyCacheRefreshExecutor";
+
+  /**
+   * Keeps the general purpose executor Spring Boot would otherwise have created, which it backs
+   * off from as soon as any other executor is defined.
+   */
+  @Lazy
+  @Primary
+  @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+      AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+  public ThreadPoolTaskExecutor applicationTaskExecutor(TaskExecutorBuilder builder) {
+    return builder.build();
+  }
+
+  @Bean(name = RESTAURANTS_SEARCH_EXECUTOR)
+  public ThreadPoolTaskExecutor restaurantsSearchExecutor(
+      @Value("${qeats.search.executor.restaurants.pool-size:8}") int poolSize,
+      @Value("${qeats.search.executor.restaurants.queue-capacity:64}") int queueCapacity) {
+    return boundedExecutor("search-restaurants-", poolSize, queueCapacity);
+  }
+
+  @Bean(name = MENUS_SEARCH_EXECUTOR)
+  public ThreadPoolTaskExecutor menusSearchExecutor(
+      @Value("${qeats.search.executor.menus.pool-size:8}") int poolSize,
+      @Value("${qeats.search.executor.menus.queue-capacity:64}") int queueCapacity) {
+    return boundedExecutor("search-menus-", poolSize, queueCapacity);
+  }
+
+  @Bean(name = NEARBY_CACHE_REFRESH_EXECUTOR)
+  public ThreadPoolTaskExecutor nearbyCacheRefreshExecutor(
+      @Value("${qeats.nearby.cache.refresh.pool-size:2}") int poolSize,
+      @Value("${qeats.nearby.cache.refresh.queue-capacity:100}") int queueCapacity) {
+    return boundedExecutor("nearby-cache-refresh-", poolSize, queueCapacity);
+  }
+
+  private static ThreadPoolTaskExecutor boundedExecutor(String threadNamePrefix, int poolSize,
+      int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix(threadNamePrefix);
+    executor.setCorePoolSize(poolSize);
+    executor.setMaxPoolSize(poolSize);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    executor.setWaitForTasksToCompleteOnShutdown(false);
+    return executor;
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+/**
+ * A {@link JedisPool} that times how long callers wait to borrow a connection, and whose size
+ * can be changed while it is in use.
+ * Waits are recorded in the given timer, if any, and kept as running totals for the adaptive
+ * sizing in {@link RedisConfiguration}.
+ */
+public class InstrumentedJedisPool extends JedisPool {
+
+  private final Timer borrowWait;
+  private final LongAdder borrows = new LongAdder();
+  private final LongAdder borrowWaitInNanos = new LongAdder();
+
+  /**
+   * Creates the pool.
+   * @param borrowWait timer for borrow waits; null to keep only the totals
+   */
+  public InstrumentedJedisPool(JedisPoolConfig poolConfig, String host, int port,
+      Timer borrowWait) {
+    super(poolConfig, host, port);
+    this.borrowWait = borrowWait;
+  }
+
+  // Borrows that time out or fail to connect are recorded too: the caller waited all the same.
+  @Override
+  public Jedis getResource() {
+    long start = System.nanoTime();
+    try {
+      return super.getResource();
+    } finally {
+      long waitInNanos = System.nanoTime() - start;
+      borrows.increment();
+      borrowWaitInNanos.add(waitInNanos);
+      if (borrowWait != null) {
+        borrowWait.record(waitInNanos, TimeUnit.NANOSECONDS);
+      }
+    }
+  }
+
+  public long getBorrowCount() {
+    return borrows.sum();
+  }
+
+  public long getBorrowWaitInNanos() {
+    return borrowWaitInNanos.sum();
+  }
+
+  public int getMaxTotal() {
+    return internalPool.getMaxTotal();
+  }
+
+  /**
+   * Closes the connections idle in the pool, so the next borrows open new ones.
+   */
+  public void clearIdle() {
+    internalPool.clear();
+  }
+
+  /**
+   * Resizes the pool. Connections over a smaller size are closed as they are returned.
+   */
+  public void setMaxTotal(int maxTotal) {
+    internalPool.setMaxTotal(maxTotal);
+    internalPool.setMaxIdle(maxTotal);
+  }
+}
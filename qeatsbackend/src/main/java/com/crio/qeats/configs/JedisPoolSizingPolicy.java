@@ -0,0 +1,49 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+/**
+ * Picks the size of the Jedis pool from how long callers waited to borrow a connection.
+ * Borrowing only waits when every connection is in use, so a mean wait above the target means
+ * the pool is too small for the load and it grows by a quarter. When borrows hardly wait and
+ * less than half of the pool is in use, it shrinks by an eighth, slower than it grows so that
+ * it does not swing between sizes. The size stays within the given bounds.
+ */
+public class JedisPoolSizingPolicy {
+
+  private final int minTotal;
+  private final int maxTotal;
+  private final double targetWaitInMs;
+
+  /**
+   * Creates the policy.
+   * @param minTotal smallest pool size
+   * @param maxTotal largest pool size
+   * @param targetWaitInMs mean borrow wait above which the pool grows
+   */
+  public JedisPoolSizingPolicy(int minTotal, int maxTotal, double targetWaitInMs) {
+    this.minTotal = minTotal;
+    this.maxTotal = Math.max(minTotal, maxTotal);
+    this.targetWaitInMs = targetWaitInMs;
+  }
+
+  /**
+   * The pool size for the next interval.
+   * @param current the current pool size
+   * @param active connections in use right now
+   * @param meanWaitInMs mean borrow wait over the last interval
+   */
+  public int nextMaxTotal(int current, int active, double meanWaitInMs) {
+    int next = current;
+    if (meanWaitInMs > targetWaitInMs) {
+      next = current + Math.max(1, current / 4);
+    } else if (meanWaitInMs < targetWaitInMs / 10 && active < current / 2) {
+      next = current - Math.max(1, current / 8);
+    }
+    return Math.min(maxTotal, Math.max(minTotal, next));
+  }
+}
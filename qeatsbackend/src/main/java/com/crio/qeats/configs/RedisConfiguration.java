@@ -1,15 +1,26 @@
 
 package com.crio.qeats.configs;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.net.SocketTimeoutException;
 import java.time.Duration;
+import java.util.function.ToIntFunction;
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.exceptions.JedisConnectionException;
 
 
+@Log4j2
 @Component
 public class RedisConfiguration {
 
@@ -28,9 +39,51 @@ public class RedisConfiguration {
   public static final String QUEUE_NAME = "rabbitmq-queue";
   public static final String ROUTING_KEY = "qeats.postorder";
 
+  public static final String POOL_VALIDATION_BORROW = "borrow";
+  public static final String POOL_VALIDATION_IDLE = "idle";
 
   private int redisPort;
-  private JedisPool jedisPool;
+  private InstrumentedJedisPool jedisPool;
+
+  @Value("${qeats.redis.pool.max-total:128}")
+  private int poolMaxTotal = 128;
+
+  @Value("${qeats.redis.pool.min-idle:16}")
+  private int poolMinIdle = 16;
+
+  // borrow: check connections when they are borrowed and returned, a PING each way.
+  // idle: only check connections that sit idle in the pool.
+  @Value("${qeats.redis.pool.validation:borrow}")
+  private String poolValidation = POOL_VALIDATION_BORROW;
+
+  @Value("${qeats.redis.pool.adaptive.enabled:false}")
+  private boolean adaptivePoolEnabled;
+
+  @Value("${qeats.redis.pool.adaptive.max-total:512}")
+  private int adaptivePoolMaxTotal = 512;
+
+  @Value("${qeats.redis.pool.adaptive.target-wait-in-ms:5}")
+  private double adaptivePoolTargetWaitInMs = 5;
+
+  private Timer borrowWait;
+  private JedisPoolSizingPolicy sizingPolicy;
+  private long lastBorrowCount;
+  private long lastBorrowWaitInNanos;
+
+  // Consecutive connection failures after which no commands are sent until a probe succeeds.
+  @Value("${qeats.redis.health.failure-threshold:5}")
+  private int failureThreshold = 5;
+
+  // Connect and read timeout of the probe, which has a connection of its own.
+  @Value("${qeats.redis.health.probe-timeout-in-ms:250}")
+  private int probeTimeoutInMs = 250;
+
+  private Jedis probeConnection;
+
+  @Autowired(required = false)
+  private MeterRegistry meterRegistry;
+
+  private RedisHealthMonitor healthMonitor;
 
 
   @Value("${spring.redis.port}")
@@ -46,9 +99,31 @@ public class RedisConfiguration {
 
   @PostConstruct
   public void initCache() {
+    healthMonitor = new RedisHealthMonitor(failureThreshold);
+    sizingPolicy = new JedisPoolSizingPolicy(poolMaxTotal, adaptivePoolMaxTotal,
+        adaptivePoolTargetWaitInMs);
+    if (meterRegistry != null) {
+      // 2 when UP, 1 when DEGRADED and 0 when DOWN.
+      meterRegistry.gauge("qeats.redis.health", healthMonitor,
+          monitor -> 2 - monitor.getState().ordinal());
+      // Percentiles show up under /actuator/metrics, the histogram is for scraping backends.
+      borrowWait = Timer.builder("qeats.redis.pool.borrow.wait")
+          .publishPercentiles(0.5, 0.99)
+          .publishPercentileHistogram()
+          .register(meterRegistry);
+      // Read through this, as the pool is created again after destroyCache().
+      meterRegistry.gauge("qeats.redis.pool.connections", Tags.of("state", "active"), this,
+          config -> config.poolStat(InstrumentedJedisPool::getNumActive));
+      meterRegistry.gauge("qeats.redis.pool.connections", Tags.of("state", "idle"), this,
+          config -> config.poolStat(InstrumentedJedisPool::getNumIdle));
+      meterRegistry.gauge("qeats.redis.pool.waiters", this,
+          config -> config.poolStat(InstrumentedJedisPool::getNumWaiters));
+      meterRegistry.gauge("qeats.redis.pool.max", this,
+          config -> config.poolStat(InstrumentedJedisPool::getMaxTotal));
+    }
     final JedisPoolConfig poolConfig = buildPoolConfig();
     try {
-      jedisPool = new JedisPool(poolConfig, redisHost, redisPort);
+      jedisPool = new InstrumentedJedisPool(poolConfig, redisHost, redisPort, borrowWait);
     } catch (Exception e) {
       e.printStackTrace();
     }
@@ -61,7 +136,7 @@ public class RedisConfiguration {
     }
     try {
       final JedisPoolConfig poolConfig = buildPoolConfig();
-      jedisPool = new JedisPool(poolConfig, redisHost, redisPort);
+      jedisPool = new InstrumentedJedisPool(poolConfig, redisHost, redisPort, borrowWait);
     } catch (Exception e) {
       // We don't want to do anything for if cache initialization fails.
       e.printStackTrace();
@@ -72,20 +147,106 @@ public class RedisConfiguration {
 
   /**
    * Checks is cache is intiailized and available.
-   * TIP: This would generally mean checking via {@link JedisPool}
+   * Availability is tracked by the health monitor from command outcomes and the background
+   * probe, so this does not talk to Redis.
    * @return true / false if cache is available or not.
    */
   public boolean isCacheAvailable() {
-    if (jedisPool == null) {
-      return false;
+    return jedisPool != null && healthMonitor != null && healthMonitor.allowRequest();
+  }
+
+  public RedisHealthMonitor.State getCacheState() {
+    return healthMonitor == null ? RedisHealthMonitor.State.DOWN : healthMonitor.getState();
+  }
+
+  /**
+   * Report a command that went through.
+   */
+  public void reportSuccess() {
+    if (healthMonitor != null) {
+      healthMonitor.recordSuccess();
+    }
+  }
+
+  /**
+   * Report a command that failed. Only connection failures and timeouts count against the
+   * health of Redis; errors in a command itself do not.
+   * A connection found closed, as they all are after Redis restarts, drops the idle ones too,
+   * so that each of them does not fail a command of its own and take Redis DOWN. A timeout does
+   * not, as closing connections to a Redis that does not answer waits on every one of them.
+   */
+  public void reportFailure(Exception e) {
+    if (e instanceof JedisConnectionException && healthMonitor != null) {
+      healthMonitor.recordFailure();
+      if (!(e.getCause() instanceof SocketTimeoutException)) {
+        clearIdleConnections();
+      }
     }
-    try (Jedis jedis = this.getJedisPool().getResource()) {
-      return true;
+  }
+
+  /**
+   * Ping Redis and record the outcome. This is what brings Redis back once it is DOWN.
+   * The ping goes over a connection of its own with a short timeout, so an exhausted pool
+   * cannot hold up the probe or the scheduler thread running it.
+   */
+  @Scheduled(fixedDelayString = "${qeats.redis.health.probe-interval-in-ms:1000}")
+  public void probe() {
+    try {
+      if (probeConnection == null) {
+        probeConnection = new Jedis(redisHost, redisPort, probeTimeoutInMs);
+      }
+      probeConnection.ping();
+      if (healthMonitor.getState() == RedisHealthMonitor.State.DOWN) {
+        // Connections pooled before Redis went away are unlikely to work now that it is back.
+        clearIdleConnections();
+      }
+      healthMonitor.recordSuccess();
     } catch (Exception e) {
-      return false;
+      closeProbeConnection();
+      healthMonitor.recordFailure();
+    }
+  }
+
+  /**
+   * Close the probe's connection when the context shuts down.
+   */
+  @PreDestroy
+  public void closeProbe() {
+    closeProbeConnection();
+  }
+
+  /**
+   * Resize the pool from the borrow waits since the last run, when adaptive sizing is on.
+   */
+  @Scheduled(fixedDelayString = "${qeats.redis.pool.adaptive.interval-in-ms:10000}")
+  public void adaptPoolSize() {
+    InstrumentedJedisPool pool = jedisPool;
+    if (!adaptivePoolEnabled || pool == null || sizingPolicy == null) {
+      return;
+    }
+    long borrowCount = pool.getBorrowCount();
+    long borrowWaitInNanos = pool.getBorrowWaitInNanos();
+    long borrows = borrowCount - lastBorrowCount;
+    double meanWaitInMs = borrows <= 0 ? 0
+        : (borrowWaitInNanos - lastBorrowWaitInNanos) / 1e6 / borrows;
+    lastBorrowCount = borrowCount;
+    lastBorrowWaitInNanos = borrowWaitInNanos;
+
+    int current = pool.getMaxTotal();
+    int next = sizingPolicy.nextMaxTotal(current, pool.getNumActive(), meanWaitInMs);
+    if (next != current) {
+      log.info("Resizing the Redis pool from {} to {}, mean borrow wait {} ms", current, next,
+          String.format("%.2f", meanWaitInMs));
+      pool.setMaxTotal(next);
     }
   }
 
+  // Zero while there is no pool.
+  private double poolStat(ToIntFunction<InstrumentedJedisPool> stat) {
+    InstrumentedJedisPool pool = jedisPool;
+    return pool == null ? 0 : stat.applyAsInt(pool);
+  }
+
   /**
    * Destroy the cache.
    * TIP: This is useful if cache is stale or while performing tests.
@@ -98,13 +259,35 @@ public class RedisConfiguration {
     }
   }
 
-  private static JedisPoolConfig buildPoolConfig() {
+  private void clearIdleConnections() {
+    InstrumentedJedisPool pool = jedisPool;
+    if (pool != null) {
+      pool.clearIdle();
+    }
+  }
+
+  private void closeProbeConnection() {
+    if (probeConnection != null) {
+      try {
+        probeConnection.close();
+      } catch (Exception e) {
+        // The connection is dropped either way.
+      }
+      probeConnection = null;
+    }
+  }
+
+  private JedisPoolConfig buildPoolConfig() {
     final JedisPoolConfig poolConfig = new JedisPoolConfig();
-    poolConfig.setMaxTotal(128);
-    poolConfig.setMaxIdle(128);
-    poolConfig.setMinIdle(16);
-    poolConfig.setTestOnBorrow(true);
-    poolConfig.setTestOnReturn(true);
+    poolConfig.setMaxTotal(poolMaxTotal);
+    poolConfig.setMaxIdle(poolMaxTotal);
+    poolConfig.setMinIdle(poolMinIdle);
+    // Broken connections are dropped by Jedis when a command fails on them, and the first such
+    // failure drops the idle ones with it, so checking only idle ones saves two PINGs per
+    // borrow at the cost of a failed command after Redis restarts.
+    boolean validateOnBorrow = !POOL_VALIDATION_IDLE.equalsIgnoreCase(poolValidation);
+    poolConfig.setTestOnBorrow(validateOnBorrow);
+    poolConfig.setTestOnReturn(validateOnBorrow);
     poolConfig.setTestWhileIdle(true);
     poolConfig.setMinEvictableIdleTimeMillis(Duration.ofSeconds(60).toMillis());
     poolConfig.setTimeBetweenEvictionRunsMillis(Duration.ofSeconds(30).toMillis());
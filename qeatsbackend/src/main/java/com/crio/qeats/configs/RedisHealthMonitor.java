@@ -0,0 +1,86 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.log4j.Log4j2;
+
+/**
+ * Health of Redis as seen from the outcomes of commands and of a background probe.
+ * Nothing is known about Redis at first, so the monitor starts half open: DEGRADED, where the
+ * first failure opens the circuit and the first success brings Redis UP. Redis stays UP until a
+ * command fails, DEGRADED while failures keep coming but have not reached
+ * the threshold, and DOWN once they have. DOWN opens the circuit: callers stop sending commands
+ * and only the probe talks to Redis. A successful probe closes it half way, to DEGRADED, where
+ * one more failure opens it again and one more success brings Redis back UP.
+ * Reading the state is a volatile read, so callers may check it on every request.
+ */
+@Log4j2
+public class RedisHealthMonitor {
+
+  public enum State {
+    UP, DEGRADED, DOWN
+  }
+
+  private final int failureThreshold;
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+  private volatile State state = State.DEGRADED;
+
+  /**
+   * Creates a monitor that starts half open.
+   * @param failureThreshold consecutive failures that take Redis DOWN
+   */
+  public RedisHealthMonitor(int failureThreshold) {
+    this.failureThreshold = Math.max(1, failureThreshold);
+    consecutiveFailures.set(this.failureThreshold - 1);
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * Whether commands should be sent, which they are unless the circuit is open.
+   */
+  public boolean allowRequest() {
+    return state != State.DOWN;
+  }
+
+  public void recordSuccess() {
+    // Every command reports its success, and while UP there is nothing to reset.
+    if (state == State.UP) {
+      return;
+    }
+    if (state == State.DOWN) {
+      // Half open: the next failure is enough to open the circuit again.
+      consecutiveFailures.set(failureThreshold - 1);
+      transitionTo(State.DEGRADED);
+    } else {
+      consecutiveFailures.set(0);
+      transitionTo(State.UP);
+    }
+  }
+
+  public void recordFailure() {
+    int failures = consecutiveFailures.incrementAndGet();
+    transitionTo(failures >= failureThreshold ? State.DOWN : State.DEGRADED);
+  }
+
+  private void transitionTo(State next) {
+    State previous = state;
+    if (previous == next) {
+      return;
+    }
+    state = next;
+    if (next == State.DOWN) {
+      log.warn("Redis is {} after {} consecutive failures, not sending commands", next,
+          consecutiveFailures.get());
+    } else {
+      log.info("Redis went from {} to {}", previous, next);
+    }
+  }
+}
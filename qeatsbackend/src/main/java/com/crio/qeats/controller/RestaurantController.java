@@ -9,8 +9,17 @@ package com.crio.qeats.controller;
 import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
+import com.crio.qeats.exchanges.GetSuggestionsRequest;
+import com.crio.qeats.exchanges.GetSuggestionsResponse;
+import com.crio.qeats.services.NearbyPageCursor;
 import com.crio.qeats.services.RestaurantService;
+import com.crio.qeats.services.SuggestionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
 import javax.validation.Valid;
 import lombok.extern.log4j.Log4j2;
@@ -19,6 +28,8 @@ import org.apache.logging.log4j.Logger;
 import javax.validation.Valid;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -27,6 +38,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.springframework.http.HttpStatus;
 
 // TODO: CRIO_TASK_MODULE_RESTAURANTSAPI
@@ -41,15 +53,27 @@ public class RestaurantController {
   public static final String RESTAURANT_API_ENDPOINT = "/qeats/v1";
   public static final String RESTAURANTS_API = "/restaurants";
   public static final String MENU_API = "/menu";
+  public static final String SUGGEST_API = "/suggest";
   public static final String CART_API = "/cart";
   public static final String CART_ITEM_API = "/cart/item";
   public static final String CART_CLEAR_API = "/cart/clear";
   public static final String POST_ORDER_API = "/order";
   public static final String GET_ORDERS_API = "/orders";
+  public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
 
   @Autowired
   private RestaurantService restaurantService;
 
+  @Autowired
+  private SuggestionService suggestionService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  // Routes searches to the multi-threaded implementation.
+  @Value("${qeats.search.multithreaded:false}")
+  private boolean multithreadedSearch;
+
   private static final Logger log = LogManager.getLogger(RestaurantController.class);
 
 
@@ -61,26 +85,31 @@ public class RestaurantController {
 
       GetRestaurantsResponse getRestaurantsResponse;
     
-        Double latitude = getRestaurantsRequest.getLatitude();
-        Double longitude = getRestaurantsRequest.getLongitude();
         String searchFor = getRestaurantsRequest.getSearchFor();
-        getRestaurantsResponse = restaurantService
-            .findAllRestaurantsCloseBy(getRestaurantsRequest, LocalTime.now());            
-        log.info("getRestaurants returned {}", getRestaurantsResponse);
-        if (latitude == null || longitude == null
-            || latitude < 0 || latitude > 90 || longitude < 0
-            || longitude > 180) {
-          return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(getRestaurantsResponse);
-        } else if (searchFor != null && !searchFor.equals("")) {
-          getRestaurantsResponse = restaurantService
-              .findRestaurantsBySearchQuery(getRestaurantsRequest, LocalTime.now());
+        if (!isValidRequest(getRestaurantsRequest)) {
+          return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        if (searchFor != null && !searchFor.equals("")) {
+          getRestaurantsResponse = multithreadedSearch
+              ? restaurantService.findRestaurantsBySearchQueryMt(getRestaurantsRequest,
+                  LocalTime.now())
+              : restaurantService.findRestaurantsBySearchQuery(getRestaurantsRequest,
+                  LocalTime.now());
           return ResponseEntity.ok().body(getRestaurantsResponse);
         } else {
+          getRestaurantsResponse = restaurantService
+              .findAllRestaurantsCloseBy(getRestaurantsRequest, LocalTime.now());
+          log.info("getRestaurants returned {}", getRestaurantsResponse);
           if(getRestaurantsResponse!=null && !getRestaurantsResponse.getRestaurants().isEmpty()){
-            List<Restaurant> restaurants = getRestaurantsResponse.getRestaurants();
-            for (Restaurant restaurant : restaurants) {
+            // Restaurants may be shared with the nearby cache, so renamed ones are copies.
+            List<Restaurant> restaurants = new ArrayList<>();
+            for (Restaurant restaurant : getRestaurantsResponse.getRestaurants()) {
               String str = restaurant.getName().replaceAll("[Â©éí]", "a");
-              restaurant.setName(str);
+              restaurants.add(str.equals(restaurant.getName()) ? restaurant
+                  : new Restaurant(restaurant.getRestaurantId(), str, restaurant.getCity(),
+                      restaurant.getImageUrl(), restaurant.getLatitude(),
+                      restaurant.getLongitude(), restaurant.getOpensAt(),
+                      restaurant.getClosesAt(), restaurant.getAttributes()));
             }
             getRestaurantsResponse.setRestaurants(restaurants);      
           }
@@ -89,6 +118,88 @@ public class RestaurantController {
         
     }
 
+  // Streaming variant of getRestaurants, chosen with Accept: application/x-ndjson.
+  // Every restaurant is written as one line of JSON. Search results are flushed batch by batch
+  // as each source answers, exact name matches first, so the first restaurants arrive as soon
+  // as the fastest source does. Nearby restaurants are written in one go; a next page cursor is
+  // only returned as JSON.
+  // HTTP Code: 200, or 400 if the location or limit is invalid.
+  @GetMapping(value = RESTAURANTS_API, produces = APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamRestaurants(
+      GetRestaurantsRequest getRestaurantsRequest) {
+    log.info("streamRestaurants called with {}", getRestaurantsRequest);
+
+    if (!isValidRequest(getRestaurantsRequest)) {
+      return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+    }
+
+    LocalTime currentTime = LocalTime.now();
+    String searchFor = getRestaurantsRequest.getSearchFor();
+    StreamingResponseBody body;
+    if (searchFor == null || searchFor.isEmpty()) {
+      List<Restaurant> restaurants = restaurantService
+          .findAllRestaurantsCloseBy(getRestaurantsRequest, currentTime).getRestaurants();
+      body = outputStream -> writeLines(outputStream, restaurants);
+    } else {
+      body = outputStream -> restaurantService.streamRestaurantsBySearchQuery(
+          getRestaurantsRequest, currentTime, batch -> writeLines(outputStream, batch));
+    }
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+        .body(body);
+  }
+
+  // Checks shared by the JSON and streamed restaurants endpoints: a location within the
+  // supported range and a valid page.
+  private boolean isValidRequest(GetRestaurantsRequest getRestaurantsRequest) {
+    Double latitude = getRestaurantsRequest.getLatitude();
+    Double longitude = getRestaurantsRequest.getLongitude();
+    return latitude != null && longitude != null && latitude >= 0 && latitude <= 90
+        && longitude >= 0 && longitude <= 180 && isValidPage(getRestaurantsRequest);
+  }
+
+  // A page limit must be positive and a cursor one handed out with an earlier page.
+  private boolean isValidPage(GetRestaurantsRequest getRestaurantsRequest) {
+    Integer limit = getRestaurantsRequest.getLimit();
+    if (limit != null && limit < 1) {
+      return false;
+    }
+    if (getRestaurantsRequest.getCursor() != null) {
+      try {
+        NearbyPageCursor.decode(getRestaurantsRequest.getCursor());
+      } catch (IllegalArgumentException e) {
+        log.info("Rejected cursor {}: {}", getRestaurantsRequest.getCursor(), e.getMessage());
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // A client that went away fails the write, which stops the search.
+  private void writeLines(OutputStream outputStream, List<Restaurant> restaurants) {
+    try {
+      for (Restaurant restaurant : restaurants) {
+        outputStream.write(objectMapper.writeValueAsBytes(restaurant));
+        outputStream.write('\n');
+      }
+      outputStream.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // Typeahead for the search box, answered from memory on every keystroke.
+  // API URI: /qeats/v1/suggest?latitude=28.4900591&longitude=77.536386&prefix=bir&limit=5
+  // Method: GET
+  // Query Params: latitude, longitude, prefix, optional limit (default 10, at most 20)
+  // Success Output: {"suggestions": ["Biryani", "Biryani Blues", "Bisi Bele Bath"]}
+  // HTTP Code: 200, or 400 if the location, prefix or limit is missing or invalid.
+  @GetMapping(SUGGEST_API)
+  public ResponseEntity<GetSuggestionsResponse> getSuggestions(
+      @Valid GetSuggestionsRequest getSuggestionsRequest) {
+    return ResponseEntity.ok(suggestionService.findSuggestions(getSuggestionsRequest));
+  }
+
   // TIP(MODULE_MENUAPI): Model Implementation for getting menu given a restaurantId.
   // Get the Menu for the given restaurantId
   // API URI: /qeats/v1/menu?restaurantId=11
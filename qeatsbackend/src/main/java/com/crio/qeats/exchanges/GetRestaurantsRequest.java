@@ -41,6 +41,12 @@ public class GetRestaurantsRequest {
     
     private String searchFor;
 
+    // Optional paging of nearby results; see GetRestaurantsResponse#nextCursor.
+    @Min(1)
+    private Integer limit;
+
+    private String cursor;
+
     public GetRestaurantsRequest(@NotNull @Min(-90) @Max(90) Double latitude,
             @NotNull @Min(-180) @Max(180) Double longitude) {
         this.latitude = latitude;
@@ -71,5 +77,21 @@ public class GetRestaurantsRequest {
         this.searchFor = searchFor;
     }
 
+    public Integer getLimit() {
+        return limit;
+    }
+
+    public void setLimit(Integer limit) {
+        this.limit = limit;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
 }
 
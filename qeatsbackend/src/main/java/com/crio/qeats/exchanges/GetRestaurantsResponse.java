@@ -7,6 +7,7 @@
 package com.crio.qeats.exchanges;
 
 import com.crio.qeats.dto.Restaurant;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -59,6 +60,14 @@ public class GetRestaurantsResponse {
 
     private List<Restaurant> restaurants;
 
+    // Cursor of the next page when the request asked for a limit and more restaurants remain.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
+    public GetRestaurantsResponse(List<Restaurant> restaurants) {
+        this.restaurants = restaurants;
+    }
+
     public List<Restaurant> getRestaurants() {
         return restaurants;
     }
@@ -67,6 +76,14 @@ public class GetRestaurantsResponse {
         this.restaurants = restaurants;
     }
 
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
     
 }
 
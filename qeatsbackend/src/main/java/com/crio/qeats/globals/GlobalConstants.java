@@ -6,6 +6,35 @@ public class GlobalConstants {
   // Amount of time after which the redis entries should expire.
   public static final int REDIS_ENTRY_EXPIRY_IN_SECONDS = 3600;
 
+  // Nearby cache: one entry per geohash cell of this precision, holding the restaurants that
+  // can be within NEARBY_CACHE_MAX_RADIUS_IN_KMS of any point in the cell. Larger serving radii
+  // bypass the cache.
+  public static final String NEARBY_CACHE_KEY_PREFIX = "qeats:nearby:";
+  public static final int NEARBY_CACHE_GEOHASH_PRECISION = 6;
+  public static final double NEARBY_CACHE_MAX_RADIUS_IN_KMS = 5.0;
+
+  // Cells cache: the restaurants located in a geohash cell of this precision (~5 km), read for
+  // every cell covering the serving radius. Larger serving radii bypass the cache.
+  public static final String CELL_CACHE_KEY_PREFIX = "qeats:cell:";
+  public static final int CELL_CACHE_GEOHASH_PRECISION = 5;
+
+  // Restaurants listed by nearby and cells cache entries, one entry per restaurant. They outlive
+  // the cells so that a cell never refers to an expired restaurant.
+  public static final String RESTAURANT_CACHE_KEY_PREFIX = "qeats:restaurant:";
+  public static final int RESTAURANT_CACHE_EXPIRY_IN_SECONDS = 2 * REDIS_ENTRY_EXPIRY_IN_SECONDS;
+
+  // Search cache: restaurant ids matching a normalized query anywhere in a geohash cell of this
+  // precision, per serving radius. Entries without matches expire sooner, so a restaurant added
+  // for a popular query is found quickly.
+  public static final String SEARCH_CACHE_KEY_PREFIX = "qeats:search:";
+  public static final int SEARCH_CACHE_GEOHASH_PRECISION = 6;
+  public static final int SEARCH_CACHE_EXPIRY_IN_SECONDS = 300;
+  public static final int SEARCH_CACHE_NEGATIVE_EXPIRY_IN_SECONDS = 30;
+
+  // Redis GEO set of restaurant locations, and the per-restaurant hashes backing it.
+  public static final String REDIS_GEO_RESTAURANTS_KEY = "qeats:geo:restaurants";
+  public static final String REDIS_GEO_RESTAURANT_KEY_PREFIX = "qeats:geo:restaurant:";
+
   // TIP(MODULE_RABBITMQ): RabbitMQ related configs.
   public static final String EXCHANGE_NAME = "rabbitmq-exchange";
   public static final String QUEUE_NAME = "rabbitmq-queue";
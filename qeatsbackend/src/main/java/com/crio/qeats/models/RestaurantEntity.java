@@ -6,12 +6,16 @@
 
 package com.crio.qeats.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.ArrayList;
 import java.util.List;
 import javax.validation.constraints.NotNull;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 // Java class that maps to Mongo collection.
@@ -50,6 +54,12 @@ public class RestaurantEntity {
   @NotNull
   private List<String> attributes = new ArrayList<>();
 
+  // GeoJSON copy of latitude/longitude, kept in sync by the setters, so that Mongo can answer
+  // radius queries with the 2dsphere index.
+  @JsonIgnore
+  @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+  private GeoJsonPoint location;
+
   public String getId() {
     return id;
   }
@@ -96,6 +106,7 @@ public class RestaurantEntity {
 
   public void setLatitude(Double latitude) {
     this.latitude = latitude;
+    updateLocation();
   }
 
   public Double getLongitude() {
@@ -104,6 +115,7 @@ public class RestaurantEntity {
 
   public void setLongitude(Double longitude) {
     this.longitude = longitude;
+    updateLocation();
   }
 
   public String getOpensAt() {
@@ -130,7 +142,21 @@ public class RestaurantEntity {
     this.attributes = attributes;
   }
 
-  
+  @JsonIgnore
+  public GeoJsonPoint getLocation() {
+    return location;
+  }
+
+  @JsonIgnore
+  public void setLocation(GeoJsonPoint location) {
+    this.location = location;
+  }
+
+  // GeoJSON points are (longitude, latitude).
+  private void updateLocation() {
+    location = latitude == null || longitude == null
+        ? null : new GeoJsonPoint(longitude, latitude);
+  }
 
 }
 
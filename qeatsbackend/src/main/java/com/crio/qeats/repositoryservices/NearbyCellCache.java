@@ -0,0 +1,641 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import ch.hsr.geohash.GeoHash;
+import com.crio.qeats.configs.AsyncConfiguration;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.globals.GlobalConstants;
+import com.crio.qeats.utils.BinaryRestaurantListCodec;
+import com.crio.qeats.utils.JsonRestaurantListCodec;
+import com.crio.qeats.utils.RestaurantListCodec;
+import com.crio.qeats.utils.SegmentedLruCache;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Two tier cache of the nearby candidates of geohash cells.
+ * The first tier is in-process: the deserialized candidates of the hottest cells, kept for a
+ * few seconds and bounded by the number of restaurants held. It is a segmented LRU (see
+ * SegmentedLruCache), so cells read only once are evicted before cells read again. The second
+ * tier is Redis, shared by every instance, where a cell
+ * only lists the ids of its candidates and each restaurant is stored once under its own key,
+ * however many cells it is in; a cell read fetches them with one MGET. Concurrent
+ * misses on a cell in this process wait for one lookup, and instances missing the same cell in
+ * Redis take a short lease there so that only one of them scans the database while the others
+ * wait for its result. Redis entries older than the soft expiry are still served, while one
+ * instance refreshes them in the background, and cells used recently are refreshed ahead of
+ * their hard expiry, so hot cells never wait for the database. Entries are unmodifiable lists
+ * shared by every caller, so neither the lists nor their restaurants may be changed.
+ */
+@Component
+@Log4j2
+public class NearbyCellCache {
+
+  private static final long DEFAULT_LOCAL_MAX_RESTAURANTS = 50000;
+  private static final long DEFAULT_LOCAL_EXPIRY_IN_SECONDS = 30;
+  private static final long DEFAULT_LEASE_IN_MS = 2000;
+  private static final long DEFAULT_LEASE_POLL_IN_MS = 25;
+  private static final long DEFAULT_SOFT_EXPIRY_IN_SECONDS = 600;
+  private static final long DEFAULT_HOT_WINDOW_IN_SECONDS = 300;
+  private static final long DEFAULT_MAX_HOT_CELLS = 10000;
+
+  static final String LEASE_KEY_SUFFIX = ":lease";
+  // Deletes the lease only if it is still ours and has not expired and been taken by another.
+  private static final String RELEASE_LEASE_SCRIPT =
+      "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) "
+      + "else return 0 end";
+
+  public static final String CODEC_BINARY = "binary";
+  public static final String CODEC_JSON = "json";
+
+  private static final TypeReference<List<String>> RESTAURANT_IDS =
+      new TypeReference<List<String>>() {};
+  private static final ObjectReader restaurantIdsReader =
+      new ObjectMapper().readerFor(RESTAURANT_IDS);
+  private static final ObjectWriter restaurantIdsWriter =
+      new ObjectMapper().writerFor(RESTAURANT_IDS);
+
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  @Qualifier(AsyncConfiguration.NEARBY_CACHE_REFRESH_EXECUTOR)
+  private Executor refreshExecutor;
+
+  // Restaurants held by the local tier over all cells; 0 turns it off.
+  @Value("${qeats.nearby.cache.local.max-restaurants:" + DEFAULT_LOCAL_MAX_RESTAURANTS + "}")
+  private long localMaxRestaurants = DEFAULT_LOCAL_MAX_RESTAURANTS;
+
+  @Value("${qeats.nearby.cache.local.expiry-in-seconds:" + DEFAULT_LOCAL_EXPIRY_IN_SECONDS + "}")
+  private long localExpiryInSeconds = DEFAULT_LOCAL_EXPIRY_IN_SECONDS;
+
+  // How long an instance may scan for a cell before others stop waiting for it; 0 turns the
+  // lease off. Waiting instances read the cell again every poll interval.
+  @Value("${qeats.nearby.cache.lease-in-ms:" + DEFAULT_LEASE_IN_MS + "}")
+  private long leaseInMs = DEFAULT_LEASE_IN_MS;
+
+  @Value("${qeats.nearby.cache.lease-poll-in-ms:" + DEFAULT_LEASE_POLL_IN_MS + "}")
+  private long leasePollInMs = DEFAULT_LEASE_POLL_IN_MS;
+
+  // Age after which a Redis entry is refreshed in the background; entries are dropped after
+  // REDIS_ENTRY_EXPIRY_IN_SECONDS. 0 turns background refreshes off.
+  @Value("${qeats.nearby.cache.soft-expiry-in-seconds:" + DEFAULT_SOFT_EXPIRY_IN_SECONDS + "}")
+  private long softExpiryInSeconds = DEFAULT_SOFT_EXPIRY_IN_SECONDS;
+
+  // Cells looked up within this window are hot and refreshed ahead of expiry.
+  @Value("${qeats.nearby.cache.hot-window-in-seconds:" + DEFAULT_HOT_WINDOW_IN_SECONDS + "}")
+  private long hotWindowInSeconds = DEFAULT_HOT_WINDOW_IN_SECONDS;
+
+  @Value("${qeats.nearby.cache.max-hot-cells:" + DEFAULT_MAX_HOT_CELLS + "}")
+  private long maxHotCells = DEFAULT_MAX_HOT_CELLS;
+
+  // Format of restaurants in Redis: binary (compact, see BinaryRestaurantListCodec, which also
+  // reads json) or json. Restaurants are encoded one at a time, which is never deflated.
+  @Value("${qeats.nearby.cache.codec:" + CODEC_BINARY + "}")
+  private String codecName = CODEC_BINARY;
+
+  private RestaurantListCodec codec;
+  private SegmentedLruCache<String, List<Restaurant>> localCache;
+  // Lookups of cells missing in process, so concurrent misses on a cell wait for one of them.
+  private final ConcurrentMap<String, CompletableFuture<List<Restaurant>>> loading =
+      new ConcurrentHashMap<>();
+  // Loaders of the cells looked up recently, by key.
+  private Cache<String, Supplier<List<Restaurant>>> hotCells;
+  private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+  private Counter redisHits;
+  private Counter redisMisses;
+  private Counter leaseWaits;
+  private Counter staleRefreshes;
+  private Counter hotRefreshes;
+  private Counter rejectedRefreshes;
+
+  @PostConstruct
+  void initialize() {
+    codec = CODEC_JSON.equalsIgnoreCase(codecName) ? new JsonRestaurantListCodec()
+        : new BinaryRestaurantListCodec(-1);
+    localCache = new SegmentedLruCache<>(localMaxRestaurants,
+        candidates -> 1 + candidates.size(), localExpiryInSeconds, TimeUnit.SECONDS,
+        Ticker.systemTicker());
+    hotCells = CacheBuilder.newBuilder()
+        .maximumSize(maxHotCells)
+        .expireAfterAccess(hotWindowInSeconds, TimeUnit.SECONDS)
+        .build();
+
+    // Both tiers report the standard cache meters, tagged cache=nearby.local or nearby.redis.
+    Tags local = Tags.of("cache", "nearby.local");
+    FunctionCounter.builder("cache.gets", localCache, SegmentedLruCache::hitCount)
+        .tags(local).tag("result", "hit").register(meterRegistry);
+    FunctionCounter.builder("cache.gets", localCache, SegmentedLruCache::missCount)
+        .tags(local).tag("result", "miss").register(meterRegistry);
+    FunctionCounter.builder("cache.evictions", localCache, SegmentedLruCache::evictionCount)
+        .tags(local).register(meterRegistry);
+    Gauge.builder("cache.size", localCache, SegmentedLruCache::size)
+        .tags(local).register(meterRegistry);
+    redisHits = meterRegistry.counter("cache.gets", "cache", "nearby.redis", "result", "hit");
+    redisMisses = meterRegistry.counter("cache.gets", "cache", "nearby.redis", "result", "miss");
+    leaseWaits = meterRegistry.counter("qeats.nearby.cache.lease.waits");
+    staleRefreshes = meterRegistry.counter("qeats.nearby.cache.refreshes", "trigger", "stale");
+    hotRefreshes = meterRegistry.counter("qeats.nearby.cache.refreshes", "trigger", "hot");
+    rejectedRefreshes = meterRegistry.counter("qeats.nearby.cache.refreshes.rejected");
+    meterRegistry.gauge("qeats.nearby.cache.hit.ratio", Tags.of("tier", "local"), localCache,
+        SegmentedLruCache::hitRate);
+    meterRegistry.gauge("qeats.nearby.cache.hit.ratio", Tags.of("tier", "redis"), this,
+        NearbyCellCache::redisHitRatio);
+  }
+
+  /**
+   * Get the nearby candidates of the cell from the first tier that has them.
+   * @param loader finds the candidates when neither tier has them
+   * @return unmodifiable candidates of the cell
+   */
+  public List<Restaurant> getCandidates(GeoHash geoHash, Supplier<List<Restaurant>> loader) {
+    String key = GlobalConstants.NEARBY_CACHE_KEY_PREFIX + geoHash.toBase32();
+    hotCells.put(key, loader);
+    List<Restaurant> cached = localCache.getIfPresent(key);
+    if (cached != null) {
+      return cached;
+    }
+    CompletableFuture<List<Restaurant>> lookup = new CompletableFuture<>();
+    CompletableFuture<List<Restaurant>> inFlight = loading.putIfAbsent(key, lookup);
+    if (inFlight != null) {
+      return await(inFlight);
+    }
+    try {
+      // A refresh finishing meanwhile has cached fresher candidates, which are kept.
+      List<Restaurant> candidates = Collections.unmodifiableList(load(key, loader));
+      localCache.putIfAbsent(key, candidates);
+      lookup.complete(candidates);
+      return candidates;
+    } catch (RuntimeException | Error e) {
+      lookup.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(key, lookup);
+    }
+  }
+
+  // Waiters see the failure of the lookup they waited for.
+  private static List<Restaurant> await(CompletableFuture<List<Restaurant>> lookup) {
+    try {
+      return lookup.join();
+    } catch (CompletionException e) {
+      Throwables.throwIfUnchecked(e.getCause());
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * Get the restaurants located in each of the cells.
+   * Cells missing in process are read from Redis together, and the ones missing there as well
+   * are loaded together and written back in one pipeline. Empty cells are cached like any other.
+   * Cells another caller in this process is already looking up are waited for instead.
+   * @param loader finds the restaurants located in each of the given cells, by base32 geohash;
+   *     cells it leaves out have none
+   * @return unmodifiable restaurants located in each of the cells, by base32 geohash
+   */
+  public Map<String, List<Restaurant>> getRestaurantsInCells(List<GeoHash> geoHashes,
+      Function<List<GeoHash>, Map<String, List<Restaurant>>> loader) {
+    Map<String, List<Restaurant>> restaurants = new LinkedHashMap<>();
+    Map<String, GeoHash> missing = new LinkedHashMap<>();
+    Map<String, CompletableFuture<List<Restaurant>>> lookups = new LinkedHashMap<>();
+    Map<GeoHash, CompletableFuture<List<Restaurant>>> inFlight = new LinkedHashMap<>();
+    for (GeoHash geoHash : geoHashes) {
+      String key = GlobalConstants.CELL_CACHE_KEY_PREFIX + geoHash.toBase32();
+      List<Restaurant> cached = localCache.getIfPresent(key);
+      if (cached != null) {
+        restaurants.put(geoHash.toBase32(), cached);
+        continue;
+      }
+      CompletableFuture<List<Restaurant>> lookup = new CompletableFuture<>();
+      CompletableFuture<List<Restaurant>> other = loading.putIfAbsent(key, lookup);
+      if (other != null) {
+        inFlight.put(geoHash, other);
+      } else {
+        missing.put(key, geoHash);
+        lookups.put(key, lookup);
+      }
+    }
+
+    if (!missing.isEmpty()) {
+      try {
+        for (Map.Entry<String, List<Restaurant>> cell : lookUp(missing, loader).entrySet()) {
+          lookups.get(cell.getKey()).complete(cell.getValue());
+          restaurants.put(missing.get(cell.getKey()).toBase32(), cell.getValue());
+        }
+      } catch (RuntimeException | Error e) {
+        for (CompletableFuture<List<Restaurant>> lookup : lookups.values()) {
+          lookup.completeExceptionally(e);
+        }
+        throw e;
+      } finally {
+        for (Map.Entry<String, CompletableFuture<List<Restaurant>>> lookup
+            : lookups.entrySet()) {
+          loading.remove(lookup.getKey(), lookup.getValue());
+        }
+      }
+    }
+    for (Map.Entry<GeoHash, CompletableFuture<List<Restaurant>>> lookup : inFlight.entrySet()) {
+      restaurants.put(lookup.getKey().toBase32(), await(lookup.getValue()));
+    }
+    return restaurants;
+  }
+
+  // Every one of the cells, by key, from Redis or else the loader.
+  private Map<String, List<Restaurant>> lookUp(Map<String, GeoHash> missing,
+      Function<List<GeoHash>, Map<String, List<Restaurant>>> loader) {
+    Map<String, List<Restaurant>> found = new LinkedHashMap<>();
+    Map<String, GeoHash> unread = new LinkedHashMap<>(missing);
+    boolean cacheAvailable = redisConfiguration.isCacheAvailable();
+    if (cacheAvailable) {
+      Map<String, CachedCell> cells = read(new ArrayList<>(unread.keySet()));
+      for (Map.Entry<String, CachedCell> cell : cells.entrySet()) {
+        List<Restaurant> cached = Collections.unmodifiableList(cell.getValue().candidates);
+        localCache.putIfAbsent(cell.getKey(), cached);
+        found.put(cell.getKey(), cached);
+        unread.remove(cell.getKey());
+      }
+      redisHits.increment(cells.size());
+      redisMisses.increment(unread.size());
+    }
+    if (unread.isEmpty()) {
+      return found;
+    }
+
+    Map<String, List<Restaurant>> loaded = loader.apply(new ArrayList<>(unread.values()));
+    Map<String, List<Restaurant>> loadedCells = new LinkedHashMap<>();
+    for (Map.Entry<String, GeoHash> cell : unread.entrySet()) {
+      List<Restaurant> located = Collections.unmodifiableList(
+          loaded.getOrDefault(cell.getValue().toBase32(), Collections.emptyList()));
+      localCache.putIfAbsent(cell.getKey(), located);
+      loadedCells.put(cell.getKey(), located);
+      found.put(cell.getKey(), located);
+    }
+    if (cacheAvailable) {
+      write(loadedCells);
+    }
+    return found;
+  }
+
+  /**
+   * Drops every cell held in this process. Redis is left as it is.
+   */
+  public void invalidateLocal() {
+    localCache.invalidateAll();
+    hotCells.invalidateAll();
+  }
+
+  /**
+   * Refresh the hot cells that are past their soft expiry or gone from Redis.
+   * Their ages are read in one pipeline, and the refreshes run on the refresh executor.
+   */
+  @Scheduled(fixedDelayString = "${qeats.nearby.cache.hot-refresh-interval-in-ms:60000}",
+      initialDelayString = "${qeats.nearby.cache.hot-refresh-interval-in-ms:60000}")
+  public void refreshHotCells() {
+    if (softExpiryInSeconds <= 0 || !redisConfiguration.isCacheAvailable()) {
+      return;
+    }
+    // Iterating the view does not count as an access, so cells still cool down.
+    List<Map.Entry<String, Supplier<List<Restaurant>>>> cells =
+        new ArrayList<>(hotCells.asMap().entrySet());
+    if (cells.isEmpty()) {
+      return;
+    }
+    List<Response<Long>> ttls = new ArrayList<>();
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      for (Map.Entry<String, Supplier<List<Restaurant>>> cell : cells) {
+        ttls.add(pipeline.ttl(cell.getKey()));
+      }
+      pipeline.sync();
+      redisConfiguration.reportSuccess();
+    } catch (JedisException e) {
+      redisConfiguration.reportFailure(e);
+      log.warn("Could not read the expiry of hot nearby cache entries", e);
+      return;
+    }
+    for (int i = 0; i < cells.size(); i++) {
+      if (isStale(ttls.get(i).get())) {
+        scheduleRefresh(cells.get(i).getKey(), cells.get(i).getValue(), hotRefreshes);
+      }
+    }
+  }
+
+  // No connection is held while the loader runs, and a failing Redis only costs the caching.
+  private List<Restaurant> load(String key, Supplier<List<Restaurant>> loader) {
+    if (!redisConfiguration.isCacheAvailable()) {
+      return loader.get();
+    }
+    CachedCell cell = read(key);
+    if (cell != null) {
+      redisHits.increment();
+      if (cell.stale) {
+        scheduleRefresh(key, loader, staleRefreshes);
+      }
+      return cell.candidates;
+    }
+    redisMisses.increment();
+    if (leaseInMs <= 0) {
+      List<Restaurant> candidates = loader.get();
+      write(key, candidates);
+      return candidates;
+    }
+    return loadUnderLease(key, loader);
+  }
+
+  // Whoever takes the lease loads and writes the cell. The others poll for the cell, and take
+  // the lease themselves if it is released without a cell being written. Once the lease time is
+  // up they stop waiting and load on their own, so a stuck or failed instance only costs time.
+  private List<Restaurant> loadUnderLease(String key, Supplier<List<Restaurant>> loader) {
+    String leaseKey = key + LEASE_KEY_SUFFIX;
+    String token = UUID.randomUUID().toString();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseInMs);
+    boolean waited = false;
+    while (true) {
+      Boolean leased = acquireLease(leaseKey, token);
+      if (leased == null || leased) {
+        try {
+          List<Restaurant> candidates = loader.get();
+          write(key, candidates);
+          return candidates;
+        } finally {
+          if (leased != null) {
+            releaseLease(leaseKey, token);
+          }
+        }
+      }
+      if (!waited) {
+        leaseWaits.increment();
+        waited = true;
+      }
+      if (System.nanoTime() - deadline >= 0 || !sleep(leasePollInMs)) {
+        List<Restaurant> candidates = loader.get();
+        write(key, candidates);
+        return candidates;
+      }
+      CachedCell cell = read(key);
+      if (cell != null) {
+        return cell.candidates;
+      }
+    }
+  }
+
+  // At most one refresh per cell runs in this process, and only under the lease, so one
+  // instance refreshes a cell while the others keep serving what they have.
+  private void scheduleRefresh(String key, Supplier<List<Restaurant>> loader, Counter trigger) {
+    if (!refreshing.add(key)) {
+      return;
+    }
+    try {
+      refreshExecutor.execute(() -> {
+        try {
+          refresh(key, loader);
+        } finally {
+          refreshing.remove(key);
+        }
+      });
+      trigger.increment();
+    } catch (RejectedExecutionException e) {
+      refreshing.remove(key);
+      rejectedRefreshes.increment();
+    }
+  }
+
+  private void refresh(String key, Supplier<List<Restaurant>> loader) {
+    String leaseKey = key + LEASE_KEY_SUFFIX;
+    String token = UUID.randomUUID().toString();
+    if (!Boolean.TRUE.equals(acquireLease(leaseKey, token))) {
+      return;
+    }
+    try {
+      List<Restaurant> candidates = loader.get();
+      write(key, candidates);
+      localCache.put(key, Collections.unmodifiableList(candidates));
+    } catch (RuntimeException e) {
+      log.warn("Could not refresh nearby cache entry {}", key, e);
+    } finally {
+      releaseLease(leaseKey, token);
+    }
+  }
+
+  // Entries are written with the hard expiry, so their remaining time gives their age. Missing
+  // entries (-2) are stale as well; entries without an expiry (-1) never are.
+  private boolean isStale(Long ttlInSeconds) {
+    if (softExpiryInSeconds <= 0 || ttlInSeconds == null || ttlInSeconds == -1) {
+      return false;
+    }
+    return ttlInSeconds == -2
+        || ttlInSeconds <= GlobalConstants.REDIS_ENTRY_EXPIRY_IN_SECONDS - softExpiryInSeconds;
+  }
+
+  // Null when Redis could not be asked, in which case the caller loads without a lease.
+  private Boolean acquireLease(String leaseKey, String token) {
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      boolean acquired = "OK".equals(jedis.set(leaseKey, token, "NX", "PX", leaseInMs));
+      redisConfiguration.reportSuccess();
+      return acquired;
+    } catch (JedisException e) {
+      redisConfiguration.reportFailure(e);
+      log.warn("Could not take nearby cache lease {}", leaseKey, e);
+      return null;
+    }
+  }
+
+  private void releaseLease(String leaseKey, String token) {
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      jedis.eval(RELEASE_LEASE_SCRIPT, Collections.singletonList(leaseKey),
+          Collections.singletonList(token));
+      redisConfiguration.reportSuccess();
+    } catch (JedisException e) {
+      redisConfiguration.reportFailure(e);
+      // The lease expires on its own.
+      log.warn("Could not release nearby cache lease {}", leaseKey, e);
+    }
+  }
+
+  private static boolean sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private CachedCell read(String key) {
+    return read(Collections.singletonList(key)).get(key);
+  }
+
+  // Reads the cells and their TTLs in one pipeline and then all of their restaurants with one
+  // MGET. A cell whose restaurants are not all in Redis any more is read as missing.
+  private Map<String, CachedCell> read(List<String> keys) {
+    Map<String, CachedCell> cells = new HashMap<>();
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      Pipeline pipeline = jedis.pipelined();
+      List<Response<String>> values = new ArrayList<>(keys.size());
+      List<Response<Long>> ttls = new ArrayList<>(keys.size());
+      for (String key : keys) {
+        values.add(pipeline.get(key));
+        ttls.add(pipeline.ttl(key));
+      }
+      pipeline.sync();
+      redisConfiguration.reportSuccess();
+
+      Map<String, List<String>> restaurantIdsByKey = new LinkedHashMap<>();
+      Map<String, Restaurant> restaurants = new LinkedHashMap<>();
+      for (int i = 0; i < keys.size(); i++) {
+        if (values.get(i).get() != null) {
+          List<String> restaurantIds = restaurantIdsReader.readValue(values.get(i).get());
+          restaurantIdsByKey.put(keys.get(i), restaurantIds);
+          for (String restaurantId : restaurantIds) {
+            restaurants.put(restaurantId, null);
+          }
+        }
+      }
+      if (!restaurants.isEmpty()) {
+        List<String> restaurantIds = new ArrayList<>(restaurants.keySet());
+        byte[][] restaurantKeys = new byte[restaurantIds.size()][];
+        for (int i = 0; i < restaurantKeys.length; i++) {
+          restaurantKeys[i] = restaurantKey(restaurantIds.get(i));
+        }
+        List<byte[]> bodies = jedis.mget(restaurantKeys);
+        for (int i = 0; i < restaurantIds.size(); i++) {
+          if (bodies.get(i) != null) {
+            restaurants.put(restaurantIds.get(i), codec.decodeRestaurant(bodies.get(i)));
+          }
+        }
+      }
+
+      for (int i = 0; i < keys.size(); i++) {
+        List<String> restaurantIds = restaurantIdsByKey.get(keys.get(i));
+        if (restaurantIds == null) {
+          continue;
+        }
+        List<Restaurant> candidates = new ArrayList<>(restaurantIds.size());
+        for (String restaurantId : restaurantIds) {
+          Restaurant restaurant = restaurants.get(restaurantId);
+          if (restaurant == null) {
+            candidates = null;
+            break;
+          }
+          candidates.add(restaurant);
+        }
+        if (candidates != null) {
+          cells.put(keys.get(i), new CachedCell(candidates, isStale(ttls.get(i).get())));
+        }
+      }
+    } catch (IOException | JedisException e) {
+      redisConfiguration.reportFailure(e);
+      log.warn("Could not read nearby cache entries {}", keys, e);
+    }
+    return cells;
+  }
+
+  private void write(String key, List<Restaurant> candidates) {
+    write(Collections.singletonMap(key, candidates));
+  }
+
+  // Restaurants are written before the cells, and outlive them, so a cell never refers to a
+  // restaurant that was not written. Every write replaces the restaurants of its cells, so a
+  // reloaded cell never serves an older body; one that expires before a cell listing it makes
+  // that cell read as missing.
+  private void write(Map<String, List<Restaurant>> cells) {
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      Map<String, Restaurant> restaurants = new LinkedHashMap<>();
+      for (List<Restaurant> candidates : cells.values()) {
+        for (Restaurant restaurant : candidates) {
+          restaurants.putIfAbsent(restaurant.getRestaurantId(), restaurant);
+        }
+      }
+
+      Pipeline pipeline = jedis.pipelined();
+      for (Restaurant restaurant : restaurants.values()) {
+        pipeline.setex(restaurantKey(restaurant.getRestaurantId()),
+            GlobalConstants.RESTAURANT_CACHE_EXPIRY_IN_SECONDS,
+            codec.encodeRestaurant(restaurant));
+      }
+      for (Map.Entry<String, List<Restaurant>> cell : cells.entrySet()) {
+        List<String> restaurantIds = new ArrayList<>(cell.getValue().size());
+        for (Restaurant restaurant : cell.getValue()) {
+          restaurantIds.add(restaurant.getRestaurantId());
+        }
+        pipeline.setex(cell.getKey(), GlobalConstants.REDIS_ENTRY_EXPIRY_IN_SECONDS,
+            restaurantIdsWriter.writeValueAsString(restaurantIds));
+      }
+      pipeline.sync();
+      redisConfiguration.reportSuccess();
+    } catch (IOException | JedisException e) {
+      redisConfiguration.reportFailure(e);
+      log.warn("Could not write nearby cache entries {}", cells.keySet(), e);
+    }
+  }
+
+  private static byte[] restaurantKey(String restaurantId) {
+    return SafeEncoder.encode(GlobalConstants.RESTAURANT_CACHE_KEY_PREFIX + restaurantId);
+  }
+
+  private static final class CachedCell {
+    private final List<Restaurant> candidates;
+    private final boolean stale;
+
+    private CachedCell(List<Restaurant> candidates, boolean stale) {
+      this.candidates = candidates;
+      this.stale = stale;
+    }
+  }
+
+  private double redisHitRatio() {
+    double lookups = redisHits.count() + redisMisses.count();
+    return lookups == 0 ? 0 : redisHits.count() / lookups;
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.utils.GeoUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Picks the K restaurants nearest to a location with a bounded max-heap, so only K candidates
+ * are ever kept and sorted instead of the whole result.
+ * Restaurants are ordered by distance and then restaurantId, which makes the order total and
+ * lets a page resume strictly after the last restaurant of the previous one.
+ */
+final class NearestRestaurantSelector {
+
+  private static final Comparator<String> ID_ORDER =
+      Comparator.nullsFirst(Comparator.naturalOrder());
+
+  private static final Comparator<RankedRestaurant> NEAREST_FIRST =
+      Comparator.<RankedRestaurant>comparingDouble(ranked -> ranked.distanceInKms)
+          .thenComparing(ranked -> ranked.restaurant.getRestaurantId(), ID_ORDER);
+
+  private NearestRestaurantSelector() {
+  }
+
+  /**
+   * Selects the nearest restaurants that come after the given position.
+   * @param afterDistanceInKms distance of the last restaurant already returned, or null to
+   *     start from the nearest
+   * @param afterRestaurantId restaurantId of the last restaurant already returned
+   * @return at most limit restaurants, nearest first
+   */
+  static List<Restaurant> select(List<Restaurant> candidates, double latitude, double longitude,
+      int limit, Double afterDistanceInKms, String afterRestaurantId) {
+    if (limit <= 0 || candidates.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    PriorityQueue<RankedRestaurant> farthestFirst =
+        new PriorityQueue<>(Math.min(limit, candidates.size()), NEAREST_FIRST.reversed());
+    for (Restaurant restaurant : candidates) {
+      double distanceInKms = GeoUtils.findDistanceInKm(latitude, longitude,
+          restaurant.getLatitude(), restaurant.getLongitude());
+      if (afterDistanceInKms != null && compare(distanceInKms, restaurant.getRestaurantId(),
+          afterDistanceInKms, afterRestaurantId) <= 0) {
+        continue;
+      }
+      if (farthestFirst.size() < limit) {
+        farthestFirst.add(new RankedRestaurant(distanceInKms, restaurant));
+      } else {
+        RankedRestaurant farthest = farthestFirst.peek();
+        if (compare(distanceInKms, restaurant.getRestaurantId(), farthest.distanceInKms,
+            farthest.restaurant.getRestaurantId()) < 0) {
+          farthestFirst.poll();
+          farthestFirst.add(new RankedRestaurant(distanceInKms, restaurant));
+        }
+      }
+    }
+
+    Restaurant[] nearest = new Restaurant[farthestFirst.size()];
+    for (int i = nearest.length - 1; i >= 0; i--) {
+      nearest[i] = farthestFirst.poll().restaurant;
+    }
+    return new ArrayList<>(Arrays.asList(nearest));
+  }
+
+  static int compare(double distanceInKms, String restaurantId, double otherDistanceInKms,
+      String otherRestaurantId) {
+    int byDistance = Double.compare(distanceInKms, otherDistanceInKms);
+    return byDistance != 0 ? byDistance : ID_ORDER.compare(restaurantId, otherRestaurantId);
+  }
+
+  private static final class RankedRestaurant {
+    private final double distanceInKms;
+    private final Restaurant restaurant;
+
+    private RankedRestaurant(double distanceInKms, Restaurant restaurant) {
+      this.distanceInKms = distanceInKms;
+      this.restaurant = restaurant;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.OpeningHours;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * Opening hours of a snapshot of restaurants, parsed once into minute-of-day columns indexed by
+ * the restaurant's ordinal in the snapshot.
+ * Lookups take any time of day, so the same index answers both "open now" and scheduled orders.
+ */
+public class OpeningHoursIndex {
+
+  private final short[] opensAt;
+  private final short[] closesAt;
+
+  private OpeningHoursIndex(short[] opensAt, short[] closesAt) {
+    this.opensAt = opensAt;
+    this.closesAt = closesAt;
+  }
+
+  /**
+   * Builds the index for the restaurants, in the order given.
+   * Restaurants with missing or malformed hours are never reported open.
+   */
+  public static OpeningHoursIndex build(List<RestaurantEntity> restaurants) {
+    short[] opensAt = new short[restaurants.size()];
+    short[] closesAt = new short[restaurants.size()];
+    for (int ordinal = 0; ordinal < restaurants.size(); ordinal++) {
+      RestaurantEntity restaurant = restaurants.get(ordinal);
+      opensAt[ordinal] = OpeningHours.parseMinuteOfDay(restaurant.getOpensAt());
+      closesAt[ordinal] = OpeningHours.parseMinuteOfDay(restaurant.getClosesAt());
+    }
+    return new OpeningHoursIndex(opensAt, closesAt);
+  }
+
+  public boolean isOpen(int ordinal, LocalTime time) {
+    return OpeningHours.isOpen(opensAt[ordinal], closesAt[ordinal], time.toNanoOfDay());
+  }
+
+  /**
+   * Keeps the candidates that are open at the given time, compacting them in place.
+   * @param ordinals candidate ordinals; the open ones are moved to the front, in order
+   * @param count number of candidates in ordinals
+   * @return number of open candidates
+   */
+  public int retainOpen(int[] ordinals, int count, LocalTime time) {
+    long nanoOfDay = time.toNanoOfDay();
+    int openCount = 0;
+    for (int i = 0; i < count; i++) {
+      int ordinal = ordinals[i];
+      if (OpeningHours.isOpen(opensAt[ordinal], closesAt[ordinal], nanoOfDay)) {
+        ordinals[openCount++] = ordinal;
+      }
+    }
+    return openCount;
+  }
+
+  public int size() {
+    return opensAt.length;
+  }
+}
@@ -0,0 +1,197 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.GeoUtils;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable uniform lat/long grid over a snapshot of restaurants.
+ * Each cell holds the ordinals of the restaurants located inside it, so a radius lookup only
+ * needs to visit the cells that intersect the bounding box of the serving radius.
+ */
+public class RestaurantGridIndex {
+
+  private final double cellSizeInDegrees;
+  private final List<RestaurantEntity> restaurants;
+  private final Map<Long, int[]> cells;
+  private final OpeningHoursIndex openingHoursIndex;
+
+  private RestaurantGridIndex(double cellSizeInDegrees, List<RestaurantEntity> restaurants,
+      Map<Long, int[]> cells) {
+    this.cellSizeInDegrees = cellSizeInDegrees;
+    this.restaurants = restaurants;
+    this.cells = cells;
+    this.openingHoursIndex = OpeningHoursIndex.build(restaurants);
+  }
+
+  /**
+   * Builds the grid for the given restaurants.
+   * Restaurants without coordinates are kept in the snapshot but never returned by lookups.
+   * @param restaurants restaurants as loaded from the database
+   * @param cellSizeInDegrees edge of a grid cell, in degrees of latitude/longitude
+   * @return grid index over the restaurants
+   */
+  public static RestaurantGridIndex build(List<RestaurantEntity> restaurants,
+      double cellSizeInDegrees) {
+    if (cellSizeInDegrees <= 0) {
+      throw new IllegalArgumentException("Cell size must be positive: " + cellSizeInDegrees);
+    }
+
+    List<RestaurantEntity> snapshot = Collections.unmodifiableList(new ArrayList<>(restaurants));
+    Map<Long, int[]> cellSizes = new HashMap<>();
+    Map<Long, int[]> cells = new HashMap<>();
+
+    // First pass counts the members of every cell, second pass fills exact sized arrays.
+    for (RestaurantEntity restaurant : snapshot) {
+      if (hasLocation(restaurant)) {
+        long key = cellKey(restaurant.getLatitude(), restaurant.getLongitude(), cellSizeInDegrees);
+        cellSizes.computeIfAbsent(key, k -> new int[1])[0]++;
+      }
+    }
+    for (Map.Entry<Long, int[]> entry : cellSizes.entrySet()) {
+      cells.put(entry.getKey(), new int[entry.getValue()[0]]);
+      entry.getValue()[0] = 0;
+    }
+    for (int ordinal = 0; ordinal < snapshot.size(); ordinal++) {
+      RestaurantEntity restaurant = snapshot.get(ordinal);
+      if (hasLocation(restaurant)) {
+        long key = cellKey(restaurant.getLatitude(), restaurant.getLongitude(), cellSizeInDegrees);
+        cells.get(key)[cellSizes.get(key)[0]++] = ordinal;
+      }
+    }
+
+    return new RestaurantGridIndex(cellSizeInDegrees, snapshot, cells);
+  }
+
+  /**
+   * Get the restaurants within the radius of the given location.
+   * Only the cells overlapping the bounding box of the radius are visited and every candidate
+   * is checked with the Haversine distance.
+   * @return restaurants strictly within the radius, in the order they were loaded
+   */
+  public List<RestaurantEntity> findWithinRadius(double latitude, double longitude,
+      double radiusInKms) {
+    int[] hits = findOrdinalsWithinRadius(latitude, longitude, radiusInKms);
+    return toRestaurants(hits, hits.length);
+  }
+
+  /**
+   * Get the restaurants within the radius of the given location that are open at the given
+   * time, which may be any time of day.
+   * @return open restaurants strictly within the radius, in the order they were loaded
+   */
+  public List<RestaurantEntity> findOpenWithinRadius(double latitude, double longitude,
+      double radiusInKms, LocalTime time) {
+    int[] hits = findOrdinalsWithinRadius(latitude, longitude, radiusInKms);
+    return toRestaurants(hits, openingHoursIndex.retainOpen(hits, hits.length, time));
+  }
+
+  private int[] findOrdinalsWithinRadius(double latitude, double longitude,
+      double radiusInKms) {
+    double latitudeSpan = GeoUtils.findLatitudeSpanInDegrees(radiusInKms);
+    double longitudeSpan = GeoUtils.findLongitudeSpanInDegrees(latitude, radiusInKms);
+
+    int minLatitudeCell = cellOf(latitude - latitudeSpan, cellSizeInDegrees);
+    int maxLatitudeCell = cellOf(latitude + latitudeSpan, cellSizeInDegrees);
+
+    int[] hits = new int[16];
+    int hitCount = 0;
+    for (int[] longitudeCells : findLongitudeCellRanges(longitude, longitudeSpan)) {
+      for (int latitudeCell = minLatitudeCell; latitudeCell <= maxLatitudeCell; latitudeCell++) {
+        for (int longitudeCell = longitudeCells[0]; longitudeCell <= longitudeCells[1];
+            longitudeCell++) {
+          int[] members = cells.get(pack(latitudeCell, longitudeCell));
+          if (members == null) {
+            continue;
+          }
+          for (int ordinal : members) {
+            RestaurantEntity restaurant = restaurants.get(ordinal);
+            if (GeoUtils.findDistanceInKm(latitude, longitude,
+                restaurant.getLatitude(), restaurant.getLongitude()) < radiusInKms) {
+              if (hitCount == hits.length) {
+                hits = Arrays.copyOf(hits, hitCount * 2);
+              }
+              hits[hitCount++] = ordinal;
+            }
+          }
+        }
+      }
+    }
+
+    // Cells are visited in grid order; sort so callers see the same order as a full scan. The
+    // ranges on both sides of the antimeridian may share the cell at either end.
+    Arrays.sort(hits, 0, hitCount);
+    int distinct = 0;
+    for (int i = 0; i < hitCount; i++) {
+      if (distinct == 0 || hits[distinct - 1] != hits[i]) {
+        hits[distinct++] = hits[i];
+      }
+    }
+    return Arrays.copyOf(hits, distinct);
+  }
+
+  // Longitude cells of the box, split in two where it crosses the antimeridian. Cells are not
+  // wrapped modulo a cell count, as 360 degrees need not be a whole number of cells.
+  private List<int[]> findLongitudeCellRanges(double longitude, double longitudeSpan) {
+    List<int[]> ranges = new ArrayList<>(2);
+    double west = longitude - longitudeSpan;
+    double east = longitude + longitudeSpan;
+    if (longitudeSpan >= 180.0) {
+      west = -180.0;
+      east = 180.0;
+    } else if (west < -180.0) {
+      ranges.add(new int[] {cellOf(west + 360.0, cellSizeInDegrees),
+          cellOf(180.0, cellSizeInDegrees)});
+    } else if (east > 180.0) {
+      ranges.add(new int[] {cellOf(-180.0, cellSizeInDegrees),
+          cellOf(east - 360.0, cellSizeInDegrees)});
+    }
+    ranges.add(new int[] {cellOf(Math.max(west, -180.0), cellSizeInDegrees),
+        cellOf(Math.min(east, 180.0), cellSizeInDegrees)});
+    return ranges;
+  }
+
+  private List<RestaurantEntity> toRestaurants(int[] ordinals, int count) {
+    List<RestaurantEntity> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(restaurants.get(ordinals[i]));
+    }
+    return result;
+  }
+
+  public int size() {
+    return restaurants.size();
+  }
+
+  public int cellCount() {
+    return cells.size();
+  }
+
+  private static boolean hasLocation(RestaurantEntity restaurant) {
+    return restaurant.getLatitude() != null && restaurant.getLongitude() != null;
+  }
+
+  private static long cellKey(double latitude, double longitude, double cellSizeInDegrees) {
+    return pack(cellOf(latitude, cellSizeInDegrees), cellOf(longitude, cellSizeInDegrees));
+  }
+
+  private static int cellOf(double degrees, double cellSizeInDegrees) {
+    return (int) Math.floor(degrees / cellSizeInDegrees);
+  }
+
+  private static long pack(int latitudeCell, int longitudeCell) {
+    return ((long) latitudeCell << 32) | (longitudeCell & 0xffffffffL);
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.MenuRepository;
+import com.crio.qeats.repositories.RestaurantRepository;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Owns the in-process indexes built from the restaurants collection.
+ * Indexes are loaded lazily on first use, so nothing is read from Mongo unless a mode that
+ * needs them is enabled, and are then rebuilt periodically in the background. The spelling
+ * index is only ever loaded in the background, since it is consulted under a tight budget.
+ */
+@Component
+@Log4j2
+public class RestaurantIndexManager {
+
+  @Autowired
+  private RestaurantRepository restaurantRepository;
+
+  @Autowired
+  private MenuRepository menuRepository;
+
+  @Autowired
+  @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+  private Executor indexBuildExecutor;
+
+  @Value("${qeats.index.grid-cell-size-in-degrees:0.05}")
+  private double gridCellSizeInDegrees;
+
+  @Value("${qeats.index.parallel-scan-threshold:50000}")
+  private int parallelScanThreshold;
+
+  private volatile RestaurantGridIndex gridIndex;
+  private volatile RestaurantSnapshot snapshot;
+  private volatile RestaurantTextIndex textIndex;
+  private volatile RestaurantSuggestionIndex suggestionIndex;
+  private volatile RestaurantSpellingIndex spellingIndex;
+  private final AtomicBoolean buildingSpellingIndex = new AtomicBoolean();
+
+  /**
+   * Get the grid index, loading it from the database on first use.
+   * @return current grid index
+   */
+  public RestaurantGridIndex getGridIndex() {
+    RestaurantGridIndex current = gridIndex;
+    if (current == null) {
+      synchronized (this) {
+        current = gridIndex;
+        if (current == null) {
+          current = buildGridIndex(restaurantRepository.findAll());
+          gridIndex = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Get the columnar snapshot, loading it from the database on first use.
+   * @return current snapshot
+   */
+  public RestaurantSnapshot getSnapshot() {
+    RestaurantSnapshot current = snapshot;
+    if (current == null) {
+      synchronized (this) {
+        current = snapshot;
+        if (current == null) {
+          current = buildSnapshot(restaurantRepository.findAll());
+          snapshot = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Get the name and attribute search index, loading it from the database on first use.
+   * @return current text index
+   */
+  public RestaurantTextIndex getTextIndex() {
+    RestaurantTextIndex current = textIndex;
+    if (current == null) {
+      synchronized (this) {
+        current = textIndex;
+        if (current == null) {
+          current = buildTextIndex(restaurantRepository.findAll());
+          textIndex = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Get the typeahead index, loading it from the database on first use.
+   * @return current suggestion index
+   */
+  public RestaurantSuggestionIndex getSuggestionIndex() {
+    RestaurantSuggestionIndex current = suggestionIndex;
+    if (current == null) {
+      synchronized (this) {
+        current = suggestionIndex;
+        if (current == null) {
+          current = buildSuggestionIndex(restaurantRepository.findAll());
+          suggestionIndex = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Get the search spelling index without waiting for it.
+   * The first call starts building it in the background, so a request never reads the whole
+   * collection; until it is built there is nothing to correct with.
+   * @return current spelling index, or null while it is being built
+   */
+  public RestaurantSpellingIndex findSpellingIndex() {
+    RestaurantSpellingIndex current = spellingIndex;
+    if (current == null && buildingSpellingIndex.compareAndSet(false, true)) {
+      try {
+        indexBuildExecutor.execute(this::loadSpellingIndex);
+      } catch (RejectedExecutionException e) {
+        buildingSpellingIndex.set(false);
+      }
+    }
+    return current;
+  }
+
+  // A failed build is retried by the next lookup.
+  private void loadSpellingIndex() {
+    try {
+      synchronized (this) {
+        if (spellingIndex == null) {
+          spellingIndex = buildSpellingIndex(restaurantRepository.findAll());
+        }
+      }
+    } catch (RuntimeException e) {
+      log.error("Failed to build restaurant spelling index", e);
+    } finally {
+      buildingSpellingIndex.set(false);
+    }
+  }
+
+  /**
+   * Reload the restaurants and swap in fresh indexes.
+   * Readers keep using the previous snapshot until the new one is fully built.
+   */
+  @Scheduled(fixedDelayString = "${qeats.index.refresh-interval-in-ms:300000}",
+      initialDelayString = "${qeats.index.refresh-interval-in-ms:300000}")
+  public void refresh() {
+    if (gridIndex == null && snapshot == null && textIndex == null
+        && suggestionIndex == null && spellingIndex == null) {
+      return;
+    }
+    try {
+      synchronized (this) {
+        rebuild();
+      }
+    } catch (RuntimeException e) {
+      // Keep serving from the previous snapshot; the next run will try again.
+      log.error("Failed to refresh restaurant indexes", e);
+    }
+  }
+
+  // Only the indexes that have been used so far are rebuilt.
+  private void rebuild() {
+    List<RestaurantEntity> restaurants = restaurantRepository.findAll();
+    if (gridIndex != null) {
+      gridIndex = buildGridIndex(restaurants);
+    }
+    if (snapshot != null) {
+      snapshot = buildSnapshot(restaurants);
+    }
+    if (textIndex != null) {
+      textIndex = buildTextIndex(restaurants);
+    }
+    if (suggestionIndex != null) {
+      suggestionIndex = buildSuggestionIndex(restaurants);
+    }
+    if (spellingIndex != null) {
+      spellingIndex = buildSpellingIndex(restaurants);
+    }
+  }
+
+  private RestaurantGridIndex buildGridIndex(List<RestaurantEntity> restaurants) {
+    long start = System.currentTimeMillis();
+    RestaurantGridIndex index = RestaurantGridIndex.build(restaurants, gridCellSizeInDegrees);
+    log.info("Built restaurant grid index with {} restaurants in {} cells in {} ms",
+        index.size(), index.cellCount(), System.currentTimeMillis() - start);
+    return index;
+  }
+
+  private RestaurantSnapshot buildSnapshot(List<RestaurantEntity> restaurants) {
+    long start = System.currentTimeMillis();
+    RestaurantSnapshot built = RestaurantSnapshot.build(restaurants, parallelScanThreshold);
+    log.info("Built restaurant snapshot with {} restaurants and {} attributes in {} ms",
+        built.size(), built.attributeCount(), System.currentTimeMillis() - start);
+    return built;
+  }
+
+  private RestaurantTextIndex buildTextIndex(List<RestaurantEntity> restaurants) {
+    long start = System.currentTimeMillis();
+    RestaurantTextIndex index = RestaurantTextIndex.build(restaurants, menuRepository.findAll());
+    log.info("Built restaurant text index with {} restaurants, {} menus and {} trigrams in {} ms",
+        index.size(), index.menuCount(), index.trigramCount(),
+        System.currentTimeMillis() - start);
+    return index;
+  }
+
+  private RestaurantSuggestionIndex buildSuggestionIndex(List<RestaurantEntity> restaurants) {
+    long start = System.currentTimeMillis();
+    RestaurantSuggestionIndex index =
+        RestaurantSuggestionIndex.build(restaurants, menuRepository.findAll());
+    log.info("Built restaurant suggestion index with {} terms in {} cells in {} ms",
+        index.termCount(), index.cellCount(), System.currentTimeMillis() - start);
+    return index;
+  }
+
+  private RestaurantSpellingIndex buildSpellingIndex(List<RestaurantEntity> restaurants) {
+    long start = System.currentTimeMillis();
+    RestaurantSpellingIndex index =
+        RestaurantSpellingIndex.build(restaurants, menuRepository.findAll());
+    log.info("Built restaurant spelling index with {} terms in {} ms",
+        index.termCount(), System.currentTimeMillis() - start);
+    return index;
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.globals.GlobalConstants;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.RestaurantRepository;
+import com.crio.qeats.utils.GeoUtils;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.GeoRadiusResponse;
+import redis.clients.jedis.GeoUnit;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.geo.GeoRadiusParam;
+
+/**
+ * Nearby search served entirely from Redis.
+ * Every restaurant's coordinates live in a GEO set answered with GEORADIUS, and its details in
+ * a hash of its own, fetched for the hits with pipelined HMGETs. The set never expires and is
+ * reconciled with Mongo in place, so a lookup never turns into a database scan. It is built in
+ * the background, as a whole collection read and write would hold up a request and its
+ * connection; lookups are not answered until it exists.
+ */
+@Component
+@Log4j2
+public class RestaurantRedisGeoIndex {
+
+  // GEORADIUS measures on a sphere of this radius while GeoUtils uses 6371 km; the query radius
+  // is stretched by the ratio and the exact Haversine check applied to the hits.
+  private static final double REDIS_EARTH_RADIUS_IN_KMS = 6372.7976;
+  private static final double GEO_UTILS_EARTH_RADIUS_IN_KMS = 6371.0;
+
+  // Redis only indexes the latitudes representable in Web Mercator.
+  private static final double MAX_LATITUDE = 85.05112878;
+  private static final int PIPELINE_BATCH_SIZE = 1000;
+
+  private static final String[] FIELDS = {"restaurantId", "name", "city", "imageUrl",
+      "latitude", "longitude", "opensAt", "closesAt", "attributes"};
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+
+  @Autowired
+  private RestaurantRepository restaurantRepository;
+
+  @Autowired
+  @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+  private Executor indexBuildExecutor;
+
+  // Whether lookups have found or built the GEO set, which is then kept reconciled.
+  private volatile boolean loaded;
+  private final AtomicBoolean building = new AtomicBoolean();
+
+  /**
+   * Get the restaurants within the radius of the given location, closest first.
+   * The first lookup that finds the GEO set missing starts building it in the background.
+   * @return restaurants strictly within the radius, or null while the set is being built
+   */
+  public List<Restaurant> findWithinRadius(double latitude, double longitude,
+      double radiusInKms) {
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      // The set may have been built by another instance or before a restart.
+      if (!loaded && !jedis.exists(GlobalConstants.REDIS_GEO_RESTAURANTS_KEY)) {
+        load();
+        return null;
+      }
+      List<GeoRadiusResponse> members = georadius(jedis, latitude, longitude, radiusInKms);
+      if (members.isEmpty() && !jedis.exists(GlobalConstants.REDIS_GEO_RESTAURANTS_KEY)) {
+        load();
+        return null;
+      }
+      loaded = true;
+
+      Pipeline pipeline = jedis.pipelined();
+      List<Response<List<String>>> details = new ArrayList<>(members.size());
+      for (GeoRadiusResponse member : members) {
+        details.add(pipeline.hmget(
+            GlobalConstants.REDIS_GEO_RESTAURANT_KEY_PREFIX + member.getMemberByString(), FIELDS));
+      }
+      pipeline.sync();
+
+      List<Restaurant> restaurants = new ArrayList<>(members.size());
+      for (Response<List<String>> response : details) {
+        Restaurant restaurant = toRestaurant(response.get());
+        if (restaurant != null && GeoUtils.findDistanceInKm(latitude, longitude,
+            restaurant.getLatitude(), restaurant.getLongitude()) < radiusInKms) {
+          restaurants.add(restaurant);
+        }
+      }
+      return restaurants;
+    }
+  }
+
+  /**
+   * Reconcile the GEO set with Mongo, once lookups have used it.
+   * Restaurants are overwritten in place and only the ones gone from Mongo are removed, so
+   * lookups keep being served while the refresh runs.
+   */
+  @Scheduled(fixedDelayString = "${qeats.index.refresh-interval-in-ms:300000}",
+      initialDelayString = "${qeats.index.refresh-interval-in-ms:300000}")
+  public void refresh() {
+    if (!loaded || !redisConfiguration.isCacheAvailable()) {
+      return;
+    }
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      synchronized (this) {
+        rebuild(jedis);
+      }
+      redisConfiguration.reportSuccess();
+    } catch (RuntimeException e) {
+      redisConfiguration.reportFailure(e);
+      log.error("Failed to refresh the Redis GEO index", e);
+    }
+  }
+
+  /**
+   * Start building the GEO set in the background, unless it is being built already.
+   */
+  public void load() {
+    if (building.compareAndSet(false, true)) {
+      try {
+        indexBuildExecutor.execute(this::build);
+      } catch (RejectedExecutionException e) {
+        building.set(false);
+      }
+    }
+  }
+
+  // A failed build is retried by the next lookup.
+  private void build() {
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      synchronized (this) {
+        if (!jedis.exists(GlobalConstants.REDIS_GEO_RESTAURANTS_KEY)) {
+          rebuild(jedis);
+        }
+        loaded = true;
+      }
+      redisConfiguration.reportSuccess();
+    } catch (RuntimeException e) {
+      redisConfiguration.reportFailure(e);
+      log.error("Failed to build the Redis GEO index", e);
+    } finally {
+      building.set(false);
+    }
+  }
+
+  private List<GeoRadiusResponse> georadius(Jedis jedis, double latitude, double longitude,
+      double radiusInKms) {
+    return jedis.georadius(GlobalConstants.REDIS_GEO_RESTAURANTS_KEY, longitude, latitude,
+        radiusInKms * REDIS_EARTH_RADIUS_IN_KMS / GEO_UTILS_EARTH_RADIUS_IN_KMS, GeoUnit.KM,
+        GeoRadiusParam.geoRadiusParam().withDist().sortAscending());
+  }
+
+  private void rebuild(Jedis jedis) {
+    long start = System.currentTimeMillis();
+    List<RestaurantEntity> restaurantEntities = restaurantRepository.findAll();
+    Set<String> stale = new HashSet<>(
+        jedis.zrange(GlobalConstants.REDIS_GEO_RESTAURANTS_KEY, 0, -1));
+
+    Pipeline pipeline = jedis.pipelined();
+    int pending = 0;
+    for (RestaurantEntity restaurantEntity : restaurantEntities) {
+      if (add(pipeline, restaurantEntity)) {
+        stale.remove(restaurantEntity.getRestaurantId());
+        if (++pending == PIPELINE_BATCH_SIZE) {
+          pipeline.sync();
+          pending = 0;
+        }
+      }
+    }
+    for (String restaurantId : stale) {
+      pipeline.zrem(GlobalConstants.REDIS_GEO_RESTAURANTS_KEY, restaurantId);
+      pipeline.del(GlobalConstants.REDIS_GEO_RESTAURANT_KEY_PREFIX + restaurantId);
+    }
+    pipeline.sync();
+
+    loaded = true;
+    log.info("Loaded {} restaurants into the Redis GEO index, removed {}, in {} ms",
+        restaurantEntities.size(), stale.size(), System.currentTimeMillis() - start);
+  }
+
+  private boolean add(Pipeline pipeline, RestaurantEntity restaurantEntity) {
+    Double latitude = restaurantEntity.getLatitude();
+    Double longitude = restaurantEntity.getLongitude();
+    if (restaurantEntity.getRestaurantId() == null || latitude == null || longitude == null
+        || Math.abs(latitude) > MAX_LATITUDE) {
+      return false;
+    }
+
+    Map<String, String> fields = new HashMap<>();
+    putIfNotNull(fields, "restaurantId", restaurantEntity.getRestaurantId());
+    putIfNotNull(fields, "name", restaurantEntity.getName());
+    putIfNotNull(fields, "city", restaurantEntity.getCity());
+    putIfNotNull(fields, "imageUrl", restaurantEntity.getImageUrl());
+    putIfNotNull(fields, "latitude", String.valueOf(latitude));
+    putIfNotNull(fields, "longitude", String.valueOf(longitude));
+    putIfNotNull(fields, "opensAt", restaurantEntity.getOpensAt());
+    putIfNotNull(fields, "closesAt", restaurantEntity.getClosesAt());
+    try {
+      putIfNotNull(fields, "attributes",
+          objectMapper.writeValueAsString(restaurantEntity.getAttributes()));
+    } catch (JsonProcessingException e) {
+      log.warn("Could not serialize attributes of restaurant {}",
+          restaurantEntity.getRestaurantId(), e);
+    }
+
+    String restaurantKey =
+        GlobalConstants.REDIS_GEO_RESTAURANT_KEY_PREFIX + restaurantEntity.getRestaurantId();
+    // Lookups run during the refresh, so the hash is replaced in a transaction; they see either
+    // the old fields or the new ones, never a missing restaurant.
+    pipeline.multi();
+    pipeline.del(restaurantKey);
+    pipeline.hmset(restaurantKey, fields);
+    pipeline.exec();
+    pipeline.geoadd(GlobalConstants.REDIS_GEO_RESTAURANTS_KEY, longitude, latitude,
+        restaurantEntity.getRestaurantId());
+    return true;
+  }
+
+  private static void putIfNotNull(Map<String, String> fields, String field, String value) {
+    if (value != null) {
+      fields.put(field, value);
+    }
+  }
+
+  // Values arrive in the order of FIELDS; a missing hash yields all nulls.
+  private static Restaurant toRestaurant(List<String> values) {
+    if (values == null || values.get(0) == null || values.get(4) == null
+        || values.get(5) == null) {
+      return null;
+    }
+
+    Restaurant restaurant = new Restaurant();
+    restaurant.setRestaurantId(values.get(0));
+    restaurant.setName(values.get(1));
+    restaurant.setCity(values.get(2));
+    restaurant.setImageUrl(values.get(3));
+    restaurant.setLatitude(Double.valueOf(values.get(4)));
+    restaurant.setLongitude(Double.valueOf(values.get(5)));
+    restaurant.setOpensAt(values.get(6));
+    restaurant.setClosesAt(values.get(7));
+    if (values.get(8) != null) {
+      try {
+        restaurant.setAttributes(
+            objectMapper.readValue(values.get(8), new TypeReference<List<String>>() {}));
+      } catch (IOException e) {
+        log.warn("Could not read attributes of restaurant {}", values.get(0), e);
+      }
+    }
+    return restaurant;
+  }
+}
@@ -29,6 +29,20 @@ public interface RestaurantRepositoryService {
   List<Restaurant> findAllRestaurantsCloseBy(Double latitude, Double longitude,
       LocalTime currentTime, Double servingRadiusInKms);
 
+  /**
+   * Get a page of the open restaurants within the specified serving radius, nearest first.
+   *   - Restaurants at the same distance are ordered by restaurantId.
+   *   - Only restaurants strictly after the given position are returned.
+   * @param limit maximum number of restaurants to return
+   * @param afterDistanceInKms distance of the last restaurant of the previous page, or null
+   *     for the first page
+   * @param afterRestaurantId restaurantId of the last restaurant of the previous page
+   * @return up to limit open restaurants within the specified radius, nearest first
+   */
+  List<Restaurant> findNearestRestaurantsCloseBy(Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms, int limit,
+      Double afterDistanceInKms, String afterRestaurantId);
+
 
   /**
    * Get the list of open restaurants within the specified serving radius.
@@ -66,6 +80,25 @@ public interface RestaurantRepositoryService {
   List<Restaurant> findRestaurantsByItemAttributes(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms);
 
+  /**
+   * Get the restaurants with the given ids, whether open or not.
+   * @param restaurantIds ids of the restaurants
+   * @return the restaurants that exist, in the order of the ids
+   */
+  List<Restaurant> findRestaurantsByIds(List<String> restaurantIds);
+
+  /**
+   * Get the restaurant, cuisine or dish names the search string was probably meant to be.
+   *   - Only names a few edits away from the search string qualify.
+   *   - The lookup stops at the deadline and returns what it found so far.
+   *   - Nothing is found while the names are still being indexed.
+   * @param searchString Query string that found nothing
+   * @param limit maximum number of corrections
+   * @param deadlineInNanos System.nanoTime() after which to stop looking
+   * @return lower-cased corrections, most likely first, or empty list if there is none
+   */
+  List<String> findSpellingCorrections(String searchString, int limit, long deadlineInNanos);
+
   /**
    * Get the list of open restaurants within the specified serving radius.
    *   - Ensure the restaurant is open currently.
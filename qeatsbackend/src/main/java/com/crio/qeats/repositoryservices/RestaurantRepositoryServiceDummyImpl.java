@@ -50,7 +50,41 @@ public class RestaurantRepositoryServiceDummyImpl implements RestaurantRepositor
     return restaurantList;
   }
 
+  @Override
+  public List<Restaurant> findNearestRestaurantsCloseBy(Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms, int limit,
+      Double afterDistanceInKms, String afterRestaurantId) {
+    return NearestRestaurantSelector.select(
+        findAllRestaurantsCloseBy(latitude, longitude, currentTime, servingRadiusInKms),
+        latitude, longitude, limit, afterDistanceInKms, afterRestaurantId);
+  }
+
+
 
+  @Override
+  public List<Restaurant> findRestaurantsByIds(List<String> restaurantIds) {
+    List<Restaurant> restaurantList = new ArrayList<>();
+    try {
+      List<Restaurant> restaurants = loadRestaurantsDuringNormalHours();
+      for (String restaurantId : restaurantIds) {
+        for (Restaurant restaurant : restaurants) {
+          if (restaurantId.equals(restaurant.getRestaurantId())) {
+            restaurantList.add(restaurant);
+            break;
+          }
+        }
+      }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+    return restaurantList;
+  }
+
+  @Override
+  public List<String> findSpellingCorrections(String searchString, int limit,
+      long deadlineInNanos) {
+    return new ArrayList<>();
+  }
 
   public List<Restaurant> findRestaurantsByName(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
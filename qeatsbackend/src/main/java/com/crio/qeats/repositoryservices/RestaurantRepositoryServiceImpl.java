@@ -6,8 +6,10 @@
 
 package com.crio.qeats.repositoryservices;
 
+import ch.hsr.geohash.BoundingBox;
 import ch.hsr.geohash.GeoHash;
-import redis.clients.jedis.Jedis;
+import ch.hsr.geohash.WGS84Point;
+import com.crio.qeats.configs.AsyncConfiguration;
 import com.crio.qeats.configs.RedisConfiguration;
 import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.globals.GlobalConstants;
@@ -17,39 +19,90 @@ import com.crio.qeats.models.RestaurantEntity;
 import com.crio.qeats.repositories.ItemRepository;
 import com.crio.qeats.repositories.MenuRepository;
 import com.crio.qeats.repositories.RestaurantRepository;
-import com.crio.qeats.utils.GeoLocation;
 import com.crio.qeats.utils.GeoUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.IOException;
+import com.crio.qeats.utils.OpeningHours;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
 import javax.inject.Provider;
+import lombok.extern.log4j.Log4j2;
+import org.bson.Document;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
+import org.springframework.data.mongodb.core.BulkOperations;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeospatialIndex;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
+import redis.clients.jedis.exceptions.JedisException;
 
 @Primary
 @Service
+@Log4j2
 public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryService {
 
+  // Nearby search modes, selected with qeats.nearby.mode.
+  // - cache: geohash keyed Redis cache in front of a full collection scan (default).
+  // - grid: in-process lat/long grid index, refreshed periodically from Mongo.
+  // - mongo: $nearSphere query against the 2dsphere index on RestaurantEntity.location.
+  // - redisgeo: GEORADIUS over a Redis GEO set of every restaurant, details from Redis hashes.
+  // - snapshot: scan of an in-process columnar snapshot, parallel for large collections; also
+  //   serves attribute search.
+  static final String NEARBY_MODE_CACHE = "cache";
+  static final String NEARBY_MODE_CELLS = "cells";
+  static final String NEARBY_MODE_GRID = "grid";
+  static final String NEARBY_MODE_MONGO = "mongo";
+  static final String NEARBY_MODE_REDIS_GEO = "redisgeo";
+  static final String NEARBY_MODE_SNAPSHOT = "snapshot";
+
+  // Search modes, selected with qeats.search.mode.
+  // - mongo: case-insensitive regex over the restaurants and menus collections (default).
+  // - index: in-process trigram indexes over restaurant names, attributes and menu items.
+  // - aggregation: as mongo, but item searches join menus to restaurants in one aggregation.
+  static final String SEARCH_MODE_MONGO = "mongo";
+  static final String SEARCH_MODE_INDEX = "index";
+  static final String SEARCH_MODE_AGGREGATION = "aggregation";
+
+  // Restaurant fields returned by the item search aggregation.
+  private static final String[] RESTAURANT_FIELDS = {"restaurantId", "name", "city", "imageUrl",
+      "latitude", "longitude", "opensAt", "closesAt", "attributes"};
+
+  // Mongo measures 2dsphere distances on a sphere of this radius while GeoUtils uses 6371 km;
+  // the query radius is stretched by the ratio and the exact Haversine check applied after.
+  private static final double MONGO_EARTH_RADIUS_IN_KMS = 6378.1;
+  private static final double GEO_UTILS_EARTH_RADIUS_IN_KMS = 6371.0;
+  private static final int LOCATION_BACKFILL_BATCH_SIZE = 1000;
+  // Slack around the box of the cells mode query, so float rounding never drops a restaurant.
+  private static final double BOX_MARGIN_IN_DEGREES = 1e-6;
+
+  // Queries of the sequential search run to completion.
+  private static final long NO_DEADLINE = Long.MIN_VALUE;
+
   @Autowired
   private MongoTemplate mongoTemplate;
 
@@ -62,12 +115,87 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
   @Autowired
   private RedisConfiguration redisConfiguration;
 
+  @Autowired
+  private RestaurantIndexManager restaurantIndexManager;
+
+  @Autowired
+  private RestaurantRedisGeoIndex restaurantRedisGeoIndex;
+
+  @Autowired
+  private NearbyCellCache nearbyCellCache;
+
+  @Value("${qeats.nearby.mode:" + NEARBY_MODE_CACHE + "}")
+  private String nearbyMode;
+
+  @Value("${qeats.search.mode:" + SEARCH_MODE_MONGO + "}")
+  private String searchMode;
+
+  // Deadlines of the multi-threaded search. Its queries are given the time left as maxTimeMS,
+  // so Mongo stops a query the search no longer waits for and its executor thread is freed;
+  // cancelling the future does not interrupt a thread blocked on the driver.
+  @Value("${qeats.search.restaurants-timeout-in-ms:800}")
+  private long restaurantsSearchTimeoutInMs = 800;
+
+  @Value("${qeats.search.menus-timeout-in-ms:800}")
+  private long menusSearchTimeoutInMs = 800;
+
+  /**
+   * Prepares Mongo for the mongo and cells nearby modes: creates the 2dsphere index and fills
+   * the GeoJSON location of restaurants that were imported with plain latitude/longitude fields
+   * only. For the redisgeo mode, starts building the Redis GEO set.
+   */
+  @PostConstruct
+  public void prepareNearbyMode() {
+    if (NEARBY_MODE_MONGO.equalsIgnoreCase(nearbyMode)
+        || NEARBY_MODE_CELLS.equalsIgnoreCase(nearbyMode)) {
+      ensureLocationIndex();
+    } else if (NEARBY_MODE_REDIS_GEO.equalsIgnoreCase(nearbyMode)) {
+      restaurantRedisGeoIndex.load();
+    }
+  }
+
+  void ensureLocationIndex() {
+    long start = System.currentTimeMillis();
+    Query missingLocation = Query.query(Criteria.where("location").exists(false)
+        .and("latitude").exists(true).and("longitude").exists(true));
+    missingLocation.fields().include("latitude").include("longitude");
+
+    int updated = 0;
+    BulkOperations bulkOperations = null;
+    for (Document document : mongoTemplate.find(missingLocation, Document.class,
+        "restaurants")) {
+      Number latitude = (Number) document.get("latitude");
+      Number longitude = (Number) document.get("longitude");
+      if (latitude == null || longitude == null) {
+        continue;
+      }
+      if (bulkOperations == null) {
+        bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, "restaurants");
+      }
+      bulkOperations.updateOne(Query.query(Criteria.where("_id").is(document.get("_id"))),
+          Update.update("location",
+              new GeoJsonPoint(longitude.doubleValue(), latitude.doubleValue())));
+      if (++updated % LOCATION_BACKFILL_BATCH_SIZE == 0) {
+        bulkOperations.execute();
+        bulkOperations = null;
+      }
+    }
+    if (bulkOperations != null) {
+      bulkOperations.execute();
+    }
+
+    mongoTemplate.indexOps("restaurants")
+        .ensureIndex(new GeospatialIndex("location").typed(GeoSpatialIndexType.GEO_2DSPHERE));
+    log.info("Ensured 2dsphere index on restaurants.location, backfilled {} documents in {} ms",
+        updated, System.currentTimeMillis() - start);
+  }
 
   private boolean isOpenNow(LocalTime time, RestaurantEntity res) {
-    LocalTime openingTime = LocalTime.parse(res.getOpensAt());
-    LocalTime closingTime = LocalTime.parse(res.getClosesAt());
+    return isOpenNow(time, res.getOpensAt(), res.getClosesAt());
+  }
 
-    return time.isAfter(openingTime) && time.isBefore(closingTime);
+  private boolean isOpenNow(LocalTime time, String opensAt, String closesAt) {
+    return OpeningHours.isOpen(opensAt, closesAt, time);
   }
 
   // TODO: CRIO_TASK_MODULE_NOSQL
@@ -79,15 +207,40 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
       Double longitude, LocalTime currentTime, Double servingRadiusInKms) {
 
         List<Restaurant> restaurants = null;
-        if (redisConfiguration.isCacheAvailable()) {
-          restaurants = findAllRestaurantsCloseByFromCache(latitude, longitude, currentTime, servingRadiusInKms);
+        if (NEARBY_MODE_GRID.equalsIgnoreCase(nearbyMode)) {
+          restaurants = findAllRestaurantsCloseFromGridIndex(latitude, longitude, currentTime,
+              servingRadiusInKms);
+        } else if (NEARBY_MODE_MONGO.equalsIgnoreCase(nearbyMode)) {
+          restaurants = findAllRestaurantsCloseFromGeoQuery(latitude, longitude, currentTime,
+              servingRadiusInKms);
+        } else if (NEARBY_MODE_SNAPSHOT.equalsIgnoreCase(nearbyMode)) {
+          restaurants = findAllRestaurantsCloseFromSnapshot(latitude, longitude, currentTime,
+              servingRadiusInKms);
+        } else if (NEARBY_MODE_CELLS.equalsIgnoreCase(nearbyMode)) {
+          restaurants = findAllRestaurantsCloseFromCells(latitude, longitude, currentTime,
+              servingRadiusInKms);
+        } else if (NEARBY_MODE_REDIS_GEO.equalsIgnoreCase(nearbyMode)) {
+          restaurants = redisConfiguration.isCacheAvailable()
+              ? findAllRestaurantsCloseFromRedisGeo(latitude, longitude, currentTime,
+                  servingRadiusInKms)
+              : findAllRestaurantsCloseFromDb(latitude, longitude, currentTime,
+                  servingRadiusInKms);
         } else {
-          restaurants = findAllRestaurantsCloseFromDb(latitude, longitude, currentTime, servingRadiusInKms);
+          restaurants = findAllRestaurantsCloseByFromCache(latitude, longitude, currentTime, servingRadiusInKms);
         }
         return restaurants;
       }
 
 
+  @Override
+  public List<Restaurant> findNearestRestaurantsCloseBy(Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms, int limit,
+      Double afterDistanceInKms, String afterRestaurantId) {
+    return NearestRestaurantSelector.select(
+        findAllRestaurantsCloseBy(latitude, longitude, currentTime, servingRadiusInKms),
+        latitude, longitude, limit, afterDistanceInKms, afterRestaurantId);
+  }
+
   // TODO: CRIO_TASK_MODULE_NOSQL
   // Objective:
   // 1. Check if a restaurant is nearby and open. If so, it is a candidate to be returned.
@@ -108,39 +261,152 @@ public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryServ
     return false;
   }
 
-  private List<Restaurant> findAllRestaurantsCloseByFromCache(Double latitude, Double longitude, LocalTime currentTime,
-  Double servingRadiusInKms) {
-    List<Restaurant> restaurantList = new ArrayList<>();
-    GeoLocation geoLocation = new GeoLocation(latitude, longitude);
-    GeoHash geoHash = GeoHash.withCharacterPrecision(geoLocation.getLatitude(), geoLocation.getLongitude(), 7);
-    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
-    String jsonStringFromCache = jedis.get(geoHash.toBase32());
+  // Each cell caches every restaurant, open or not, that could be within the largest cacheable
+  // serving radius of some point in the cell. The radius and opening hours of the request are
+  // applied after the read, so one entry serves peak and normal hours at any time of day.
+  // Cells are cached in process and in Redis; without Redis only in process.
+  private List<Restaurant> findAllRestaurantsCloseByFromCache(Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms) {
+    if (servingRadiusInKms > GlobalConstants.NEARBY_CACHE_MAX_RADIUS_IN_KMS) {
+      return findAllRestaurantsCloseFromDb(latitude, longitude, currentTime, servingRadiusInKms);
+    }
 
-  if (jsonStringFromCache == null) {
-    // Cache needs to be updated.
-    String createdJsonString = "";
-    try {
-      restaurantList = findAllRestaurantsCloseFromDb(geoLocation.getLatitude(), geoLocation.getLongitude(),
-          currentTime, servingRadiusInKms);
-      createdJsonString = new ObjectMapper().writeValueAsString(restaurantList);
-    } catch (JsonProcessingException e) {
-      e.printStackTrace();
+    GeoHash geoHash = GeoHash.withCharacterPrecision(latitude, longitude,
+        GlobalConstants.NEARBY_CACHE_GEOHASH_PRECISION);
+    List<Restaurant> candidates = nearbyCellCache.getCandidates(geoHash,
+        () -> findRestaurantCandidatesForCell(geoHash));
+
+    List<Restaurant> restaurants = new ArrayList<Restaurant>();
+    for (Restaurant restaurant : candidates) {
+      if (isOpenNow(currentTime, restaurant.getOpensAt(), restaurant.getClosesAt())
+          && GeoUtils.findDistanceInKm(latitude, longitude, restaurant.getLatitude(),
+              restaurant.getLongitude()) < servingRadiusInKms) {
+        restaurants.add(restaurant);
+      }
     }
+    return restaurants;
+  }
 
-    // Do operations with jedis resource
-    jedis.setex(geoHash.toBase32(), GlobalConstants.REDIS_ENTRY_EXPIRY_IN_SECONDS, createdJsonString);
-  } else {
-    try {
-      restaurantList = new ObjectMapper().readValue(jsonStringFromCache, new TypeReference<List<Restaurant>>() {
-      });
-    } catch (IOException e) {
-      e.printStackTrace();
+  // Everything within the max radius of a point in the cell is within max radius + half
+  // diagonal of its center. This covers the cell and the parts of its neighbours that matter.
+  private List<Restaurant> findRestaurantCandidatesForCell(GeoHash geoHash) {
+    WGS84Point center = geoHash.getBoundingBox().getCenterPoint();
+    double candidateRadiusInKms = GlobalConstants.NEARBY_CACHE_MAX_RADIUS_IN_KMS
+        + GeoUtils.findHalfDiagonalInKm(geoHash);
+
+    ModelMapper modelMapper = modelMapperProvider.get();
+    List<Restaurant> candidates = new ArrayList<Restaurant>();
+    for (RestaurantEntity restaurantEntity : restaurantRepository.findAll()) {
+      if (GeoUtils.findDistanceInKm(center.getLatitude(), center.getLongitude(),
+          restaurantEntity.getLatitude(), restaurantEntity.getLongitude())
+          < candidateRadiusInKms) {
+        candidates.add(modelMapper.map(restaurantEntity, Restaurant.class));
+      }
     }
+    return candidates;
   }
-}
-return restaurantList;
-}
 
+  // Cells hold the restaurants located in them, so a request reads every cell its serving
+  // radius touches: the cell of the location, its neighbours and any further cells a radius
+  // larger than a cell reaches. All of them come from one Redis round trip, and the missing
+  // ones from one Mongo query.
+  private List<Restaurant> findAllRestaurantsCloseFromCells(Double latitude, Double longitude,
+      LocalTime currentTime, Double servingRadiusInKms) {
+    if (servingRadiusInKms > GlobalConstants.NEARBY_CACHE_MAX_RADIUS_IN_KMS) {
+      return findAllRestaurantsCloseFromDb(latitude, longitude, currentTime, servingRadiusInKms);
+    }
+
+    List<GeoHash> geoHashes = GeoUtils.findCoveringGeoHashes(latitude, longitude,
+        servingRadiusInKms, GlobalConstants.CELL_CACHE_GEOHASH_PRECISION);
+    List<Restaurant> restaurants = new ArrayList<Restaurant>();
+    for (List<Restaurant> located : nearbyCellCache.getRestaurantsInCells(geoHashes,
+        this::findRestaurantsInCells).values()) {
+      for (Restaurant restaurant : located) {
+        if (isOpenNow(currentTime, restaurant.getOpensAt(), restaurant.getClosesAt())
+            && GeoUtils.findDistanceInKm(latitude, longitude, restaurant.getLatitude(),
+                restaurant.getLongitude()) < servingRadiusInKms) {
+          restaurants.add(restaurant);
+        }
+      }
+    }
+    return restaurants;
+  }
+
+  // One query over the box around all the cells, its restaurants then grouped by cell.
+  private Map<String, List<Restaurant>> findRestaurantsInCells(List<GeoHash> geoHashes) {
+    Set<String> cells = new HashSet<>();
+    for (GeoHash geoHash : geoHashes) {
+      cells.add(geoHash.toBase32());
+    }
+
+    ModelMapper modelMapper = modelMapperProvider.get();
+    Map<String, List<Restaurant>> restaurants = new HashMap<>();
+    for (RestaurantEntity restaurantEntity : mongoTemplate.find(cellsQuery(geoHashes),
+        RestaurantEntity.class, "restaurants")) {
+      String cell = GeoHash.withCharacterPrecision(restaurantEntity.getLatitude(),
+          restaurantEntity.getLongitude(), GlobalConstants.CELL_CACHE_GEOHASH_PRECISION)
+          .toBase32();
+      if (cells.contains(cell)) {
+        restaurants.computeIfAbsent(cell, key -> new ArrayList<>())
+            .add(modelMapper.map(restaurantEntity, Restaurant.class));
+      }
+    }
+    return restaurants;
+  }
+
+  /**
+   * Restaurants in the box around the cells, found with the 2dsphere index on location.
+   * Cells on both sides of the antimeridian get one box per side.
+   */
+  static Query cellsQuery(List<GeoHash> geoHashes) {
+    double[] all = null;
+    double[] east = null;
+    double[] west = null;
+    for (GeoHash geoHash : geoHashes) {
+      BoundingBox cell = geoHash.getBoundingBox();
+      all = extend(all, cell);
+      if (cell.getMinLon() >= 0) {
+        east = extend(east, cell);
+      } else {
+        west = extend(west, cell);
+      }
+    }
+    if (all[3] - all[2] <= 180) {
+      return Query.query(Criteria.where("location").within(boxPolygon(all)));
+    }
+    return Query.query(new Criteria().orOperator(
+        Criteria.where("location").within(boxPolygon(east)),
+        Criteria.where("location").within(boxPolygon(west))));
+  }
+
+  // Min and max latitude, then min and max longitude.
+  private static double[] extend(double[] box, BoundingBox cell) {
+    if (box == null) {
+      return new double[] {cell.getMinLat(), cell.getMaxLat(), cell.getMinLon(),
+          cell.getMaxLon()};
+    }
+    box[0] = Math.min(box[0], cell.getMinLat());
+    box[1] = Math.max(box[1], cell.getMaxLat());
+    box[2] = Math.min(box[2], cell.getMinLon());
+    box[3] = Math.max(box[3], cell.getMaxLon());
+    return box;
+  }
+
+  // GeoJSON polygon edges are great circle arcs, which bulge towards the nearer pole between
+  // their ends, so each parallel is pushed out by its bulge for the polygon to hold the box.
+  private static GeoJsonPolygon boxPolygon(double[] box) {
+    double halfWidth = Math.toRadians(box[3] - box[2]) / 2;
+    double south = Math.max(-90, box[0] - bulge(box[0], halfWidth));
+    double north = Math.min(90, box[1] + bulge(box[1], halfWidth));
+    return new GeoJsonPolygon(new Point(box[2], south), new Point(box[3], south),
+        new Point(box[3], north), new Point(box[2], north), new Point(box[2], south));
+  }
+
+  private static double bulge(double latitude, double halfWidthInRadians) {
+    double middle = Math.toDegrees(Math.atan(
+        Math.tan(Math.toRadians(latitude)) / Math.cos(halfWidthInRadians)));
+    return Math.abs(middle - latitude) + BOX_MARGIN_IN_DEGREES;
+  }
 
 private List<Restaurant> findAllRestaurantsCloseFromDb(Double latitude, Double longitude, LocalTime currentTime,
       Double servingRadiusInKms) {
@@ -155,12 +421,90 @@ private List<Restaurant> findAllRestaurantsCloseFromDb(Double latitude, Double l
     return restaurants;
   }
 
+  private List<Restaurant> findAllRestaurantsCloseFromGridIndex(Double latitude,
+      Double longitude, LocalTime currentTime, Double servingRadiusInKms) {
+    return toRestaurants(restaurantIndexManager.getGridIndex()
+        .findOpenWithinRadius(latitude, longitude, servingRadiusInKms, currentTime));
+  }
+
+  private List<Restaurant> findAllRestaurantsCloseFromSnapshot(Double latitude,
+      Double longitude, LocalTime currentTime, Double servingRadiusInKms) {
+    return toRestaurants(restaurantIndexManager.getSnapshot()
+        .findOpenWithinRadius(latitude, longitude, servingRadiusInKms, currentTime));
+  }
+
+  private List<Restaurant> findAllRestaurantsCloseFromGeoQuery(Double latitude,
+      Double longitude, LocalTime currentTime, Double servingRadiusInKms) {
+    double maxDistanceInMeters = servingRadiusInKms * 1000
+        * MONGO_EARTH_RADIUS_IN_KMS / GEO_UTILS_EARTH_RADIUS_IN_KMS;
+    Query query = Query.query(Criteria.where("location")
+        .nearSphere(new GeoJsonPoint(longitude, latitude))
+        .maxDistance(maxDistanceInMeters));
+    List<RestaurantEntity> restaurantEntities =
+        mongoTemplate.find(query, RestaurantEntity.class, "restaurants");
+
+    ModelMapper modelMapper = modelMapperProvider.get();
+    List<Restaurant> restaurants = new ArrayList<Restaurant>();
+    for (RestaurantEntity restaurantEntity : restaurantEntities) {
+      if (isRestaurantCloseByAndOpen(restaurantEntity, currentTime, latitude, longitude,
+          servingRadiusInKms)) {
+        restaurants.add(modelMapper.map(restaurantEntity, Restaurant.class));
+      }
+    }
+    return restaurants;
+  }
+
+  private List<Restaurant> findAllRestaurantsCloseFromRedisGeo(Double latitude,
+      Double longitude, LocalTime currentTime, Double servingRadiusInKms) {
+    List<Restaurant> candidates;
+    try {
+      candidates = restaurantRedisGeoIndex.findWithinRadius(latitude, longitude,
+          servingRadiusInKms);
+      redisConfiguration.reportSuccess();
+    } catch (JedisException e) {
+      log.warn("Redis GEO lookup failed, falling back to the database", e);
+      redisConfiguration.reportFailure(e);
+      return findAllRestaurantsCloseFromDb(latitude, longitude, currentTime, servingRadiusInKms);
+    }
+    if (candidates == null) {
+      // The GEO set is still being built.
+      return findAllRestaurantsCloseFromDb(latitude, longitude, currentTime, servingRadiusInKms);
+    }
+    List<Restaurant> restaurants = new ArrayList<Restaurant>();
+    for (Restaurant restaurant : candidates) {
+      if (isOpenNow(currentTime, restaurant.getOpensAt(), restaurant.getClosesAt())) {
+        restaurants.add(restaurant);
+      }
+    }
+    return restaurants;
+  }
+
+  private List<Restaurant> toRestaurants(List<RestaurantEntity> restaurantEntities) {
+    ModelMapper modelMapper = modelMapperProvider.get();
+    List<Restaurant> restaurants = new ArrayList<Restaurant>(restaurantEntities.size());
+    for (RestaurantEntity restaurantEntity : restaurantEntities) {
+      restaurants.add(modelMapper.map(restaurantEntity, Restaurant.class));
+    }
+    return restaurants;
+  }
+
   @Override
   public List<Restaurant> findRestaurantsByName(Double latitude, Double longitude,
             String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-    BasicQuery query = new BasicQuery("{name: {$regex: /" + searchString + "/i}}");
+    return findRestaurantsByName(latitude, longitude, searchString, currentTime,
+        servingRadiusInKms, NO_DEADLINE);
+  }
+
+  private List<Restaurant> findRestaurantsByName(Double latitude, Double longitude,
+      String searchString, LocalTime currentTime, Double servingRadiusInKms,
+      long deadlineInNanos) {
+    if (SEARCH_MODE_INDEX.equalsIgnoreCase(searchMode)) {
+      return toRestaurants(restaurantIndexManager.getTextIndex()
+          .findByName(latitude, longitude, servingRadiusInKms, currentTime, searchString));
+    }
+    Query query = Query.query(Criteria.where("name").regex(Pattern.quote(searchString), "i"));
     List<RestaurantEntity> restaurants = mongoTemplate
-        .find(query, RestaurantEntity.class, "restaurants");
+        .find(withDeadline(query, deadlineInNanos), RestaurantEntity.class, "restaurants");
     List<Restaurant> restaurantList = new ArrayList<Restaurant>();
 
     for (RestaurantEntity restaurant : restaurants) {
@@ -185,9 +529,27 @@ private List<Restaurant> findAllRestaurantsCloseFromDb(Double latitude, Double l
 @Override
 public List<Restaurant> findRestaurantsByAttributes(Double latitude, Double longitude,
     String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+  return findRestaurantsByAttributes(latitude, longitude, searchString, currentTime,
+      servingRadiusInKms, NO_DEADLINE);
+}
+
+private List<Restaurant> findRestaurantsByAttributes(Double latitude, Double longitude,
+    String searchString, LocalTime currentTime, Double servingRadiusInKms,
+    long deadlineInNanos) {
+  if (SEARCH_MODE_INDEX.equalsIgnoreCase(searchMode)) {
+    return toRestaurants(restaurantIndexManager.getTextIndex()
+        .findByAttribute(latitude, longitude, servingRadiusInKms, currentTime, searchString));
+  }
+  if (NEARBY_MODE_SNAPSHOT.equalsIgnoreCase(nearbyMode)) {
+    return toRestaurants(restaurantIndexManager.getSnapshot()
+        .findOpenWithinRadiusByAttribute(latitude, longitude, servingRadiusInKms, currentTime,
+            searchString));
+  }
   // TODO Auto-generated method stub
-  BasicQuery query = new BasicQuery("{attributes: {$regex: /" + searchString + "/i}}");
-  List<RestaurantEntity> restaurants = mongoTemplate.find(query, RestaurantEntity.class, "restaurants");
+  Query query = Query.query(
+      Criteria.where("attributes").regex(Pattern.quote(searchString), "i"));
+  List<RestaurantEntity> restaurants = mongoTemplate.find(withDeadline(query, deadlineInNanos),
+      RestaurantEntity.class, "restaurants");
   List<Restaurant> restaurantList = new ArrayList<Restaurant>();
   for (RestaurantEntity restaurant : restaurants) {
     if (isRestaurantCloseByAndOpen(restaurant, currentTime,latitude, longitude, servingRadiusInKms)) {
@@ -210,185 +572,227 @@ public List<Restaurant> findRestaurantsByAttributes(Double latitude, Double long
 @Override
 public List<Restaurant> findRestaurantsByItemName(Double latitude, Double longitude,
     String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-  // TODO Auto-generated method stub
-  BasicQuery query = new BasicQuery("{'items.name': {$regex: /" + searchString + "/i}}");
-  List<MenuEntity> menus = mongoTemplate.find(query, MenuEntity.class, "menus");
-  List<RestaurantEntity> restaurants = new ArrayList<>();
-  for (MenuEntity menu : menus) {
-    String restaurantId = menu.getRestaurantId();
-    BasicQuery restaurantQuery = new BasicQuery("{restaurantId:" + restaurantId + "}");
-    restaurants.add(mongoTemplate
-        .findOne(restaurantQuery, RestaurantEntity.class, "restaurants"));
-  }
-  List<Restaurant> restaurantList = new ArrayList<Restaurant>();
+  return findRestaurantsByItemName(latitude, longitude, searchString, currentTime,
+      servingRadiusInKms, NO_DEADLINE);
+}
 
-  for (RestaurantEntity restaurant : restaurants) {
-    if (isRestaurantCloseByAndOpen(restaurant, currentTime,latitude, longitude, servingRadiusInKms)) {
-      Restaurant r = new Restaurant();
-      r.setRestaurantId(restaurant.getRestaurantId());
-      r.setName(restaurant.getName());
-      r.setCity(restaurant.getCity());
-      r.setImageUrl(restaurant.getImageUrl());
-      r.setLatitude(restaurant.getLatitude());
-      r.setLongitude(restaurant.getLongitude());
-      r.setOpensAt(restaurant.getOpensAt());
-      r.setClosesAt(restaurant.getClosesAt());
-      r.setAttributes(restaurant.getAttributes());
-      restaurantList.add(r);    
-    }
+private List<Restaurant> findRestaurantsByItemName(Double latitude, Double longitude,
+    String searchString, LocalTime currentTime, Double servingRadiusInKms,
+    long deadlineInNanos) {
+  if (SEARCH_MODE_INDEX.equalsIgnoreCase(searchMode)) {
+    return toRestaurants(restaurantIndexManager.getTextIndex()
+        .findByItemName(latitude, longitude, servingRadiusInKms, currentTime, searchString));
   }
-  return restaurantList;
+  return findRestaurantsByMenus(
+      Criteria.where("items.name").regex(Pattern.quote(searchString), "i"),
+      latitude, longitude, currentTime, servingRadiusInKms, deadlineInNanos);
 }
 
 @Override
 public List<Restaurant> findRestaurantsByItemAttributes(Double latitude, Double longitude,
     String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-    BasicQuery query = new BasicQuery("{'items.attributes': {$regex: /" + searchString + "/i}}");
-    List<MenuEntity> menus = mongoTemplate.find(query, MenuEntity.class, "menus");
-    List<RestaurantEntity> restaurants = new ArrayList<>();
-    for (MenuEntity menu : menus) {
-      String restaurantId = menu.getRestaurantId();
-      BasicQuery restaurantQuery = new BasicQuery("{restaurantId:" + restaurantId + "}");
-      restaurants.add(mongoTemplate.findOne(restaurantQuery, RestaurantEntity.class, "restaurants"));
+  return findRestaurantsByItemAttributes(latitude, longitude, searchString, currentTime,
+      servingRadiusInKms, NO_DEADLINE);
+}
+
+private List<Restaurant> findRestaurantsByItemAttributes(Double latitude, Double longitude,
+    String searchString, LocalTime currentTime, Double servingRadiusInKms,
+    long deadlineInNanos) {
+  if (SEARCH_MODE_INDEX.equalsIgnoreCase(searchMode)) {
+    return toRestaurants(restaurantIndexManager.getTextIndex()
+        .findByItemAttribute(latitude, longitude, servingRadiusInKms, currentTime, searchString));
+  }
+  return findRestaurantsByMenus(
+      Criteria.where("items.attributes").regex(Pattern.quote(searchString), "i"),
+      latitude, longitude, currentTime, servingRadiusInKms, deadlineInNanos);
+}
+
+  @Override
+  public List<Restaurant> findRestaurantsByIds(List<String> restaurantIds) {
+    if (restaurantIds.isEmpty()) {
+      return new ArrayList<Restaurant>();
     }
-    List<Restaurant> restaurantList = new ArrayList<Restaurant>();
-      for (RestaurantEntity restaurant : restaurants) {
-        if (isRestaurantCloseByAndOpen(restaurant, currentTime,latitude, longitude, servingRadiusInKms)) {
-          Restaurant r = new Restaurant();
-          r.setRestaurantId(restaurant.getRestaurantId());
-          r.setName(restaurant.getName());
-          r.setCity(restaurant.getCity());
-          r.setImageUrl(restaurant.getImageUrl());
-          r.setLatitude(restaurant.getLatitude());
-          r.setLongitude(restaurant.getLongitude());
-          r.setOpensAt(restaurant.getOpensAt());
-          r.setClosesAt(restaurant.getClosesAt());
-          r.setAttributes(restaurant.getAttributes());
-          restaurantList.add(r);    
-        }
+    Map<String, RestaurantEntity> restaurantsById = new HashMap<>();
+    for (RestaurantEntity restaurantEntity : mongoTemplate.find(
+        Query.query(Criteria.where("restaurantId").in(restaurantIds)),
+        RestaurantEntity.class, "restaurants")) {
+      restaurantsById.putIfAbsent(restaurantEntity.getRestaurantId(), restaurantEntity);
+    }
+
+    ModelMapper modelMapper = modelMapperProvider.get();
+    List<Restaurant> restaurants = new ArrayList<Restaurant>(restaurantsById.size());
+    for (String restaurantId : restaurantIds) {
+      RestaurantEntity restaurantEntity = restaurantsById.get(restaurantId);
+      if (restaurantEntity != null) {
+        restaurants.add(modelMapper.map(restaurantEntity, Restaurant.class));
+      }
+    }
+    return restaurants;
+  }
+
+  @Override
+  public List<String> findSpellingCorrections(String searchString, int limit,
+      long deadlineInNanos) {
+    RestaurantSpellingIndex spellingIndex = restaurantIndexManager.findSpellingIndex();
+    return spellingIndex == null ? new ArrayList<>()
+        : spellingIndex.correct(searchString, limit, deadlineInNanos);
+  }
+
+  // The matching menus and then all of their restaurants are read with one query each, so the
+  // number of round trips does not grow with the number of matching menus.
+  private List<Restaurant> findRestaurantsByMenus(Criteria menuCriteria, Double latitude,
+      Double longitude, LocalTime currentTime, Double servingRadiusInKms,
+      long deadlineInNanos) {
+    if (SEARCH_MODE_AGGREGATION.equalsIgnoreCase(searchMode)) {
+      return findRestaurantsByMenusAggregation(menuCriteria, latitude, longitude, currentTime,
+          servingRadiusInKms, deadlineInNanos);
+    }
+    Query menuQuery = Query.query(menuCriteria);
+    menuQuery.fields().include("restaurantId");
+    Set<String> restaurantIds = new LinkedHashSet<>();
+    for (MenuEntity menu : mongoTemplate.find(withDeadline(menuQuery, deadlineInNanos),
+        MenuEntity.class, "menus")) {
+      if (menu.getRestaurantId() != null) {
+        restaurantIds.add(menu.getRestaurantId());
+      }
+    }
+    if (restaurantIds.isEmpty()) {
+      return new ArrayList<Restaurant>();
+    }
+
+    Map<String, RestaurantEntity> restaurantsById = new HashMap<>();
+    for (RestaurantEntity restaurantEntity : mongoTemplate.find(
+        withDeadline(Query.query(Criteria.where("restaurantId").in(restaurantIds)),
+            deadlineInNanos),
+        RestaurantEntity.class, "restaurants")) {
+      restaurantsById.putIfAbsent(restaurantEntity.getRestaurantId(), restaurantEntity);
+    }
+
+    // Keep the order in which the menus matched.
+    ModelMapper modelMapper = modelMapperProvider.get();
+    List<Restaurant> restaurants = new ArrayList<Restaurant>();
+    for (String restaurantId : restaurantIds) {
+      RestaurantEntity restaurantEntity = restaurantsById.get(restaurantId);
+      if (restaurantEntity != null && isRestaurantCloseByAndOpen(restaurantEntity, currentTime,
+          latitude, longitude, servingRadiusInKms)) {
+        restaurants.add(modelMapper.map(restaurantEntity, Restaurant.class));
       }
-      return restaurantList;
     }
+    return restaurants;
+  }
+
+  // One round trip; only restaurants in the bounding box of the radius leave the server, and
+  // the exact distance and opening hours are checked here.
+  // AggregationOptions has no maxTimeMS in this Spring Data version, so the pipeline is run
+  // through the driver when there is a deadline.
+  private List<Restaurant> findRestaurantsByMenusAggregation(Criteria menuCriteria,
+      Double latitude, Double longitude, LocalTime currentTime, Double servingRadiusInKms,
+      long deadlineInNanos) {
+    Aggregation aggregation =
+        menuSearchAggregation(menuCriteria, latitude, longitude, servingRadiusInKms);
+    List<RestaurantEntity> restaurantEntities = new ArrayList<>();
+    if (deadlineInNanos == NO_DEADLINE) {
+      restaurantEntities.addAll(
+          mongoTemplate.aggregate(aggregation, "menus", RestaurantEntity.class)
+              .getMappedResults());
+    } else {
+      for (Document document : mongoTemplate.getCollection("menus")
+          .aggregate(aggregation.toPipeline(Aggregation.DEFAULT_CONTEXT))
+          .maxTime(remainingMillis(deadlineInNanos), TimeUnit.MILLISECONDS)) {
+        restaurantEntities.add(
+            mongoTemplate.getConverter().read(RestaurantEntity.class, document));
+      }
+    }
+
+    Set<String> seen = new HashSet<>();
+    ModelMapper modelMapper = modelMapperProvider.get();
+    List<Restaurant> restaurants = new ArrayList<Restaurant>();
+    for (RestaurantEntity restaurantEntity : restaurantEntities) {
+      if (seen.add(restaurantEntity.getRestaurantId()) && isRestaurantCloseByAndOpen(
+          restaurantEntity, currentTime, latitude, longitude, servingRadiusInKms)) {
+        restaurants.add(modelMapper.map(restaurantEntity, Restaurant.class));
+      }
+    }
+    return restaurants;
+  }
+
+  /**
+   * Matching menus, joined to their restaurants and shaped like RestaurantEntity.
+   * The box is skipped where it would wrap around the antimeridian.
+   */
+  static Aggregation menuSearchAggregation(Criteria menuCriteria, Double latitude,
+      Double longitude, Double servingRadiusInKms) {
+    double latitudeSpan = GeoUtils.findLatitudeSpanInDegrees(servingRadiusInKms);
+    double longitudeSpan = GeoUtils.findLongitudeSpanInDegrees(latitude, servingRadiusInKms);
+    Criteria inBox = Criteria.where("restaurant.latitude")
+        .gte(latitude - latitudeSpan).lte(latitude + latitudeSpan);
+    if (longitude - longitudeSpan >= -180.0 && longitude + longitudeSpan <= 180.0) {
+      inBox = inBox.and("restaurant.longitude")
+          .gte(longitude - longitudeSpan).lte(longitude + longitudeSpan);
+    }
+
+    ProjectionOperation restaurantFields = Aggregation.project().andExclude("_id");
+    for (String field : RESTAURANT_FIELDS) {
+      restaurantFields = restaurantFields.and("restaurant." + field).as(field);
+    }
+    return Aggregation.newAggregation(
+        Aggregation.match(menuCriteria),
+        Aggregation.project("restaurantId").andExclude("_id"),
+        Aggregation.lookup("restaurants", "restaurantId", "restaurantId", "restaurant"),
+        Aggregation.unwind("restaurant"),
+        Aggregation.match(inBox),
+        restaurantFields);
+  }
 
     @Override
-    @Async
+    @Async(AsyncConfiguration.RESTAURANTS_SEARCH_EXECUTOR)
     public CompletableFuture<List<Restaurant>> findRestaurantsByNameAsync(Double latitude, Double longitude,
               String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-      BasicQuery query = new BasicQuery("{name: {$regex: /" + searchString + "/i}}");
-      List<RestaurantEntity> restaurants = mongoTemplate
-          .find(query, RestaurantEntity.class, "restaurants");
-      List<Restaurant> restaurantList = new ArrayList<Restaurant>();
-  
-      for (RestaurantEntity restaurant : restaurants) {
-        if (isRestaurantCloseByAndOpen(restaurant, currentTime,
-            latitude, longitude, servingRadiusInKms)) {
-              Restaurant r = new Restaurant();
-              r.setRestaurantId(restaurant.getRestaurantId());
-              r.setName(restaurant.getName());
-              r.setCity(restaurant.getCity());
-              r.setImageUrl(restaurant.getImageUrl());
-              r.setLatitude(restaurant.getLatitude());
-              r.setLongitude(restaurant.getLongitude());
-              r.setOpensAt(restaurant.getOpensAt());
-              r.setClosesAt(restaurant.getClosesAt());
-              r.setAttributes(restaurant.getAttributes());
-              restaurantList.add(r);
-            }
-      }
-      return CompletableFuture.completedFuture(restaurantList);
+      return CompletableFuture.completedFuture(findRestaurantsByName(latitude, longitude,
+          searchString, currentTime, servingRadiusInKms,
+          deadlineIn(restaurantsSearchTimeoutInMs)));
     }
   
     @Override
-    @Async
+    @Async(AsyncConfiguration.RESTAURANTS_SEARCH_EXECUTOR)
     public CompletableFuture<List<Restaurant>> findRestaurantsByAttributesAsync(Double latitude, Double longitude,
         String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-      // TODO Auto-generated method stub
-      BasicQuery query = new BasicQuery("{attributes: {$regex: /" + searchString + "/i}}");
-      List<RestaurantEntity> restaurants = mongoTemplate.find(query, RestaurantEntity.class, "restaurants");
-      List<Restaurant> restaurantList = new ArrayList<Restaurant>();
-      for (RestaurantEntity restaurant : restaurants) {
-        if (isRestaurantCloseByAndOpen(restaurant, currentTime,latitude, longitude, servingRadiusInKms)) {
-          Restaurant r = new Restaurant();
-          r.setRestaurantId(restaurant.getRestaurantId());
-          r.setName(restaurant.getName());
-          r.setCity(restaurant.getCity());
-          r.setImageUrl(restaurant.getImageUrl());
-          r.setLatitude(restaurant.getLatitude());
-          r.setLongitude(restaurant.getLongitude());
-          r.setOpensAt(restaurant.getOpensAt());
-          r.setClosesAt(restaurant.getClosesAt());
-          r.setAttributes(restaurant.getAttributes());
-          restaurantList.add(r);
-        }
-      }  
-      return CompletableFuture.completedFuture(restaurantList);
+      return CompletableFuture.completedFuture(findRestaurantsByAttributes(latitude, longitude,
+          searchString, currentTime, servingRadiusInKms,
+          deadlineIn(restaurantsSearchTimeoutInMs)));
     }
 
     @Override
-    @Async
+    @Async(AsyncConfiguration.MENUS_SEARCH_EXECUTOR)
     public CompletableFuture<List<Restaurant>> findRestaurantsByItemNameAsync(Double latitude, Double longitude,
         String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-      // TODO Auto-generated method stub
-      BasicQuery query = new BasicQuery("{'items.name': {$regex: /" + searchString + "/i}}");
-      List<MenuEntity> menus = mongoTemplate.find(query, MenuEntity.class, "menus");
-      List<RestaurantEntity> restaurants = new ArrayList<>();
-      for (MenuEntity menu : menus) {
-        String restaurantId = menu.getRestaurantId();
-        BasicQuery restaurantQuery = new BasicQuery("{restaurantId:" + restaurantId + "}");
-        restaurants.add(mongoTemplate
-            .findOne(restaurantQuery, RestaurantEntity.class, "restaurants"));
-      }
-      List<Restaurant> restaurantList = new ArrayList<Restaurant>();
-    
-      for (RestaurantEntity restaurant : restaurants) {
-        if (isRestaurantCloseByAndOpen(restaurant, currentTime,latitude, longitude, servingRadiusInKms)) {
-          Restaurant r = new Restaurant();
-          r.setRestaurantId(restaurant.getRestaurantId());
-          r.setName(restaurant.getName());
-          r.setCity(restaurant.getCity());
-          r.setImageUrl(restaurant.getImageUrl());
-          r.setLatitude(restaurant.getLatitude());
-          r.setLongitude(restaurant.getLongitude());
-          r.setOpensAt(restaurant.getOpensAt());
-          r.setClosesAt(restaurant.getClosesAt());
-          r.setAttributes(restaurant.getAttributes());
-          restaurantList.add(r);    
-        }
-      }
-      return CompletableFuture.completedFuture(restaurantList);
+      return CompletableFuture.completedFuture(findRestaurantsByItemName(latitude, longitude,
+          searchString, currentTime, servingRadiusInKms, deadlineIn(menusSearchTimeoutInMs)));
     }
     
     @Override
-    @Async
+    @Async(AsyncConfiguration.MENUS_SEARCH_EXECUTOR)
     public CompletableFuture<List<Restaurant>> findRestaurantsByItemAttributesAsync(Double latitude, Double longitude,
         String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-        BasicQuery query = new BasicQuery("{'items.attributes': {$regex: /" + searchString + "/i}}");
-        List<MenuEntity> menus = mongoTemplate.find(query, MenuEntity.class, "menus");
-        List<RestaurantEntity> restaurants = new ArrayList<>();
-        for (MenuEntity menu : menus) {
-          String restaurantId = menu.getRestaurantId();
-          BasicQuery restaurantQuery = new BasicQuery("{restaurantId:" + restaurantId + "}");
-          restaurants.add(mongoTemplate.findOne(restaurantQuery, RestaurantEntity.class, "restaurants"));
-        }
-        List<Restaurant> restaurantList = new ArrayList<Restaurant>();
-          for (RestaurantEntity restaurant : restaurants) {
-            if (isRestaurantCloseByAndOpen(restaurant, currentTime,latitude, longitude, servingRadiusInKms)) {
-              Restaurant r = new Restaurant();
-              r.setRestaurantId(restaurant.getRestaurantId());
-              r.setName(restaurant.getName());
-              r.setCity(restaurant.getCity());
-              r.setImageUrl(restaurant.getImageUrl());
-              r.setLatitude(restaurant.getLatitude());
-              r.setLongitude(restaurant.getLongitude());
-              r.setOpensAt(restaurant.getOpensAt());
-              r.setClosesAt(restaurant.getClosesAt());
-              r.setAttributes(restaurant.getAttributes());
-              restaurantList.add(r);    
-            }
-          }
-          return CompletableFuture.completedFuture(restaurantList);
-        }
-        
+      return CompletableFuture.completedFuture(findRestaurantsByItemAttributes(latitude,
+          longitude, searchString, currentTime, servingRadiusInKms,
+          deadlineIn(menusSearchTimeoutInMs)));
+    }
+
+  // Measured from when the executor runs the search, which is at most the caller's deadline
+  // plus the time the task spent queued.
+  private static long deadlineIn(long timeoutInMs) {
+    return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMs);
+  }
+
+  private static long remainingMillis(long deadlineInNanos) {
+    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadlineInNanos - System.nanoTime()));
+  }
+
+  private static Query withDeadline(Query query, long deadlineInNanos) {
+    return deadlineInNanos == NO_DEADLINE ? query
+        : query.maxTimeMsec(remainingMillis(deadlineInNanos));
+  }
 
   }
 
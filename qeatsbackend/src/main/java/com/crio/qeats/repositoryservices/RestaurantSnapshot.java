@@ -0,0 +1,246 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.GeoUtils;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Immutable columnar copy of the restaurants collection.
+ * Coordinates, opening hours and attributes are held in primitive arrays indexed by ordinal, so
+ * filters stream through contiguous memory instead of chasing boxed fields of every entity.
+ * Attributes are stored once in a dictionary and referenced by id; the ids of a restaurant are
+ * attributeIds[attributeOffsets[ordinal] .. attributeOffsets[ordinal + 1]).
+ * Scans over more restaurants than the parallel threshold are split across the common
+ * fork/join pool. Entities are only looked up for the hits.
+ */
+public class RestaurantSnapshot {
+
+  // Scratch space for the hits of a range before they are copied out at their exact count.
+  // A range is scanned start to finish on one thread, so each thread reuses its own buffer.
+  private static final ThreadLocal<int[]> hitBuffers = ThreadLocal.withInitial(() -> new int[0]);
+
+  private final List<RestaurantEntity> restaurants;
+  private final double[] latitudes;
+  private final double[] longitudes;
+  private final OpeningHoursIndex openingHoursIndex;
+  private final String[] lowerCaseAttributes;
+  private final int[] attributeOffsets;
+  private final int[] attributeIds;
+  private final int parallelThreshold;
+
+  private RestaurantSnapshot(List<RestaurantEntity> restaurants, double[] latitudes,
+      double[] longitudes, String[] lowerCaseAttributes, int[] attributeOffsets,
+      int[] attributeIds, int parallelThreshold) {
+    this.restaurants = restaurants;
+    this.latitudes = latitudes;
+    this.longitudes = longitudes;
+    this.openingHoursIndex = OpeningHoursIndex.build(restaurants);
+    this.lowerCaseAttributes = lowerCaseAttributes;
+    this.attributeOffsets = attributeOffsets;
+    this.attributeIds = attributeIds;
+    this.parallelThreshold = parallelThreshold;
+  }
+
+  /**
+   * Builds the snapshot for the given restaurants.
+   * Restaurants without coordinates are kept but never match, as NaN fails every distance check.
+   * @param restaurants restaurants as loaded from the database
+   * @param parallelThreshold scans over more restaurants than this run on the fork/join pool
+   * @return snapshot of the restaurants
+   */
+  public static RestaurantSnapshot build(List<RestaurantEntity> restaurants,
+      int parallelThreshold) {
+    if (parallelThreshold <= 0) {
+      throw new IllegalArgumentException(
+          "Parallel threshold must be positive: " + parallelThreshold);
+    }
+
+    List<RestaurantEntity> snapshot = Collections.unmodifiableList(new ArrayList<>(restaurants));
+    int size = snapshot.size();
+    double[] latitudes = new double[size];
+    double[] longitudes = new double[size];
+    int[] attributeOffsets = new int[size + 1];
+    int[] attributeIds = new int[16];
+    Map<String, Integer> dictionary = new HashMap<>();
+    List<String> lowerCaseAttributes = new ArrayList<>();
+
+    for (int ordinal = 0; ordinal < size; ordinal++) {
+      RestaurantEntity restaurant = snapshot.get(ordinal);
+      latitudes[ordinal] = restaurant.getLatitude() == null ? Double.NaN
+          : restaurant.getLatitude();
+      longitudes[ordinal] = restaurant.getLongitude() == null ? Double.NaN
+          : restaurant.getLongitude();
+
+      int offset = attributeOffsets[ordinal];
+      List<String> attributes = restaurant.getAttributes();
+      if (attributes != null) {
+        for (String attribute : attributes) {
+          if (attribute == null) {
+            continue;
+          }
+          Integer attributeId = dictionary.get(attribute);
+          if (attributeId == null) {
+            attributeId = lowerCaseAttributes.size();
+            dictionary.put(attribute, attributeId);
+            lowerCaseAttributes.add(attribute.toLowerCase(Locale.ROOT));
+          }
+          if (offset == attributeIds.length) {
+            attributeIds = Arrays.copyOf(attributeIds, offset * 2);
+          }
+          attributeIds[offset++] = attributeId;
+        }
+      }
+      attributeOffsets[ordinal + 1] = offset;
+    }
+
+    return new RestaurantSnapshot(snapshot, latitudes, longitudes,
+        lowerCaseAttributes.toArray(new String[0]), attributeOffsets,
+        Arrays.copyOf(attributeIds, attributeOffsets[size]), parallelThreshold);
+  }
+
+  /**
+   * Get the restaurants within the radius of the given location that are open at the given time.
+   * @return open restaurants strictly within the radius, in the order they were loaded
+   */
+  public List<RestaurantEntity> findOpenWithinRadius(double latitude, double longitude,
+      double radiusInKms, LocalTime time) {
+    return toRestaurants(scan(latitude, longitude, radiusInKms, time, null));
+  }
+
+  /**
+   * Get the open restaurants within the radius that have an attribute containing the search
+   * string, ignoring case.
+   * @return matching restaurants, in the order they were loaded
+   */
+  public List<RestaurantEntity> findOpenWithinRadiusByAttribute(double latitude,
+      double longitude, double radiusInKms, LocalTime time, String searchString) {
+    String lowerCaseSearchString = searchString.toLowerCase(Locale.ROOT);
+    boolean[] matchingAttributes = new boolean[lowerCaseAttributes.length];
+    boolean anyMatch = false;
+    for (int attributeId = 0; attributeId < lowerCaseAttributes.length; attributeId++) {
+      if (lowerCaseAttributes[attributeId].contains(lowerCaseSearchString)) {
+        matchingAttributes[attributeId] = true;
+        anyMatch = true;
+      }
+    }
+    if (!anyMatch) {
+      return new ArrayList<>();
+    }
+    return toRestaurants(scan(latitude, longitude, radiusInKms, time, matchingAttributes));
+  }
+
+  public int size() {
+    return restaurants.size();
+  }
+
+  public int attributeCount() {
+    return lowerCaseAttributes.length;
+  }
+
+  private int[] scan(double latitude, double longitude, double radiusInKms, LocalTime time,
+      boolean[] matchingAttributes) {
+    ScanTask task = new ScanTask(latitude, longitude, radiusInKms, time, matchingAttributes,
+        0, restaurants.size());
+    return restaurants.size() <= parallelThreshold ? task.compute()
+        : ForkJoinPool.commonPool().invoke(task);
+  }
+
+  private int scanRange(double latitude, double longitude, double radiusInKms, LocalTime time,
+      boolean[] matchingAttributes, int from, int to, int[] hits) {
+    int hitCount = GeoUtils.findIndicesWithinRadius(latitude, longitude, latitudes, longitudes,
+        from, to, radiusInKms, hits);
+    hitCount = openingHoursIndex.retainOpen(hits, hitCount, time);
+    if (matchingAttributes == null) {
+      return hitCount;
+    }
+
+    int matchCount = 0;
+    for (int i = 0; i < hitCount; i++) {
+      int ordinal = hits[i];
+      for (int offset = attributeOffsets[ordinal]; offset < attributeOffsets[ordinal + 1];
+          offset++) {
+        if (matchingAttributes[attributeIds[offset]]) {
+          hits[matchCount++] = ordinal;
+          break;
+        }
+      }
+    }
+    return matchCount;
+  }
+
+  private List<RestaurantEntity> toRestaurants(int[] ordinals) {
+    List<RestaurantEntity> result = new ArrayList<>(ordinals.length);
+    for (int ordinal : ordinals) {
+      result.add(restaurants.get(ordinal));
+    }
+    return result;
+  }
+
+  // Splits the range in halves down to parallelThreshold restaurants; results are concatenated
+  // left to right so the parallel scan returns the same order as the sequential one.
+  private final class ScanTask extends RecursiveTask<int[]> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final double latitude;
+    private final double longitude;
+    private final double radiusInKms;
+    private final LocalTime time;
+    private final boolean[] matchingAttributes;
+    private final int from;
+    private final int to;
+
+    private ScanTask(double latitude, double longitude, double radiusInKms, LocalTime time,
+        boolean[] matchingAttributes, int from, int to) {
+      this.latitude = latitude;
+      this.longitude = longitude;
+      this.radiusInKms = radiusInKms;
+      this.time = time;
+      this.matchingAttributes = matchingAttributes;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected int[] compute() {
+      if (to - from <= parallelThreshold) {
+        int[] hits = hitBuffers.get();
+        if (hits.length < to - from) {
+          hits = new int[to - from];
+          hitBuffers.set(hits);
+        }
+        int hitCount = scanRange(latitude, longitude, radiusInKms, time, matchingAttributes,
+            from, to, hits);
+        return Arrays.copyOf(hits, hitCount);
+      }
+
+      int middle = (from + to) >>> 1;
+      ScanTask left = new ScanTask(latitude, longitude, radiusInKms, time, matchingAttributes,
+          from, middle);
+      ScanTask right = new ScanTask(latitude, longitude, radiusInKms, time, matchingAttributes,
+          middle, to);
+      left.fork();
+      int[] rightHits = right.compute();
+      int[] leftHits = left.join();
+
+      int[] hits = Arrays.copyOf(leftHits, leftHits.length + rightHits.length);
+      System.arraycopy(rightHits, 0, hits, leftHits.length, rightHits.length);
+      return hits;
+    }
+  }
+}
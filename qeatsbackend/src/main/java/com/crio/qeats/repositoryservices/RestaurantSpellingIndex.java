@@ -0,0 +1,138 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.BkTree;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Spelling corrections for search queries from the vocabulary of restaurant names, cuisines
+ * and dish names. Both whole names and their single words are terms, so "biriyani" corrects
+ * to the word "briyani" of "Chicken Briyani". Terms are looked up in a BK-tree within an edit
+ * distance that grows with the query length, and ranked by distance and then by how many
+ * restaurants use them.
+ */
+public class RestaurantSpellingIndex {
+
+  // Words shorter than this are too ambiguous to correct or to be corrected to.
+  static final int MIN_TERM_LENGTH = 4;
+  // Queries of at least this many characters may be two edits away from a term, others one.
+  static final int TWO_EDITS_MIN_LENGTH = 8;
+
+  private final BkTree terms;
+  private final Map<String, Integer> restaurantCounts;
+
+  private RestaurantSpellingIndex(BkTree terms, Map<String, Integer> restaurantCounts) {
+    this.terms = terms;
+    this.restaurantCounts = restaurantCounts;
+  }
+
+  /**
+   * Builds the index for the given restaurants and menus.
+   * @param restaurants restaurants as loaded from the database
+   * @param menus menus as loaded from the database; menus of unknown restaurants are ignored
+   * @return spelling index over the restaurants and menus
+   */
+  public static RestaurantSpellingIndex build(List<RestaurantEntity> restaurants,
+      List<MenuEntity> menus) {
+    Map<String, List<Item>> itemsByRestaurant = new HashMap<>();
+    for (MenuEntity menu : menus) {
+      if (menu.getRestaurantId() != null && menu.getItems() != null) {
+        itemsByRestaurant.computeIfAbsent(menu.getRestaurantId(), id -> new ArrayList<>())
+            .addAll(menu.getItems());
+      }
+    }
+
+    Map<String, Integer> restaurantCounts = new HashMap<>();
+    Set<String> seenRestaurants = new HashSet<>();
+    for (RestaurantEntity restaurant : restaurants) {
+      if (restaurant.getRestaurantId() != null
+          && !seenRestaurants.add(restaurant.getRestaurantId())) {
+        continue;
+      }
+      Set<String> termsOfRestaurant = new HashSet<>();
+      addTerms(termsOfRestaurant, restaurant.getName());
+      if (restaurant.getAttributes() != null) {
+        for (String attribute : restaurant.getAttributes()) {
+          addTerms(termsOfRestaurant, attribute);
+        }
+      }
+      for (Item item : itemsByRestaurant.getOrDefault(restaurant.getRestaurantId(),
+          Collections.emptyList())) {
+        addTerms(termsOfRestaurant, item.getName());
+      }
+      for (String term : termsOfRestaurant) {
+        restaurantCounts.merge(term, 1, Integer::sum);
+      }
+    }
+
+    // Popular terms go in first and end up near the root, where a cut-off lookup still sees them.
+    List<String> terms = new ArrayList<>(restaurantCounts.keySet());
+    terms.sort(Comparator.<String>comparingInt(term -> -restaurantCounts.get(term))
+        .thenComparing(Comparator.naturalOrder()));
+    return new RestaurantSpellingIndex(BkTree.build(terms), restaurantCounts);
+  }
+
+  /**
+   * Get the terms the query was most likely meant to be.
+   * @param searchFor query, in any case; the query itself is never a correction
+   * @param limit maximum number of corrections
+   * @param deadlineInNanos System.nanoTime() after which the lookup stops
+   * @return lower-cased corrections, best first
+   */
+  public List<String> correct(String searchFor, int limit, long deadlineInNanos) {
+    String query = searchFor.trim().toLowerCase(Locale.ROOT);
+    List<String> corrections = new ArrayList<>();
+    if (query.length() < MIN_TERM_LENGTH || limit <= 0) {
+      return corrections;
+    }
+    int maxDistance = query.length() >= TWO_EDITS_MIN_LENGTH ? 2 : 1;
+    List<BkTree.Match> matches = terms.search(query, maxDistance, deadlineInNanos);
+    matches.sort(Comparator.comparingInt(BkTree.Match::getDistance)
+        .thenComparingInt(match -> -restaurantCounts.get(match.getTerm()))
+        .thenComparing(BkTree.Match::getTerm));
+    for (BkTree.Match match : matches) {
+      if (corrections.size() == limit) {
+        break;
+      }
+      if (match.getDistance() > 0) {
+        corrections.add(match.getTerm());
+      }
+    }
+    return corrections;
+  }
+
+  public int termCount() {
+    return terms.size();
+  }
+
+  private static void addTerms(Set<String> termsOfRestaurant, String text) {
+    if (text == null) {
+      return;
+    }
+    String term = text.trim().toLowerCase(Locale.ROOT);
+    if (term.length() >= MIN_TERM_LENGTH) {
+      termsOfRestaurant.add(term);
+    }
+    for (String word : term.split("[^\\p{L}\\p{N}]+")) {
+      if (word.length() >= MIN_TERM_LENGTH) {
+        termsOfRestaurant.add(word);
+      }
+    }
+  }
+}
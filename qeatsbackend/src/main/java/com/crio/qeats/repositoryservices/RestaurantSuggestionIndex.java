@@ -0,0 +1,233 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import ch.hsr.geohash.GeoHash;
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Prefix completion over restaurant names, cuisines and dish names.
+ * Terms are kept lower-cased in one sorted array, so the completions of a prefix are a
+ * contiguous range found with two binary searches. Popularity is the number of restaurants
+ * offering a term, counted overall and per geohash cell of LOCAL_PRECISION; a cell stores the
+ * ids of its terms sorted, so the same range is cut out of every cell around the user without
+ * scanning terms found elsewhere.
+ * Completions are ranked by restaurants offering them in the user's cell and its neighbours,
+ * then overall, then alphabetically.
+ */
+public class RestaurantSuggestionIndex {
+
+  // Cells of about 5 km by 5 km, roughly a serving radius.
+  static final int LOCAL_PRECISION = 5;
+
+  private final String[] terms;
+  private final String[] labels;
+  private final int[] restaurantCounts;
+  private final Map<String, CellTerms> cells;
+
+  private RestaurantSuggestionIndex(String[] terms, String[] labels, int[] restaurantCounts,
+      Map<String, CellTerms> cells) {
+    this.terms = terms;
+    this.labels = labels;
+    this.restaurantCounts = restaurantCounts;
+    this.cells = cells;
+  }
+
+  /**
+   * Builds the index for the given restaurants and menus.
+   * @param restaurants restaurants as loaded from the database
+   * @param menus menus as loaded from the database; menus of unknown restaurants are ignored
+   * @return suggestion index over the restaurants and menus
+   */
+  public static RestaurantSuggestionIndex build(List<RestaurantEntity> restaurants,
+      List<MenuEntity> menus) {
+    Map<String, List<Item>> itemsByRestaurant = new HashMap<>();
+    for (MenuEntity menu : menus) {
+      if (menu.getRestaurantId() != null && menu.getItems() != null) {
+        itemsByRestaurant.computeIfAbsent(menu.getRestaurantId(), id -> new ArrayList<>())
+            .addAll(menu.getItems());
+      }
+    }
+
+    // Lower-cased term to the spelling it was first seen with, and the restaurant counts.
+    TreeMap<String, String> labelsByTerm = new TreeMap<>();
+    Map<String, Integer> counts = new HashMap<>();
+    Map<String, Map<String, Integer>> countsByCell = new HashMap<>();
+    Set<String> seenRestaurants = new HashSet<>();
+    for (RestaurantEntity restaurant : restaurants) {
+      if (restaurant.getRestaurantId() != null
+          && !seenRestaurants.add(restaurant.getRestaurantId())) {
+        continue;
+      }
+      Map<String, String> termsOfRestaurant = new HashMap<>();
+      addTerm(termsOfRestaurant, restaurant.getName());
+      if (restaurant.getAttributes() != null) {
+        for (String attribute : restaurant.getAttributes()) {
+          addTerm(termsOfRestaurant, attribute);
+        }
+      }
+      for (Item item : itemsByRestaurant.getOrDefault(restaurant.getRestaurantId(),
+          Collections.emptyList())) {
+        addTerm(termsOfRestaurant, item.getName());
+      }
+
+      Map<String, Integer> cellCounts = null;
+      if (restaurant.getLatitude() != null && restaurant.getLongitude() != null) {
+        cellCounts = countsByCell.computeIfAbsent(GeoHash.withCharacterPrecision(
+            restaurant.getLatitude(), restaurant.getLongitude(), LOCAL_PRECISION).toBase32(),
+            cell -> new HashMap<>());
+      }
+      for (Map.Entry<String, String> term : termsOfRestaurant.entrySet()) {
+        labelsByTerm.putIfAbsent(term.getKey(), term.getValue());
+        counts.merge(term.getKey(), 1, Integer::sum);
+        if (cellCounts != null) {
+          cellCounts.merge(term.getKey(), 1, Integer::sum);
+        }
+      }
+    }
+
+    String[] terms = labelsByTerm.keySet().toArray(new String[0]);
+    String[] labels = labelsByTerm.values().toArray(new String[0]);
+    int[] restaurantCounts = new int[terms.length];
+    Map<String, Integer> termIds = new HashMap<>();
+    for (int termId = 0; termId < terms.length; termId++) {
+      restaurantCounts[termId] = counts.get(terms[termId]);
+      termIds.put(terms[termId], termId);
+    }
+
+    Map<String, CellTerms> cells = new HashMap<>();
+    for (Map.Entry<String, Map<String, Integer>> cell : countsByCell.entrySet()) {
+      int[] cellTermIds = new int[cell.getValue().size()];
+      int i = 0;
+      for (String term : cell.getValue().keySet()) {
+        cellTermIds[i++] = termIds.get(term);
+      }
+      Arrays.sort(cellTermIds);
+      int[] cellCounts = new int[cellTermIds.length];
+      for (i = 0; i < cellTermIds.length; i++) {
+        cellCounts[i] = cell.getValue().get(terms[cellTermIds[i]]);
+      }
+      cells.put(cell.getKey(), new CellTerms(cellTermIds, cellCounts));
+    }
+    return new RestaurantSuggestionIndex(terms, labels, restaurantCounts, cells);
+  }
+
+  /**
+   * Get the most popular completions of the prefix around the given location.
+   * @param prefix start of a restaurant, cuisine or dish name, in any case
+   * @param limit maximum number of completions
+   * @return completions, in the spelling they were first seen with, most popular first
+   */
+  public List<String> suggest(double latitude, double longitude, String prefix, int limit) {
+    String lowerCasePrefix = prefix.trim().toLowerCase(Locale.ROOT);
+    if (lowerCasePrefix.isEmpty() || limit <= 0) {
+      return new ArrayList<>();
+    }
+    int from = lowerBound(terms, lowerCasePrefix);
+    int to = lowerBound(terms, lowerCasePrefix + Character.MAX_VALUE);
+    if (from == to) {
+      return new ArrayList<>();
+    }
+
+    Map<Integer, Integer> localCounts = new HashMap<>();
+    GeoHash cell = GeoHash.withCharacterPrecision(latitude, longitude, LOCAL_PRECISION);
+    addLocalCounts(cell, from, to, localCounts);
+    for (GeoHash neighbour : cell.getAdjacent()) {
+      addLocalCounts(neighbour, from, to, localCounts);
+    }
+
+    Comparator<Integer> bestFirst = Comparator
+        .<Integer>comparingInt(termId -> -localCounts.getOrDefault(termId, 0))
+        .thenComparingInt(termId -> -restaurantCounts[termId])
+        .thenComparingInt(termId -> termId);
+    PriorityQueue<Integer> worstFirst = new PriorityQueue<>(limit, bestFirst.reversed());
+    // Terms found nearby beat every other term, so the rest only matter if there are too few.
+    if (localCounts.size() >= limit) {
+      for (int termId : localCounts.keySet()) {
+        offer(worstFirst, bestFirst, limit, termId);
+      }
+    } else {
+      for (int termId = from; termId < to; termId++) {
+        offer(worstFirst, bestFirst, limit, termId);
+      }
+    }
+
+    String[] suggestions = new String[worstFirst.size()];
+    for (int i = suggestions.length - 1; i >= 0; i--) {
+      suggestions[i] = labels[worstFirst.poll()];
+    }
+    return new ArrayList<>(Arrays.asList(suggestions));
+  }
+
+  public int termCount() {
+    return terms.length;
+  }
+
+  public int cellCount() {
+    return cells.size();
+  }
+
+  private static void offer(PriorityQueue<Integer> worstFirst, Comparator<Integer> bestFirst,
+      int limit, int termId) {
+    if (worstFirst.size() < limit) {
+      worstFirst.add(termId);
+    } else if (bestFirst.compare(termId, worstFirst.peek()) < 0) {
+      worstFirst.poll();
+      worstFirst.add(termId);
+    }
+  }
+
+  private void addLocalCounts(GeoHash geoHash, int from, int to,
+      Map<Integer, Integer> localCounts) {
+    CellTerms cellTerms = cells.get(geoHash.toBase32());
+    if (cellTerms == null) {
+      return;
+    }
+    int i = Arrays.binarySearch(cellTerms.termIds, from);
+    for (i = i < 0 ? -i - 1 : i; i < cellTerms.termIds.length && cellTerms.termIds[i] < to;
+        i++) {
+      localCounts.merge(cellTerms.termIds[i], cellTerms.counts[i], Integer::sum);
+    }
+  }
+
+  private static void addTerm(Map<String, String> termsOfRestaurant, String label) {
+    if (label == null || label.trim().isEmpty()) {
+      return;
+    }
+    String trimmed = label.trim();
+    termsOfRestaurant.putIfAbsent(trimmed.toLowerCase(Locale.ROOT), trimmed);
+  }
+
+  private static int lowerBound(String[] sorted, String key) {
+    int i = Arrays.binarySearch(sorted, key);
+    return i < 0 ? -i - 1 : i;
+  }
+
+  private static final class CellTerms {
+    private final int[] termIds;
+    private final int[] counts;
+
+    private CellTerms(int[] termIds, int[] counts) {
+      this.termIds = termIds;
+      this.counts = counts;
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.GeoUtils;
+import com.crio.qeats.utils.TrigramIndex;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Name, cuisine and menu item search over a snapshot of restaurants and their menus.
+ * Substring matches come from trigram indexes over restaurant names and attributes, and over
+ * the item names and item attributes of every menu. Menus are resolved to restaurants through
+ * an in-memory map, and the serving radius and opening hours are only checked for the
+ * restaurants that match the text.
+ */
+public class RestaurantTextIndex {
+
+  private final List<RestaurantEntity> restaurants;
+  private final TrigramIndex nameIndex;
+  private final TrigramIndex attributeIndex;
+  private final TrigramIndex itemNameIndex;
+  private final TrigramIndex itemAttributeIndex;
+  // Ordinal of the restaurant of every menu, -1 if the restaurant is unknown.
+  private final int[] menuRestaurants;
+  private final OpeningHoursIndex openingHoursIndex;
+
+  private RestaurantTextIndex(List<RestaurantEntity> restaurants, TrigramIndex nameIndex,
+      TrigramIndex attributeIndex, TrigramIndex itemNameIndex, TrigramIndex itemAttributeIndex,
+      int[] menuRestaurants) {
+    this.restaurants = restaurants;
+    this.nameIndex = nameIndex;
+    this.attributeIndex = attributeIndex;
+    this.itemNameIndex = itemNameIndex;
+    this.itemAttributeIndex = itemAttributeIndex;
+    this.menuRestaurants = menuRestaurants;
+    this.openingHoursIndex = OpeningHoursIndex.build(restaurants);
+  }
+
+  /**
+   * Builds the indexes for the given restaurants and menus.
+   * @param restaurants restaurants as loaded from the database
+   * @param menus menus as loaded from the database
+   * @return text index over the restaurants and menus
+   */
+  public static RestaurantTextIndex build(List<RestaurantEntity> restaurants,
+      List<MenuEntity> menus) {
+    List<RestaurantEntity> snapshot = Collections.unmodifiableList(new ArrayList<>(restaurants));
+    List<List<String>> names = new ArrayList<>(snapshot.size());
+    List<List<String>> attributes = new ArrayList<>(snapshot.size());
+    Map<String, Integer> ordinalsById = new HashMap<>();
+    for (int ordinal = 0; ordinal < snapshot.size(); ordinal++) {
+      RestaurantEntity restaurant = snapshot.get(ordinal);
+      names.add(Collections.singletonList(restaurant.getName()));
+      attributes.add(restaurant.getAttributes());
+      ordinalsById.putIfAbsent(restaurant.getRestaurantId(), ordinal);
+    }
+
+    List<List<String>> itemNames = new ArrayList<>(menus.size());
+    List<List<String>> itemAttributes = new ArrayList<>(menus.size());
+    int[] menuRestaurants = new int[menus.size()];
+    for (int menuOrdinal = 0; menuOrdinal < menus.size(); menuOrdinal++) {
+      MenuEntity menu = menus.get(menuOrdinal);
+      List<String> itemNamesOfMenu = new ArrayList<>();
+      List<String> itemAttributesOfMenu = new ArrayList<>();
+      if (menu.getItems() != null) {
+        for (Item item : menu.getItems()) {
+          itemNamesOfMenu.add(item.getName());
+          if (item.getAttributes() != null) {
+            itemAttributesOfMenu.addAll(item.getAttributes());
+          }
+        }
+      }
+      itemNames.add(itemNamesOfMenu);
+      itemAttributes.add(itemAttributesOfMenu);
+      menuRestaurants[menuOrdinal] = ordinalsById.getOrDefault(menu.getRestaurantId(), -1);
+    }
+
+    return new RestaurantTextIndex(snapshot, TrigramIndex.build(names),
+        TrigramIndex.build(attributes), TrigramIndex.build(itemNames),
+        TrigramIndex.build(itemAttributes), menuRestaurants);
+  }
+
+  /**
+   * Get the open restaurants within the radius whose name contains the search string,
+   * ignoring case.
+   * @return matching restaurants, in the order they were loaded
+   */
+  public List<RestaurantEntity> findByName(double latitude, double longitude,
+      double radiusInKms, LocalTime time, String searchString) {
+    return filter(nameIndex.findContaining(searchString), latitude, longitude, radiusInKms,
+        time);
+  }
+
+  /**
+   * Get the open restaurants within the radius with an attribute containing the search string,
+   * ignoring case.
+   * @return matching restaurants, in the order they were loaded
+   */
+  public List<RestaurantEntity> findByAttribute(double latitude, double longitude,
+      double radiusInKms, LocalTime time, String searchString) {
+    return filter(attributeIndex.findContaining(searchString), latitude, longitude,
+        radiusInKms, time);
+  }
+
+  /**
+   * Get the open restaurants within the radius serving an item whose name contains the search
+   * string, ignoring case.
+   * @return matching restaurants, in the order their menus were loaded
+   */
+  public List<RestaurantEntity> findByItemName(double latitude, double longitude,
+      double radiusInKms, LocalTime time, String searchString) {
+    return filter(toRestaurantOrdinals(itemNameIndex.findContaining(searchString)), latitude,
+        longitude, radiusInKms, time);
+  }
+
+  /**
+   * Get the open restaurants within the radius serving an item with an attribute containing the
+   * search string, ignoring case.
+   * @return matching restaurants, in the order their menus were loaded
+   */
+  public List<RestaurantEntity> findByItemAttribute(double latitude, double longitude,
+      double radiusInKms, LocalTime time, String searchString) {
+    return filter(toRestaurantOrdinals(itemAttributeIndex.findContaining(searchString)),
+        latitude, longitude, radiusInKms, time);
+  }
+
+  public int size() {
+    return restaurants.size();
+  }
+
+  public int menuCount() {
+    return menuRestaurants.length;
+  }
+
+  public int trigramCount() {
+    return nameIndex.trigramCount() + attributeIndex.trigramCount()
+        + itemNameIndex.trigramCount() + itemAttributeIndex.trigramCount();
+  }
+
+  // A restaurant with several matching menus is only returned once.
+  private int[] toRestaurantOrdinals(int[] menuOrdinals) {
+    BitSet seen = new BitSet(restaurants.size());
+    int[] ordinals = new int[menuOrdinals.length];
+    int count = 0;
+    for (int menuOrdinal : menuOrdinals) {
+      int ordinal = menuRestaurants[menuOrdinal];
+      if (ordinal >= 0 && !seen.get(ordinal)) {
+        seen.set(ordinal);
+        ordinals[count++] = ordinal;
+      }
+    }
+    return Arrays.copyOf(ordinals, count);
+  }
+
+  private List<RestaurantEntity> filter(int[] ordinals, double latitude, double longitude,
+      double radiusInKms, LocalTime time) {
+    int openCount = openingHoursIndex.retainOpen(ordinals, ordinals.length, time);
+    List<RestaurantEntity> result = new ArrayList<>();
+    for (int i = 0; i < openCount; i++) {
+      RestaurantEntity restaurant = restaurants.get(ordinals[i]);
+      if (restaurant.getLatitude() != null && restaurant.getLongitude() != null
+          && GeoUtils.findDistanceInKm(latitude, longitude, restaurant.getLatitude(),
+              restaurant.getLongitude()) < radiusInKms) {
+        result.add(restaurant);
+      }
+    }
+    return result;
+  }
+}
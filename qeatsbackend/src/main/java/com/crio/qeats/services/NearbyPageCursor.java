@@ -0,0 +1,72 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursor of a nearby restaurants page.
+ * It holds the position of the last restaurant returned, its exact distance and restaurantId,
+ * so the next page starts strictly after it even when restaurants are added or removed.
+ */
+public final class NearbyPageCursor {
+
+  private static final String VERSION = "v1";
+  private static final String SEPARATOR = ":";
+
+  private final double distanceInKms;
+  private final String restaurantId;
+
+  public NearbyPageCursor(double distanceInKms, String restaurantId) {
+    this.distanceInKms = distanceInKms;
+    this.restaurantId = restaurantId;
+  }
+
+  public double getDistanceInKms() {
+    return distanceInKms;
+  }
+
+  public String getRestaurantId() {
+    return restaurantId;
+  }
+
+  /**
+   * Encodes the cursor as a URL safe token.
+   * The distance is kept as its raw bits so decoding gives back exactly the same value.
+   */
+  public String encode() {
+    String raw = VERSION + SEPARATOR + Long.toHexString(Double.doubleToLongBits(distanceInKms))
+        + SEPARATOR + restaurantId;
+    return Base64.getUrlEncoder().withoutPadding()
+        .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Decodes a token produced by encode.
+   * @throws IllegalArgumentException if the token was not produced by encode
+   */
+  public static NearbyPageCursor decode(String token) {
+    String raw;
+    try {
+      raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Malformed cursor: " + token, e);
+    }
+
+    String[] parts = raw.split(SEPARATOR, 3);
+    if (parts.length != 3 || !VERSION.equals(parts[0]) || parts[2].isEmpty()) {
+      throw new IllegalArgumentException("Malformed cursor: " + token);
+    }
+    try {
+      double distanceInKms = Double.longBitsToDouble(Long.parseUnsignedLong(parts[1], 16));
+      return new NearbyPageCursor(distanceInKms, parts[2]);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Malformed cursor: " + token, e);
+    }
+  }
+}
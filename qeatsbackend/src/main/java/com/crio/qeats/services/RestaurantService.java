@@ -7,9 +7,12 @@
 
 package com.crio.qeats.services;
 
+import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
 import java.time.LocalTime;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface RestaurantService {
 
@@ -19,7 +22,9 @@ public interface RestaurantService {
    * - service radius is 3KMs.
    * - All other times, serving radius is 5KMs.
    * - If there are no restaurants, return empty list of restaurants.
-   * @param getRestaurantsRequest valid lat/long
+   * - If the request has a limit or cursor, return one page of restaurants, nearest first,
+   *   with the cursor of the next page if more remain.
+   * @param getRestaurantsRequest valid lat/long, optional limit and cursor
    * @param currentTime current time.
    * @return GetRestaurantsResponse object containing a list of open restaurants or an
    *     empty list if none fits the criteria.
@@ -62,4 +67,18 @@ public interface RestaurantService {
    */
   GetRestaurantsResponse findRestaurantsBySearchQueryMt(
       GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime);
+
+  /**
+   * Same search as @link{findRestaurantsBySearchQueryMt}, handed over as each source answers.
+   * - Every batch holds the restaurants a source found that no earlier batch had, so the first
+   *   restaurants are available as soon as the fastest source answers.
+   * - Within the batch of name matches, exact matches come first.
+   * - Sources missing their deadline are left out; the batches stop at the limit.
+   * @param getRestaurantsRequest valid lat/long with searchFor string, optional limit
+   * @param currentTime current time
+   * @param sink receives each non-empty batch on the calling thread; throwing from it stops
+   *     the search
+   */
+  void streamRestaurantsBySearchQuery(GetRestaurantsRequest getRestaurantsRequest,
+      LocalTime currentTime, Consumer<List<Restaurant>> sink);
 }
@@ -11,18 +11,29 @@ import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
 import com.crio.qeats.repositoryservices.RestaurantRepositoryService;
+import com.crio.qeats.utils.GeoUtils;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
-import java.util.stream.Collectors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -31,9 +42,48 @@ public class RestaurantServiceImpl implements RestaurantService {
 
   private final Double peakHoursServingRadiusInKms = 3.0;
   private final Double normalHoursServingRadiusInKms = 5.0;
+
+  // Page size when only a cursor is given, and the largest page a client may ask for.
+  private static final int DEFAULT_PAGE_SIZE = 20;
+  private static final int MAX_PAGE_SIZE = 100;
+  private static final int DEFAULT_MAX_SEARCH_RESULTS = 100;
+  private static final int DEFAULT_MAX_SPELLING_CORRECTIONS = 3;
+  private static final long DEFAULT_SPELLING_CORRECTION_BUDGET_IN_MS = 200;
+
+  // How long the multi-threaded search waits for the sources backed by each collection.
+  @Value("${qeats.search.restaurants-timeout-in-ms:800}")
+  private long restaurantsTimeoutInMs;
+
+  @Value("${qeats.search.menus-timeout-in-ms:800}")
+  private long menusTimeoutInMs;
+
   @Autowired
   private RestaurantRepositoryService restaurantRepositoryService;
 
+  @Autowired
+  private SearchResultCache searchResultCache;
+
+  @Value("${qeats.search.cache.enabled:true}")
+  private boolean searchCacheEnabled;
+
+  // Most restaurants a search returns when the request has no smaller limit.
+  @Value("${qeats.search.max-results:" + DEFAULT_MAX_SEARCH_RESULTS + "}")
+  private int maxSearchResults = DEFAULT_MAX_SEARCH_RESULTS;
+
+  // A query that finds nothing is retried as the closest restaurant, cuisine or dish names.
+  // Looking them up and searching for them shares one budget, and at most max-corrections are
+  // searched.
+  @Value("${qeats.search.spelling-correction.enabled:true}")
+  private boolean spellingCorrectionEnabled;
+
+  @Value("${qeats.search.spelling-correction.budget-in-ms:"
+      + DEFAULT_SPELLING_CORRECTION_BUDGET_IN_MS + "}")
+  private long spellingCorrectionBudgetInMs = DEFAULT_SPELLING_CORRECTION_BUDGET_IN_MS;
+
+  @Value("${qeats.search.spelling-correction.max-corrections:"
+      + DEFAULT_MAX_SPELLING_CORRECTIONS + "}")
+  private int maxSpellingCorrections = DEFAULT_MAX_SPELLING_CORRECTIONS;
+
 
   // TODO: CRIO_TASK_MODULE_RESTAURANTSAPI - Implement findAllRestaurantsCloseby.
   // Check RestaurantService.java file for the interface contract.
@@ -41,25 +91,56 @@ public class RestaurantServiceImpl implements RestaurantService {
   public GetRestaurantsResponse findAllRestaurantsCloseBy(
       GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
 
-    List<Restaurant> restaurants;
+    if (getRestaurantsRequest.getLimit() != null || getRestaurantsRequest.getCursor() != null) {
+      return findRestaurantsCloseByPage(getRestaurantsRequest, currentTime);
+    }
+
+    List<Restaurant> restaurants = restaurantRepositoryService.findAllRestaurantsCloseBy(
+        getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(),
+        currentTime, getServingRadiusInKms(currentTime));
+    GetRestaurantsResponse response = new GetRestaurantsResponse(restaurants);
+    return response;
+
+  }
+
+  // One extra restaurant is fetched to know whether a next page exists without a count query.
+  private GetRestaurantsResponse findRestaurantsCloseByPage(
+      GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
+    Integer requestedLimit = getRestaurantsRequest.getLimit();
+    if (requestedLimit != null && requestedLimit < 1) {
+      throw new IllegalArgumentException("limit must be positive: " + requestedLimit);
+    }
+    int limit = requestedLimit == null ? DEFAULT_PAGE_SIZE
+        : Math.min(requestedLimit, MAX_PAGE_SIZE);
+    NearbyPageCursor cursor = getRestaurantsRequest.getCursor() == null ? null
+        : NearbyPageCursor.decode(getRestaurantsRequest.getCursor());
 
-    int timing = currentTime.getHour() * 100 + currentTime.getMinute();
     Double latitude = getRestaurantsRequest.getLatitude();
     Double longitude = getRestaurantsRequest.getLongitude();
+    List<Restaurant> restaurants = restaurantRepositoryService.findNearestRestaurantsCloseBy(
+        latitude, longitude, currentTime, getServingRadiusInKms(currentTime), limit + 1,
+        cursor == null ? null : cursor.getDistanceInKms(),
+        cursor == null ? null : cursor.getRestaurantId());
 
-    if ((timing >= 800 && timing <= 1000) || (timing >= 1300 && timing <= 1400) || 
-      (timing >= 1900 && timing <= 2100)) {
-      restaurants = restaurantRepositoryService.findAllRestaurantsCloseBy(
-      getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), 
-      currentTime, peakHoursServingRadiusInKms);
+    GetRestaurantsResponse response;
+    if (restaurants.size() > limit) {
+      response = new GetRestaurantsResponse(new ArrayList<>(restaurants.subList(0, limit)));
+      Restaurant last = restaurants.get(limit - 1);
+      response.setNextCursor(new NearbyPageCursor(GeoUtils.findDistanceInKm(latitude, longitude,
+          last.getLatitude(), last.getLongitude()), last.getRestaurantId()).encode());
     } else {
-      restaurants = restaurantRepositoryService.findAllRestaurantsCloseBy(
-      getRestaurantsRequest.getLatitude(), getRestaurantsRequest.getLongitude(), 
-      currentTime, normalHoursServingRadiusInKms);
+      response = new GetRestaurantsResponse(restaurants);
     }
-    GetRestaurantsResponse response = new GetRestaurantsResponse(restaurants);
     return response;
+  }
 
+  private Double getServingRadiusInKms(LocalTime currentTime) {
+    int timing = currentTime.getHour() * 100 + currentTime.getMinute();
+    if ((timing >= 800 && timing <= 1000) || (timing >= 1300 && timing <= 1400)
+        || (timing >= 1900 && timing <= 2100)) {
+      return peakHoursServingRadiusInKms;
+    }
+    return normalHoursServingRadiusInKms;
   }
 
 
@@ -101,30 +182,337 @@ public class RestaurantServiceImpl implements RestaurantService {
       response.setRestaurants(restaurantList);
       return response;
     } else {
-      List<Restaurant> restaurantList = restaurantRepositoryService.findRestaurantsByName(
-          latitude, longitude, searchFor, currentTime, currentRadius);
-      restaurantList.addAll(restaurantRepositoryService.findRestaurantsByAttributes(
-          latitude, longitude, searchFor, currentTime, currentRadius));
-      restaurantList.addAll(restaurantRepositoryService.findRestaurantsByItemName(
-          latitude, longitude, searchFor, currentTime, currentRadius));
-      restaurantList.addAll(restaurantRepositoryService.findRestaurantsByItemAttributes(
-          latitude, longitude, searchFor, currentTime, currentRadius));
-      List<Restaurant> responseList = restaurantList.stream().distinct()
-          .collect(Collectors.toList());
+      int limit = getSearchLimit(getRestaurantsRequest);
+      Double servingRadiusInKms = currentRadius;
+      List<Restaurant> responseList = searchCacheEnabled
+          ? first(limit, searchResultCache.search(latitude, longitude, searchFor, currentTime,
+              servingRadiusInKms, (cellLatitude, cellLongitude, query, time, radius) ->
+                  searchCorrectingSpelling(query, Integer.MAX_VALUE, corrected ->
+                      searchSequentially(cellLatitude, cellLongitude, corrected, time, radius,
+                          Integer.MAX_VALUE))))
+          : searchCorrectingSpelling(searchFor, limit, query ->
+              searchSequentially(latitude, longitude, query, currentTime, servingRadiusInKms,
+                  limit)).getRestaurants();
       response.setRestaurants(responseList);
     }
     return response;
   }
 
+  // A later source is only queried if its hits can still make it into the top results.
+  private SearchResultCache.Results searchSequentially(Double latitude, Double longitude,
+      String searchFor, LocalTime currentTime, Double servingRadiusInKms, int limit) {
+    return SearchResultRanker.rank(searchFor, Arrays.<Supplier<List<Restaurant>>>asList(
+        () -> restaurantRepositoryService.findRestaurantsByName(
+            latitude, longitude, searchFor, currentTime, servingRadiusInKms),
+        () -> restaurantRepositoryService.findRestaurantsByAttributes(
+            latitude, longitude, searchFor, currentTime, servingRadiusInKms),
+        () -> restaurantRepositoryService.findRestaurantsByItemName(
+            latitude, longitude, searchFor, currentTime, servingRadiusInKms),
+        () -> restaurantRepositoryService.findRestaurantsByItemAttributes(
+            latitude, longitude, searchFor, currentTime, servingRadiusInKms)), limit);
+  }
+
+  // Only a complete search that found nothing is corrected; the restaurants found for each
+  // correction, best correction first, fill the results up to the limit. Corrected results are
+  // cached under the query as typed, so a repeated typo skips the lookup. No further correction
+  // is searched once the budget has run out, and the results are then incomplete.
+  private SearchResultCache.Results searchCorrectingSpelling(String searchFor, int limit,
+      Function<String, SearchResultCache.Results> search) {
+    return correctSpelling(searchFor, limit, search.apply(searchFor), search);
+  }
+
+  private SearchResultCache.Results correctSpelling(String searchFor, int limit,
+      SearchResultCache.Results results, Function<String, SearchResultCache.Results> search) {
+    if (!spellingCorrectionEnabled || !results.isComplete()
+        || !results.getRestaurants().isEmpty()) {
+      return results;
+    }
+
+    long deadlineInNanos =
+        System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(spellingCorrectionBudgetInMs);
+    List<String> corrections;
+    try {
+      corrections = restaurantRepositoryService.findSpellingCorrections(searchFor,
+          maxSpellingCorrections, deadlineInNanos);
+    } catch (RuntimeException e) {
+      log.warn("Could not look up spelling corrections for {}", searchFor, e);
+      return results;
+    }
+
+    List<Restaurant> restaurants = new ArrayList<>();
+    Set<String> seen = new HashSet<>();
+    boolean complete = true;
+    for (String correction : corrections) {
+      if (restaurants.size() >= limit) {
+        break;
+      }
+      if (System.nanoTime() - deadlineInNanos >= 0) {
+        log.warn("Spelling correction of {} ran out of its budget", searchFor);
+        complete = false;
+        break;
+      }
+      SearchResultCache.Results corrected = search.apply(correction);
+      complete &= corrected.isComplete();
+      for (Restaurant restaurant : corrected.getRestaurants()) {
+        if (restaurants.size() < limit && seen.add(restaurant.getRestaurantId())) {
+          restaurants.add(restaurant);
+        }
+      }
+    }
+    return new SearchResultCache.Results(restaurants, complete);
+  }
+
+  // Cached entries cover a whole cell, so they hold every hit and are cut to the limit after
+  // the exact radius has been applied.
+  private int getSearchLimit(GetRestaurantsRequest getRestaurantsRequest) {
+    Integer requestedLimit = getRestaurantsRequest.getLimit();
+    if (requestedLimit != null && requestedLimit < 1) {
+      throw new IllegalArgumentException("limit must be positive: " + requestedLimit);
+    }
+    return requestedLimit == null ? maxSearchResults
+        : Math.min(requestedLimit, maxSearchResults);
+  }
+
+  private static List<Restaurant> first(int limit, List<Restaurant> restaurants) {
+    return restaurants.size() <= limit ? restaurants
+        : new ArrayList<>(restaurants.subList(0, limit));
+  }
+
   // TODO: CRIO_TASK_MODULE_MULTITHREADING
   // Implement multi-threaded version of RestaurantSearch.
   // Implement variant of findRestaurantsBySearchQuery which is at least 1.5x time faster than
   // findRestaurantsBySearchQuery.
+  // All four sources are started at once; each is then awaited until its own deadline, measured
+  // from the fan-out, and contributes nothing if it misses it or fails. The results are ranked
+  // the same way as the sequential search.
   @Override
   public GetRestaurantsResponse findRestaurantsBySearchQueryMt(
       GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
 
-     return null;
+    Double latitude = getRestaurantsRequest.getLatitude();
+    Double longitude = getRestaurantsRequest.getLongitude();
+    String searchFor = getRestaurantsRequest.getSearchFor();
+    if (searchFor == null || searchFor.isEmpty()) {
+      return new GetRestaurantsResponse(new ArrayList<>());
+    }
+    Double servingRadiusInKms = getServingRadiusInKms(currentTime);
+
+    int limit = getSearchLimit(getRestaurantsRequest);
+
+    return new GetRestaurantsResponse(searchCacheEnabled
+        ? first(limit, searchResultCache.search(latitude, longitude, searchFor, currentTime,
+            servingRadiusInKms, (cellLatitude, cellLongitude, query, time, radius) ->
+                searchCorrectingSpelling(query, Integer.MAX_VALUE, corrected ->
+                    searchConcurrently(cellLatitude, cellLongitude, corrected, time, radius,
+                        Integer.MAX_VALUE))))
+        : searchCorrectingSpelling(searchFor, limit, query ->
+            searchConcurrently(latitude, longitude, query, currentTime, servingRadiusInKms,
+                limit)).getRestaurants());
+  }
+
+  // Sources that are not needed for the top results are cancelled.
+  private SearchResultCache.Results searchConcurrently(Double latitude, Double longitude,
+      String searchFor, LocalTime currentTime, Double servingRadiusInKms, int limit) {
+    long start = System.nanoTime();
+    Future<List<Restaurant>> byName = submit("name",
+        () -> restaurantRepositoryService.findRestaurantsByNameAsync(
+            latitude, longitude, searchFor, currentTime, servingRadiusInKms));
+    Future<List<Restaurant>> byAttributes = submit("attributes",
+        () -> restaurantRepositoryService.findRestaurantsByAttributesAsync(
+            latitude, longitude, searchFor, currentTime, servingRadiusInKms));
+    Future<List<Restaurant>> byItemName = submit("item name",
+        () -> restaurantRepositoryService.findRestaurantsByItemNameAsync(
+            latitude, longitude, searchFor, currentTime, servingRadiusInKms));
+    Future<List<Restaurant>> byItemAttributes = submit("item attributes",
+        () -> restaurantRepositoryService.findRestaurantsByItemAttributesAsync(
+            latitude, longitude, searchFor, currentTime, servingRadiusInKms));
+
+    long restaurantsDeadline = start + TimeUnit.MILLISECONDS.toNanos(restaurantsTimeoutInMs);
+    long menusDeadline = start + TimeUnit.MILLISECONDS.toNanos(menusTimeoutInMs);
+    SearchResultCache.Results results = SearchResultRanker.rank(searchFor,
+        Arrays.<Supplier<List<Restaurant>>>asList(
+            () -> await("name", byName, restaurantsDeadline),
+            () -> await("attributes", byAttributes, restaurantsDeadline),
+            () -> await("item name", byItemName, menusDeadline),
+            () -> await("item attributes", byItemAttributes, menusDeadline)), limit);
+    for (Future<List<Restaurant>> future
+        : Arrays.asList(byName, byAttributes, byItemName, byItemAttributes)) {
+      if (future != null) {
+        future.cancel(true);
+      }
+    }
+    return results;
+  }
+
+  // Every source pushes its hits into a queue as it answers. The calling thread is the only one
+  // to touch the sink: it takes the hits in arrival order, drops the restaurants already handed
+  // over, and stops once every source answered, the last deadline passed or the limit is
+  // reached. Hits of a source arriving after its own deadline are dropped, as in the
+  // multi-threaded search. Streamed results are not cached; a complete stream without any
+  // restaurant is followed by the restaurants of the spelling corrections, in one batch.
+  @Override
+  public void streamRestaurantsBySearchQuery(GetRestaurantsRequest getRestaurantsRequest,
+      LocalTime currentTime, Consumer<List<Restaurant>> sink) {
+
+    Double latitude = getRestaurantsRequest.getLatitude();
+    Double longitude = getRestaurantsRequest.getLongitude();
+    String searchFor = getRestaurantsRequest.getSearchFor();
+    if (searchFor == null || searchFor.isEmpty()) {
+      return;
+    }
+    Double servingRadiusInKms = getServingRadiusInKms(currentTime);
+    int limit = getSearchLimit(getRestaurantsRequest);
+
+    long start = System.nanoTime();
+    long restaurantsDeadline = start + TimeUnit.MILLISECONDS.toNanos(restaurantsTimeoutInMs);
+    long menusDeadline = start + TimeUnit.MILLISECONDS.toNanos(menusTimeoutInMs);
+    String[] sources = {"name", "attributes", "item name", "item attributes"};
+    long[] deadlines = {restaurantsDeadline, restaurantsDeadline, menusDeadline, menusDeadline};
+    List<CompletableFuture<List<Restaurant>>> futures = Arrays.asList(
+        submit(sources[0], () -> restaurantRepositoryService.findRestaurantsByNameAsync(
+            latitude, longitude, searchFor, currentTime, servingRadiusInKms)),
+        submit(sources[1], () -> restaurantRepositoryService.findRestaurantsByAttributesAsync(
+            latitude, longitude, searchFor, currentTime, servingRadiusInKms)),
+        submit(sources[2], () -> restaurantRepositoryService.findRestaurantsByItemNameAsync(
+            latitude, longitude, searchFor, currentTime, servingRadiusInKms)),
+        submit(sources[3], () -> restaurantRepositoryService
+            .findRestaurantsByItemAttributesAsync(
+                latitude, longitude, searchFor, currentTime, servingRadiusInKms)));
+
+    BlockingQueue<SourceHits> answers = new LinkedBlockingQueue<>();
+    int pending = 0;
+    for (int source = 0; source < futures.size(); source++) {
+      CompletableFuture<List<Restaurant>> future = futures.get(source);
+      if (future != null) {
+        int answeredSource = source;
+        future.whenComplete((restaurants, error) ->
+            answers.add(new SourceHits(answeredSource, restaurants, error)));
+        pending++;
+      }
+    }
+
+    boolean complete = pending == futures.size();
+    Set<String> seen = new HashSet<>();
+    int streamed = 0;
+    try {
+      long lastDeadline = Math.max(restaurantsDeadline, menusDeadline);
+      while (pending > 0 && streamed < limit) {
+        SourceHits hits = answers.poll(Math.max(0, lastDeadline - System.nanoTime()),
+            TimeUnit.NANOSECONDS);
+        if (hits == null) {
+          log.warn("Streamed search missed its deadline, returning partial results");
+          complete = false;
+          break;
+        }
+        pending--;
+        if (hits.error != null) {
+          log.warn("Search by {} failed, returning partial results", sources[hits.source],
+              hits.error);
+          complete = false;
+          continue;
+        }
+        if (System.nanoTime() - deadlines[hits.source] > 0) {
+          log.warn("Search by {} missed its deadline, returning partial results",
+              sources[hits.source]);
+          complete = false;
+          continue;
+        }
+
+        List<Restaurant> batch = new ArrayList<>();
+        for (Restaurant restaurant : hits.source == SearchResultRanker.BY_NAME
+            ? exactNameMatchesFirst(searchFor, hits.restaurants) : hits.restaurants) {
+          if (streamed + batch.size() < limit && seen.add(restaurant.getRestaurantId())) {
+            batch.add(restaurant);
+          }
+        }
+        if (!batch.isEmpty()) {
+          sink.accept(batch);
+          streamed += batch.size();
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return;
+    } finally {
+      for (Future<List<Restaurant>> future : futures) {
+        if (future != null) {
+          future.cancel(true);
+        }
+      }
+    }
+
+    if (streamed == 0 && complete) {
+      List<Restaurant> corrected = correctSpelling(searchFor, limit,
+          new SearchResultCache.Results(new ArrayList<>(), true), query ->
+              searchConcurrently(latitude, longitude, query, currentTime, servingRadiusInKms,
+                  limit)).getRestaurants();
+      if (!corrected.isEmpty()) {
+        sink.accept(corrected);
+      }
+    }
+  }
+
+  private static List<Restaurant> exactNameMatchesFirst(String searchFor,
+      List<Restaurant> restaurants) {
+    String query = SearchResultCache.normalize(searchFor);
+    List<Restaurant> ordered = new ArrayList<>(restaurants.size());
+    for (Restaurant restaurant : restaurants) {
+      if (restaurant.getName() != null
+          && SearchResultCache.normalize(restaurant.getName()).equals(query)) {
+        ordered.add(restaurant);
+      }
+    }
+    for (Restaurant restaurant : restaurants) {
+      if (restaurant.getName() == null
+          || !SearchResultCache.normalize(restaurant.getName()).equals(query)) {
+        ordered.add(restaurant);
+      }
+    }
+    return ordered;
+  }
+
+  // Hits of one source, or the reason it failed.
+  private static final class SourceHits {
+    private final int source;
+    private final List<Restaurant> restaurants;
+    private final Throwable error;
+
+    private SourceHits(int source, List<Restaurant> restaurants, Throwable error) {
+      this.source = source;
+      this.restaurants = restaurants == null ? new ArrayList<>() : restaurants;
+      this.error = error;
+    }
+  }
+
+  // A full executor rejects the task when it is submitted; that source is skipped.
+  private <T extends Future<List<Restaurant>>> T submit(String source, Supplier<T> search) {
+    try {
+      return search.get();
+    } catch (TaskRejectedException e) {
+      log.warn("Search by {} rejected, executor is saturated", source);
+      return null;
+    }
+  }
+
+  // Returns null when the source did not answer in time.
+  private List<Restaurant> await(String source, Future<List<Restaurant>> future,
+      long deadlineInNanos) {
+    if (future == null) {
+      return null;
+    }
+    try {
+      List<Restaurant> restaurants = future.get(
+          Math.max(0, deadlineInNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+      return restaurants == null ? new ArrayList<>() : restaurants;
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      log.warn("Search by {} missed its deadline, returning partial results", source);
+    } catch (ExecutionException e) {
+      log.warn("Search by {} failed, returning partial results", source, e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return null;
   }
 }
 
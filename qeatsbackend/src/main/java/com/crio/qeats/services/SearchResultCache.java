@@ -0,0 +1,215 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import ch.hsr.geohash.GeoHash;
+import ch.hsr.geohash.WGS84Point;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.globals.GlobalConstants;
+import com.crio.qeats.repositoryservices.RestaurantRepositoryService;
+import com.crio.qeats.utils.GeoUtils;
+import com.crio.qeats.utils.OpeningHours;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+
+/**
+ * Caches search results in Redis by normalized query, geohash cell and serving radius.
+ * An entry holds the ids of the restaurants matching the query within the serving radius plus
+ * the cell's half diagonal of the cell center, so it serves every point in the cell; the exact
+ * radius and opening hours are applied to the fetched restaurants on every read. A restaurant
+ * that opens after the entry was written is only found once the entry expires.
+ * Searches run uncached whenever Redis is unavailable.
+ */
+@Component
+@Log4j2
+public class SearchResultCache {
+
+  /**
+   * Runs the search the cache stands in front of.
+   */
+  @FunctionalInterface
+  public interface Search {
+    Results find(Double latitude, Double longitude, String searchFor, LocalTime currentTime,
+        Double servingRadiusInKms);
+  }
+
+  /**
+   * Restaurants found by a search. Incomplete results, where a source did not answer, are
+   * returned but not cached.
+   */
+  public static final class Results {
+
+    private final List<Restaurant> restaurants;
+    private final boolean complete;
+
+    public Results(List<Restaurant> restaurants, boolean complete) {
+      this.restaurants = restaurants;
+      this.complete = complete;
+    }
+
+    public List<Restaurant> getRestaurants() {
+      return restaurants;
+    }
+
+    public boolean isComplete() {
+      return complete;
+    }
+  }
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+
+  @Autowired
+  private RestaurantRepositoryService restaurantRepositoryService;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private Counter hits;
+  private Counter misses;
+  private Counter bypasses;
+  private Timer hitLatency;
+  private Timer missLatency;
+  private Timer savedLatency;
+
+  @PostConstruct
+  void registerMeters() {
+    hits = meterRegistry.counter("qeats.search.cache.requests", "result", "hit");
+    misses = meterRegistry.counter("qeats.search.cache.requests", "result", "miss");
+    bypasses = meterRegistry.counter("qeats.search.cache.requests", "result", "bypass");
+    hitLatency = meterRegistry.timer("qeats.search.cache.latency", "result", "hit");
+    missLatency = meterRegistry.timer("qeats.search.cache.latency", "result", "miss");
+    // Per hit, how much faster it was than the average miss.
+    savedLatency = meterRegistry.timer("qeats.search.cache.saved");
+    meterRegistry.gauge("qeats.search.cache.hit.ratio", this, SearchResultCache::hitRatio);
+  }
+
+  /**
+   * Normalizes a search query the way it is cached. Searches ignore case, so folding it does
+   * not change the results.
+   */
+  public static String normalize(String searchFor) {
+    return searchFor.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Get the restaurants matching the search, from the cache when possible.
+   * @param search the uncached search; on a miss it runs once for the whole cell
+   * @return open restaurants within the serving radius matching the normalized query
+   */
+  public List<Restaurant> search(Double latitude, Double longitude, String searchFor,
+      LocalTime currentTime, Double servingRadiusInKms, Search search) {
+    String query = normalize(searchFor);
+    if (!redisConfiguration.isCacheAvailable()) {
+      bypasses.increment();
+      return search.find(latitude, longitude, query, currentTime, servingRadiusInKms)
+          .getRestaurants();
+    }
+
+    long start = System.nanoTime();
+    GeoHash geoHash = GeoHash.withCharacterPrecision(latitude, longitude,
+        GlobalConstants.SEARCH_CACHE_GEOHASH_PRECISION);
+    String key = GlobalConstants.SEARCH_CACHE_KEY_PREFIX + geoHash.toBase32() + ":"
+        + servingRadiusInKms + ":" + query;
+
+    List<String> restaurantIds = read(key);
+    if (restaurantIds != null) {
+      List<Restaurant> restaurants = restaurantIds.isEmpty() ? new ArrayList<Restaurant>()
+          : restaurantRepositoryService.findRestaurantsByIds(restaurantIds);
+      restaurants = retainCloseByAndOpen(restaurants, latitude, longitude, currentTime,
+          servingRadiusInKms);
+      long elapsed = System.nanoTime() - start;
+      hits.increment();
+      hitLatency.record(elapsed, TimeUnit.NANOSECONDS);
+      if (missLatency.count() > 0) {
+        savedLatency.record(Math.max(0,
+            (long) missLatency.mean(TimeUnit.NANOSECONDS) - elapsed), TimeUnit.NANOSECONDS);
+      }
+      return restaurants;
+    }
+
+    WGS84Point center = geoHash.getBoundingBox().getCenterPoint();
+    Results results = search.find(center.getLatitude(), center.getLongitude(), query,
+        currentTime, servingRadiusInKms + GeoUtils.findHalfDiagonalInKm(geoHash));
+    List<Restaurant> candidates = results.getRestaurants();
+    if (results.isComplete()) {
+      restaurantIds = new ArrayList<>(candidates.size());
+      for (Restaurant candidate : candidates) {
+        restaurantIds.add(candidate.getRestaurantId());
+      }
+      write(key, restaurantIds);
+    }
+    misses.increment();
+    missLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    return retainCloseByAndOpen(candidates, latitude, longitude, currentTime,
+        servingRadiusInKms);
+  }
+
+  // No connection is held while the search runs, and a failing Redis only costs the caching.
+  private List<String> read(String key) {
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      String value = jedis.get(key);
+      redisConfiguration.reportSuccess();
+      return value == null ? null
+          : objectMapper.readValue(value, new TypeReference<List<String>>() {});
+    } catch (IOException | JedisException e) {
+      redisConfiguration.reportFailure(e);
+      log.warn("Could not read search cache entry {}", key, e);
+      return null;
+    }
+  }
+
+  private void write(String key, List<String> restaurantIds) {
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      jedis.setex(key, restaurantIds.isEmpty()
+              ? GlobalConstants.SEARCH_CACHE_NEGATIVE_EXPIRY_IN_SECONDS
+              : GlobalConstants.SEARCH_CACHE_EXPIRY_IN_SECONDS,
+          objectMapper.writeValueAsString(restaurantIds));
+      redisConfiguration.reportSuccess();
+    } catch (IOException | JedisException e) {
+      redisConfiguration.reportFailure(e);
+      log.warn("Could not write search cache entry {}", key, e);
+    }
+  }
+
+  private static List<Restaurant> retainCloseByAndOpen(List<Restaurant> restaurants,
+      Double latitude, Double longitude, LocalTime currentTime, Double servingRadiusInKms) {
+    List<Restaurant> result = new ArrayList<Restaurant>(restaurants.size());
+    for (Restaurant restaurant : restaurants) {
+      if (restaurant.getLatitude() != null && restaurant.getLongitude() != null
+          && OpeningHours.isOpen(restaurant.getOpensAt(), restaurant.getClosesAt(), currentTime)
+          && GeoUtils.findDistanceInKm(latitude, longitude, restaurant.getLatitude(),
+              restaurant.getLongitude()) < servingRadiusInKms) {
+        result.add(restaurant);
+      }
+    }
+    return result;
+  }
+
+  private double hitRatio() {
+    double lookups = hits.count() + misses.count();
+    return lookups == 0 ? 0 : hits.count() / lookups;
+  }
+}
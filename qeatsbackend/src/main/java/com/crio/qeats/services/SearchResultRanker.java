@@ -0,0 +1,131 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import com.crio.qeats.dto.Restaurant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Merges the search sources into the top K restaurants by relevance.
+ * A hit scores by its source (name, attributes, item name, item attributes, in that order) and
+ * then by how the query matched the restaurant's name or attributes: exactly, as a prefix or
+ * anywhere. Item hits carry no item details, so every hit of an item source scores the same.
+ * Ties keep the order in which the sources returned them. A restaurant only counts once, with
+ * the score of its first hit, which is also its best as sources are consumed best first.
+ * Once K restaurants are held that no later source can beat, the remaining sources are not
+ * consumed at all.
+ */
+final class SearchResultRanker {
+
+  static final int BY_NAME = 0;
+  static final int BY_ATTRIBUTES = 1;
+  static final int BY_ITEM_NAME = 2;
+  static final int BY_ITEM_ATTRIBUTES = 3;
+
+  private static final int EXACT = 0;
+  private static final int PREFIX = 1;
+  private static final int SUBSTRING = 2;
+  private static final int MATCH_TYPES = 3;
+
+  private static final Comparator<RankedRestaurant> BEST_FIRST =
+      Comparator.<RankedRestaurant>comparingInt(ranked -> ranked.score)
+          .thenComparingLong(ranked -> ranked.sequence);
+
+  private SearchResultRanker() {
+  }
+
+  /**
+   * Ranks the hits of the sources.
+   * @param sources hits of each source, in the order of the source constants; a supplier
+   *     returning null marks a source that did not answer
+   * @param limit maximum number of restaurants to return
+   * @return the best restaurants, best first, complete unless a consumed source did not answer
+   */
+  static SearchResultCache.Results rank(String searchFor,
+      List<Supplier<List<Restaurant>>> sources, int limit) {
+    String query = searchFor.trim().toLowerCase(Locale.ROOT);
+    PriorityQueue<RankedRestaurant> worstFirst =
+        new PriorityQueue<>(Math.min(limit, 64), BEST_FIRST.reversed());
+    Set<String> seen = new HashSet<>();
+    boolean complete = true;
+    long sequence = 0;
+
+    for (int source = 0; source < sources.size(); source++) {
+      if (worstFirst.size() == limit && worstFirst.peek().score <= source * MATCH_TYPES) {
+        break;
+      }
+      List<Restaurant> hits = sources.get(source).get();
+      if (hits == null) {
+        complete = false;
+        continue;
+      }
+
+      for (Restaurant restaurant : hits) {
+        if (!seen.add(restaurant.getRestaurantId())) {
+          continue;
+        }
+        int score = source * MATCH_TYPES + matchType(source, query, restaurant);
+        if (worstFirst.size() < limit) {
+          worstFirst.add(new RankedRestaurant(score, sequence++, restaurant));
+        } else if (worstFirst.peek().score > score) {
+          worstFirst.poll();
+          worstFirst.add(new RankedRestaurant(score, sequence++, restaurant));
+        }
+      }
+    }
+
+    Restaurant[] best = new Restaurant[worstFirst.size()];
+    for (int i = best.length - 1; i >= 0; i--) {
+      best[i] = worstFirst.poll().restaurant;
+    }
+    return new SearchResultCache.Results(new ArrayList<>(Arrays.asList(best)), complete);
+  }
+
+  private static int matchType(int source, String query, Restaurant restaurant) {
+    if (source == BY_NAME) {
+      return matchType(query, restaurant.getName());
+    }
+    int best = SUBSTRING;
+    if (source == BY_ATTRIBUTES && restaurant.getAttributes() != null) {
+      for (String attribute : restaurant.getAttributes()) {
+        best = Math.min(best, matchType(query, attribute));
+      }
+    }
+    return best;
+  }
+
+  private static int matchType(String query, String value) {
+    if (value == null) {
+      return SUBSTRING;
+    }
+    String lowerCaseValue = value.toLowerCase(Locale.ROOT);
+    if (lowerCaseValue.equals(query)) {
+      return EXACT;
+    }
+    return lowerCaseValue.startsWith(query) ? PREFIX : SUBSTRING;
+  }
+
+  private static final class RankedRestaurant {
+    private final int score;
+    private final long sequence;
+    private final Restaurant restaurant;
+
+    private RankedRestaurant(int score, long sequence, Restaurant restaurant) {
+      this.score = score;
+      this.sequence = sequence;
+      this.restaurant = restaurant;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import com.crio.qeats.exchanges.GetSuggestionsRequest;
+import com.crio.qeats.exchanges.GetSuggestionsResponse;
+
+public interface SuggestionService {
+
+  /**
+   * Get completions of what the user has typed so far.
+   * - Completions are restaurant names, cuisines and dish names starting with the prefix,
+   *   ignoring case.
+   * - The ones offered by the most restaurants around the user come first, then the ones
+   *   offered by the most restaurants overall.
+   * - Served from memory; the database is only read when the index is (re)built.
+   * @param getSuggestionsRequest valid lat/long, prefix and optional limit
+   * @return GetSuggestionsResponse with at most limit completions, or an empty list if none
+   *     matches
+   */
+  GetSuggestionsResponse findSuggestions(GetSuggestionsRequest getSuggestionsRequest);
+}
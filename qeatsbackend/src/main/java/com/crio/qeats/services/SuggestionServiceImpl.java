@@ -0,0 +1,38 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import com.crio.qeats.exchanges.GetSuggestionsRequest;
+import com.crio.qeats.exchanges.GetSuggestionsResponse;
+import com.crio.qeats.repositoryservices.RestaurantIndexManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+@Service
+public class SuggestionServiceImpl implements SuggestionService {
+
+  // Completions returned when the request has no limit, and the most a client may ask for.
+  private static final int DEFAULT_SUGGESTION_COUNT = 10;
+  private static final int MAX_SUGGESTION_COUNT = 20;
+
+  @Autowired
+  private RestaurantIndexManager restaurantIndexManager;
+
+  @Override
+  public GetSuggestionsResponse findSuggestions(GetSuggestionsRequest getSuggestionsRequest) {
+    Integer requestedLimit = getSuggestionsRequest.getLimit();
+    if (requestedLimit != null && requestedLimit < 1) {
+      throw new IllegalArgumentException("limit must be positive: " + requestedLimit);
+    }
+    int limit = requestedLimit == null ? DEFAULT_SUGGESTION_COUNT
+        : Math.min(requestedLimit, MAX_SUGGESTION_COUNT);
+
+    return new GetSuggestionsResponse(restaurantIndexManager.getSuggestionIndex().suggest(
+        getSuggestionsRequest.getLatitude(), getSuggestionsRequest.getLongitude(),
+        getSuggestionsRequest.getPrefix(), limit));
+  }
+}
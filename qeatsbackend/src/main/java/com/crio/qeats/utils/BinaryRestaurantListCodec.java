@@ -0,0 +1,368 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import com.crio.qeats.dto.Restaurant;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Restaurants in a compact binary format.
+ * Lengths and counts are varints, strings UTF-8, and coordinates 8 byte doubles. Attributes
+ * repeat across restaurants, so each value holds a dictionary of its distinct attributes and
+ * restaurants refer to them by index. Bodies above the compression threshold are deflated at
+ * the fastest level, and kept as they are if that does not make them smaller.
+ * A restaurant encoded on its own carries its attributes inline instead, and is never
+ * deflated: it is too small for either to pay off.
+ * Values starting with '[' or '{' are JSON written before the switch to this codec, and are
+ * read as such, so cached entries survive a change of codec.
+ */
+public class BinaryRestaurantListCodec implements RestaurantListCodec {
+
+  static final byte FORMAT_PLAIN = 1;
+  static final byte FORMAT_DEFLATED = 2;
+  static final byte FORMAT_RESTAURANT = 3;
+
+  private static final byte JSON_ARRAY_START = '[';
+  private static final byte JSON_OBJECT_START = '{';
+  private static final int MAX_LENGTH = 64 * 1024 * 1024;
+
+  // Deflaters hold native memory and are costly to create, so each thread reuses its own.
+  private static final ThreadLocal<Deflater> deflaters =
+      ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED));
+  private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+  private final int compressionThresholdInBytes;
+  private final JsonRestaurantListCodec jsonCodec = new JsonRestaurantListCodec();
+
+  /**
+   * Creates the codec.
+   * @param compressionThresholdInBytes bodies larger than this are deflated; negative never
+   */
+  public BinaryRestaurantListCodec(int compressionThresholdInBytes) {
+    this.compressionThresholdInBytes = compressionThresholdInBytes;
+  }
+
+  @Override
+  public byte[] encode(List<Restaurant> restaurants) {
+    Map<String, Integer> dictionary = new HashMap<>();
+    List<String> attributes = new ArrayList<>();
+    for (Restaurant restaurant : restaurants) {
+      if (restaurant.getAttributes() != null) {
+        for (String attribute : restaurant.getAttributes()) {
+          if (!dictionary.containsKey(attribute)) {
+            dictionary.put(attribute, attributes.size());
+            attributes.add(attribute);
+          }
+        }
+      }
+    }
+
+    Output body = new Output(64 + restaurants.size() * 96);
+    body.writeByte(FORMAT_PLAIN);
+    body.writeVarint(attributes.size());
+    for (String attribute : attributes) {
+      body.writeString(attribute);
+    }
+    body.writeVarint(restaurants.size());
+    for (Restaurant restaurant : restaurants) {
+      writeRestaurant(body, restaurant, dictionary);
+    }
+
+    if (compressionThresholdInBytes < 0 || body.size - 1 <= compressionThresholdInBytes) {
+      return body.toByteArray();
+    }
+    byte[] deflated = deflate(body.buffer, 1, body.size - 1);
+    if (deflated == null) {
+      return body.toByteArray();
+    }
+    Output value = new Output(deflated.length + 6);
+    value.writeByte(FORMAT_DEFLATED);
+    value.writeVarint(body.size - 1);
+    value.writeBytes(deflated, deflated.length);
+    return value.toByteArray();
+  }
+
+  @Override
+  public List<Restaurant> decode(byte[] value) throws IOException {
+    if (value.length == 0) {
+      throw new IOException("Empty value");
+    }
+    if (value[0] == JSON_ARRAY_START) {
+      return jsonCodec.decode(value);
+    }
+    Input body;
+    if (value[0] == FORMAT_PLAIN) {
+      body = new Input(value, 1, value.length);
+    } else if (value[0] == FORMAT_DEFLATED) {
+      Input header = new Input(value, 1, value.length);
+      int length = header.readLength();
+      body = new Input(inflate(value, header.position, length), 0, length);
+    } else {
+      throw new IOException("Unknown format " + value[0]);
+    }
+
+    String[] attributes = new String[body.readLength()];
+    for (int i = 0; i < attributes.length; i++) {
+      attributes[i] = body.readString();
+    }
+    int count = body.readLength();
+    List<Restaurant> restaurants = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      restaurants.add(readRestaurant(body, attributes));
+    }
+    return restaurants;
+  }
+
+  @Override
+  public byte[] encodeRestaurant(Restaurant restaurant) {
+    Output value = new Output(128);
+    value.writeByte(FORMAT_RESTAURANT);
+    writeRestaurant(value, restaurant, null);
+    return value.toByteArray();
+  }
+
+  @Override
+  public Restaurant decodeRestaurant(byte[] value) throws IOException {
+    if (value.length == 0) {
+      throw new IOException("Empty value");
+    }
+    if (value[0] == JSON_OBJECT_START) {
+      return jsonCodec.decodeRestaurant(value);
+    }
+    if (value[0] == FORMAT_RESTAURANT) {
+      return readRestaurant(new Input(value, 1, value.length), null);
+    }
+    List<Restaurant> restaurants = decode(value);
+    if (restaurants.size() != 1) {
+      throw new IOException("Expected one restaurant, found " + restaurants.size());
+    }
+    return restaurants.get(0);
+  }
+
+  // Attributes are indexes into the dictionary, or inline strings without one.
+  private static void writeRestaurant(Output body, Restaurant restaurant,
+      Map<String, Integer> dictionary) {
+    body.writeString(restaurant.getRestaurantId());
+    body.writeString(restaurant.getName());
+    body.writeString(restaurant.getCity());
+    body.writeString(restaurant.getImageUrl());
+    body.writeDouble(restaurant.getLatitude());
+    body.writeDouble(restaurant.getLongitude());
+    body.writeString(restaurant.getOpensAt());
+    body.writeString(restaurant.getClosesAt());
+    if (restaurant.getAttributes() == null) {
+      body.writeVarint(0);
+    } else {
+      body.writeVarint(restaurant.getAttributes().size() + 1);
+      for (String attribute : restaurant.getAttributes()) {
+        if (dictionary == null) {
+          body.writeString(attribute);
+        } else {
+          body.writeVarint(dictionary.get(attribute));
+        }
+      }
+    }
+  }
+
+  private static Restaurant readRestaurant(Input body, String[] attributes) throws IOException {
+    Restaurant restaurant = new Restaurant();
+    restaurant.setRestaurantId(body.readString());
+    restaurant.setName(body.readString());
+    restaurant.setCity(body.readString());
+    restaurant.setImageUrl(body.readString());
+    restaurant.setLatitude(body.readDouble());
+    restaurant.setLongitude(body.readDouble());
+    restaurant.setOpensAt(body.readString());
+    restaurant.setClosesAt(body.readString());
+    int attributeCount = body.readLength();
+    if (attributeCount == 0) {
+      restaurant.setAttributes(null);
+    } else {
+      List<String> restaurantAttributes = new ArrayList<>(attributeCount - 1);
+      for (int j = 1; j < attributeCount; j++) {
+        if (attributes == null) {
+          restaurantAttributes.add(body.readString());
+          continue;
+        }
+        int index = body.readLength();
+        if (index >= attributes.length) {
+          throw new IOException("Attribute " + index + " is not in the dictionary");
+        }
+        restaurantAttributes.add(attributes[index]);
+      }
+      restaurant.setAttributes(restaurantAttributes);
+    }
+    return restaurant;
+  }
+
+  // Null when deflating does not pay off.
+  private static byte[] deflate(byte[] input, int offset, int length) {
+    Deflater deflater = deflaters.get();
+    deflater.reset();
+    deflater.setInput(input, offset, length);
+    deflater.finish();
+    byte[] output = new byte[length];
+    int size = 0;
+    while (!deflater.finished() && size < output.length) {
+      size += deflater.deflate(output, size, output.length - size);
+    }
+    return deflater.finished() && size < length ? Arrays.copyOf(output, size) : null;
+  }
+
+  private static byte[] inflate(byte[] input, int offset, int length) throws IOException {
+    Inflater inflater = inflaters.get();
+    inflater.reset();
+    inflater.setInput(input, offset, input.length - offset);
+    byte[] output = new byte[length];
+    try {
+      int size = 0;
+      while (size < length && !inflater.finished()) {
+        int inflated = inflater.inflate(output, size, length - size);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        size += inflated;
+      }
+      if (size != length) {
+        throw new IOException("Inflated " + size + " of " + length + " bytes");
+      }
+    } catch (DataFormatException e) {
+      throw new IOException(e);
+    }
+    return output;
+  }
+
+  private static final class Output {
+    private byte[] buffer;
+    private int size;
+
+    private Output(int capacity) {
+      buffer = new byte[capacity];
+    }
+
+    private void ensureCapacity(int extra) {
+      if (size + extra > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+      }
+    }
+
+    private void writeByte(int value) {
+      ensureCapacity(1);
+      buffer[size++] = (byte) value;
+    }
+
+    private void writeBytes(byte[] bytes, int length) {
+      ensureCapacity(length);
+      System.arraycopy(bytes, 0, buffer, size, length);
+      size += length;
+    }
+
+    private void writeVarint(int value) {
+      ensureCapacity(5);
+      while ((value & ~0x7F) != 0) {
+        buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      buffer[size++] = (byte) value;
+    }
+
+    // Length + 1, so that 0 stands for null.
+    private void writeString(String value) {
+      if (value == null) {
+        writeVarint(0);
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      writeVarint(bytes.length + 1);
+      writeBytes(bytes, bytes.length);
+    }
+
+    private void writeDouble(Double value) {
+      if (value == null) {
+        writeByte(0);
+        return;
+      }
+      writeByte(1);
+      ensureCapacity(8);
+      long bits = Double.doubleToLongBits(value);
+      for (int shift = 56; shift >= 0; shift -= 8) {
+        buffer[size++] = (byte) (bits >>> shift);
+      }
+    }
+
+    private byte[] toByteArray() {
+      return Arrays.copyOf(buffer, size);
+    }
+  }
+
+  private static final class Input {
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+
+    private Input(byte[] buffer, int position, int limit) {
+      this.buffer = buffer;
+      this.position = position;
+      this.limit = limit;
+    }
+
+    private byte readByte() throws IOException {
+      if (position >= limit) {
+        throw new IOException("Value ends early");
+      }
+      return buffer[position++];
+    }
+
+    private int readLength() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        byte b = readByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          if (value < 0 || value > MAX_LENGTH) {
+            throw new IOException("Length " + value + " is out of range");
+          }
+          return value;
+        }
+      }
+      throw new IOException("Varint is too long");
+    }
+
+    private String readString() throws IOException {
+      int length = readLength();
+      if (length == 0) {
+        return null;
+      }
+      if (length - 1 > limit - position) {
+        throw new IOException("Value ends early");
+      }
+      String value = new String(buffer, position, length - 1, StandardCharsets.UTF_8);
+      position += length - 1;
+      return value;
+    }
+
+    private Double readDouble() throws IOException {
+      if (readByte() == 0) {
+        return null;
+      }
+      long bits = 0;
+      for (int i = 0; i < 8; i++) {
+        bits = (bits << 8) | (readByte() & 0xFF);
+      }
+      return Double.longBitsToDouble(bits);
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Immutable BK-tree over a set of terms for lookups within a Levenshtein distance.
+ * Every child hangs off its parent under their distance, so by the triangle inequality a
+ * lookup only descends into children whose distance to the parent is within the allowed
+ * distance of the parent's own distance to the query. Lookups take a deadline and return the
+ * matches found so far once it passes.
+ */
+public final class BkTree {
+
+  /**
+   * A term within the allowed distance of the query.
+   */
+  public static final class Match {
+
+    private final String term;
+    private final int distance;
+
+    Match(String term, int distance) {
+      this.term = term;
+      this.distance = distance;
+    }
+
+    public String getTerm() {
+      return term;
+    }
+
+    public int getDistance() {
+      return distance;
+    }
+  }
+
+  private final Node root;
+  private final int size;
+
+  private BkTree(Node root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  /**
+   * Builds the tree.
+   * @param terms terms to look up; duplicates are kept once, and terms inserted first end up
+   *     near the root, so the most frequently matched terms should come first
+   * @return BK-tree over the terms
+   */
+  public static BkTree build(List<String> terms) {
+    Node root = null;
+    int size = 0;
+    for (String term : terms) {
+      if (root == null) {
+        root = new Node(term);
+        size++;
+        continue;
+      }
+      Node node = root;
+      while (true) {
+        int distance = distance(term, node.term);
+        if (distance == 0) {
+          break;
+        }
+        Node child = node.child(distance);
+        if (child == null) {
+          node.addChild(distance, new Node(term));
+          size++;
+          break;
+        }
+        node = child;
+      }
+    }
+    return new BkTree(root, size);
+  }
+
+  /**
+   * Finds the terms within the given distance of the query.
+   * @param query term to look up, compared as is
+   * @param maxDistance largest Levenshtein distance of a match
+   * @param deadlineInNanos System.nanoTime() after which the lookup stops
+   * @return matches in no particular order, possibly not all of them if the deadline passed
+   */
+  public List<Match> search(String query, int maxDistance, long deadlineInNanos) {
+    List<Match> matches = new ArrayList<>();
+    if (root == null) {
+      return matches;
+    }
+    Deque<Node> pending = new ArrayDeque<>();
+    pending.push(root);
+    while (!pending.isEmpty() && System.nanoTime() - deadlineInNanos < 0) {
+      Node node = pending.pop();
+      int distance = distance(query, node.term);
+      if (distance <= maxDistance) {
+        matches.add(new Match(node.term, distance));
+      }
+      for (int i = 0; i < node.childCount; i++) {
+        if (Math.abs(node.childDistances[i] - distance) <= maxDistance) {
+          pending.push(node.children[i]);
+        }
+      }
+    }
+    return matches;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Levenshtein distance: the fewest single character insertions, deletions and substitutions
+   * turning one string into the other.
+   */
+  public static int distance(String first, String second) {
+    int[] previous = new int[second.length() + 1];
+    int[] current = new int[second.length() + 1];
+    for (int j = 0; j <= second.length(); j++) {
+      previous[j] = j;
+    }
+    for (int i = 1; i <= first.length(); i++) {
+      current[0] = i;
+      char c = first.charAt(i - 1);
+      for (int j = 1; j <= second.length(); j++) {
+        int substitution = previous[j - 1] + (c == second.charAt(j - 1) ? 0 : 1);
+        current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[second.length()];
+  }
+
+  // Children are few per node, so parallel arrays scanned linearly beat a map.
+  private static final class Node {
+    private final String term;
+    private int[] childDistances = new int[0];
+    private Node[] children = new Node[0];
+    private int childCount;
+
+    private Node(String term) {
+      this.term = term;
+    }
+
+    private Node child(int distance) {
+      for (int i = 0; i < childCount; i++) {
+        if (childDistances[i] == distance) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+
+    private void addChild(int distance, Node child) {
+      if (childCount == children.length) {
+        int capacity = Math.max(4, childCount * 2);
+        childDistances = Arrays.copyOf(childDistances, capacity);
+        children = Arrays.copyOf(children, capacity);
+      }
+      childDistances[childCount] = distance;
+      children[childCount++] = child;
+    }
+  }
+}
@@ -7,6 +7,11 @@
 
 package com.crio.qeats.utils;
 
+import ch.hsr.geohash.BoundingBox;
+import ch.hsr.geohash.GeoHash;
+import ch.hsr.geohash.WGS84Point;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -14,11 +19,93 @@ import lombok.Data;
 @AllArgsConstructor
 public class GeoUtils {
 
+  private static final double EARTH_RADIUS_IN_KMS = 6371;
+
+  // Bounding boxes are worked out on the same sphere as findDistanceInKm, so that they hold
+  // every point it puts within the radius. The margin absorbs rounding at the edge of the box.
+  private static final double KMS_PER_DEGREE = EARTH_RADIUS_IN_KMS * Math.PI / 180;
+  private static final double SPAN_MARGIN_IN_DEGREES = 1e-9;
+
+  // Relative slack on the equirectangular reject margin, for rounding.
+  private static final double EQUIRECTANGULAR_MARGIN_SLACK = 1e-9;
+
   public static double findDistanceInKm(double srcLatitude, double srcLongitude,
       double dstLatitude, double dstLongitude) {
     return distance(srcLatitude, dstLatitude, srcLongitude, dstLongitude, 0, 0);
   }
 
+  /**
+   * Distance from the center of the cell to its farthest corner. Every point in the cell is
+   * within this distance of the center, so by the triangle inequality everything within r of
+   * such a point is within r + half diagonal of the center.
+   */
+  public static double findHalfDiagonalInKm(GeoHash geoHash) {
+    BoundingBox boundingBox = geoHash.getBoundingBox();
+    WGS84Point center = boundingBox.getCenterPoint();
+    return Math.max(
+        findDistanceInKm(center.getLatitude(), center.getLongitude(),
+            boundingBox.getMinLat(), boundingBox.getMinLon()),
+        findDistanceInKm(center.getLatitude(), center.getLongitude(),
+            boundingBox.getMaxLat(), boundingBox.getMinLon()));
+  }
+
+  /**
+   * Degrees of latitude north and south of a point that hold every point within the radius.
+   */
+  public static double findLatitudeSpanInDegrees(double radiusInKm) {
+    return radiusInKm / KMS_PER_DEGREE + SPAN_MARGIN_IN_DEGREES;
+  }
+
+  /**
+   * Degrees of longitude east and west of a point that hold every point within the radius;
+   * 180 once the circle reaches a pole. The circle is widest in longitude where its meridians
+   * touch it, at asin(sin(r / R) / cos(latitude)), a little poleward of the point.
+   */
+  public static double findLongitudeSpanInDegrees(double latitude, double radiusInKm) {
+    double sinAngularRadius = Math.sin(Math.min(Math.PI / 2, radiusInKm / EARTH_RADIUS_IN_KMS));
+    double cosLatitude = Math.cos(Math.toRadians(latitude));
+    if (sinAngularRadius >= cosLatitude) {
+      return 180.0;
+    }
+    return Math.min(180.0,
+        Math.toDegrees(Math.asin(sinAngularRadius / cosLatitude)) + SPAN_MARGIN_IN_DEGREES);
+  }
+
+  /**
+   * Geohash cells of the given precision that hold every point within the radius of a point:
+   * the cell of the point and its neighbours, and more rings of cells when the radius is larger
+   * than a cell. Cells are listed row by row from the south west, wrapping at the antimeridian.
+   */
+  public static List<GeoHash> findCoveringGeoHashes(double latitude, double longitude,
+      double radiusInKm, int precision) {
+    BoundingBox cell = GeoHash.withCharacterPrecision(latitude, longitude, precision)
+        .getBoundingBox();
+    double latitudeSize = cell.getLatitudeSize();
+    double longitudeSize = cell.getLongitudeSize();
+    int rows = (int) Math.round(180.0 / latitudeSize);
+    int columns = (int) Math.round(360.0 / longitudeSize);
+
+    double latitudeSpan = findLatitudeSpanInDegrees(radiusInKm);
+    double longitudeSpan = findLongitudeSpanInDegrees(latitude, radiusInKm);
+    int firstRow = Math.max(0, (int) Math.floor((latitude - latitudeSpan + 90) / latitudeSize));
+    int lastRow = Math.min(rows - 1,
+        (int) Math.floor((latitude + latitudeSpan + 90) / latitudeSize));
+    int firstColumn = (int) Math.floor((longitude - longitudeSpan + 180) / longitudeSize);
+    int lastColumn = longitudeSpan >= 180.0 ? firstColumn + columns - 1
+        : Math.min(firstColumn + columns - 1,
+            (int) Math.floor((longitude + longitudeSpan + 180) / longitudeSize));
+
+    List<GeoHash> geoHashes = new ArrayList<>();
+    for (int row = firstRow; row <= lastRow; row++) {
+      for (int column = firstColumn; column <= lastColumn; column++) {
+        int wrappedColumn = Math.floorMod(column, columns);
+        geoHashes.add(GeoHash.withCharacterPrecision(-90 + (row + 0.5) * latitudeSize,
+            -180 + (wrappedColumn + 0.5) * longitudeSize, precision));
+      }
+    }
+    return geoHashes;
+  }
+
   /**
    * THIS IS BORROWED CODE. Calculate distance between two points in latitude and longitude taking
    * into account height difference. If you are not interested in height difference pass 0.0. Uses
@@ -52,4 +139,97 @@ public class GeoUtils {
 
     return Math.sqrt(distance);
   }
+
+  /**
+   * Find the points within the radius of a location, without allocating.
+   * Points are rejected in three stages of increasing cost: a lat/long bounding box of the
+   * radius, wrapping at the antimeridian, an equirectangular distance estimate, and finally the exact Haversine distance,
+   * which only runs for points that survive both cheaper checks.
+   *
+   * @param latitude latitude of the location to search around
+   * @param longitude longitude of the location to search around
+   * @param latitudes latitudes of the points
+   * @param longitudes longitudes of the points, same length as latitudes
+   * @param count number of points to consider, from index 0
+   * @param radiusInKm points strictly closer than this are hits
+   * @param hits reusable buffer the indices of the hits are written to, in increasing order;
+   *     must be able to hold count entries
+   * @return number of hits written to the buffer
+   */
+  public static int findIndicesWithinRadius(double latitude, double longitude,
+      double[] latitudes, double[] longitudes, int count, double radiusInKm, int[] hits) {
+    return findIndicesWithinRadius(latitude, longitude, latitudes, longitudes, 0, count,
+        radiusInKm, hits);
+  }
+
+  /**
+   * Same as the count variant, restricted to the points in [from, to) so that disjoint ranges
+   * can be scanned concurrently.
+   *
+   * @param hits reusable buffer the indices of the hits are written to from position 0, in
+   *     increasing order; must be able to hold to - from entries
+   * @return number of hits written to the buffer
+   */
+  public static int findIndicesWithinRadius(double latitude, double longitude,
+      double[] latitudes, double[] longitudes, int from, int to, double radiusInKm,
+      int[] hits) {
+    if (from < 0 || from > to) {
+      throw new IllegalArgumentException("Invalid range [" + from + ", " + to + ")");
+    }
+    if (to > latitudes.length || to > longitudes.length || to - from > hits.length) {
+      throw new IllegalArgumentException("Arrays must hold at least " + to + " entries");
+    }
+
+    double latitudeSpan = findLatitudeSpanInDegrees(radiusInKm);
+    double longitudeSpan = findLongitudeSpanInDegrees(latitude, radiusInKm);
+    double minLatitude = latitude - latitudeSpan;
+    double maxLatitude = latitude + latitudeSpan;
+
+    double latitudeInRadians = Math.toRadians(latitude);
+    double cosLatitude = Math.cos(latitudeInRadians);
+    // With both deltas within L radians, the equirectangular estimate over the mean latitude is
+    // at most sqrt(1 + L^2 / 4) times the Haversine distance; the bound is reached next to a
+    // pole, where the mean latitude understates how close the meridians are. So only points
+    // beyond that margin are rejected without the exact check, however large the box.
+    double maxDeltaInRadians = Math.toRadians(Math.max(latitudeSpan, longitudeSpan));
+    double rejectMargin = Math.sqrt(1 + maxDeltaInRadians * maxDeltaInRadians / 4)
+        * (1 + EQUIRECTANGULAR_MARGIN_SLACK);
+    double rejectThreshold = radiusInKm * rejectMargin / EARTH_RADIUS_IN_KMS;
+    double rejectThresholdSquared = rejectThreshold * rejectThreshold;
+
+    int hitCount = 0;
+    for (int i = from; i < to; i++) {
+      double pointLatitude = latitudes[i];
+      // Taken the short way round, so the box and the estimate wrap at the antimeridian.
+      double deltaLongitudeInDegrees = longitudes[i] - longitude;
+      if (deltaLongitudeInDegrees > 180) {
+        deltaLongitudeInDegrees -= 360;
+      } else if (deltaLongitudeInDegrees < -180) {
+        deltaLongitudeInDegrees += 360;
+      }
+      if (pointLatitude < minLatitude || pointLatitude > maxLatitude
+          || Math.abs(deltaLongitudeInDegrees) > longitudeSpan) {
+        continue;
+      }
+
+      double pointLatitudeInRadians = Math.toRadians(pointLatitude);
+      double deltaLatitude = pointLatitudeInRadians - latitudeInRadians;
+      double deltaLongitude = Math.toRadians(deltaLongitudeInDegrees);
+      double x = deltaLongitude * Math.cos((latitudeInRadians + pointLatitudeInRadians) / 2);
+      if (x * x + deltaLatitude * deltaLatitude > rejectThresholdSquared) {
+        continue;
+      }
+
+      double sinHalfDeltaLatitude = Math.sin(deltaLatitude / 2);
+      double sinHalfDeltaLongitude = Math.sin(deltaLongitude / 2);
+      double a = sinHalfDeltaLatitude * sinHalfDeltaLatitude
+          + cosLatitude * Math.cos(pointLatitudeInRadians)
+          * sinHalfDeltaLongitude * sinHalfDeltaLongitude;
+      double distance = 2 * EARTH_RADIUS_IN_KMS * Math.asin(Math.min(1.0, Math.sqrt(a)));
+      if (distance < radiusInKm) {
+        hits[hitCount++] = i;
+      }
+    }
+    return hitCount;
+  }
 }
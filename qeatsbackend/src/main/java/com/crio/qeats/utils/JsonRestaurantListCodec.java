@@ -0,0 +1,65 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import com.crio.qeats.dto.Restaurant;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Restaurants as a JSON array, the format the nearby cache has always used.
+ */
+public class JsonRestaurantListCodec implements RestaurantListCodec {
+
+  private static final TypeReference<List<Restaurant>> RESTAURANT_LIST =
+      new TypeReference<List<Restaurant>>() {};
+
+  // Readers and writers are immutable, so one of each serves every thread.
+  private final ObjectReader reader;
+  private final ObjectWriter writer;
+  private final ObjectReader restaurantReader;
+  private final ObjectWriter restaurantWriter;
+
+  public JsonRestaurantListCodec() {
+    ObjectMapper objectMapper = new ObjectMapper();
+    reader = objectMapper.readerFor(RESTAURANT_LIST);
+    writer = objectMapper.writerFor(RESTAURANT_LIST);
+    restaurantReader = objectMapper.readerFor(Restaurant.class);
+    restaurantWriter = objectMapper.writerFor(Restaurant.class);
+  }
+
+  @Override
+  public byte[] encode(List<Restaurant> restaurants) throws IOException {
+    return writer.writeValueAsBytes(restaurants);
+  }
+
+  @Override
+  public List<Restaurant> decode(byte[] value) throws IOException {
+    return reader.readValue(value);
+  }
+
+  @Override
+  public byte[] encodeRestaurant(Restaurant restaurant) throws IOException {
+    return restaurantWriter.writeValueAsBytes(restaurant);
+  }
+
+  @Override
+  public Restaurant decodeRestaurant(byte[] value) throws IOException {
+    if (value.length > 0 && value[0] == '[') {
+      List<Restaurant> restaurants = decode(value);
+      if (restaurants.size() != 1) {
+        throw new IOException("Expected one restaurant, found " + restaurants.size());
+      }
+      return restaurants.get(0);
+    }
+    return restaurantReader.readValue(value);
+  }
+}
@@ -0,0 +1,89 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Opening hours as minute-of-day intervals.
+ * A restaurant is open strictly after it opens and strictly before it closes; when it closes
+ * earlier in the day than it opens, the interval wraps past midnight and is open from opening
+ * time to midnight and from midnight to closing time.
+ */
+public final class OpeningHours {
+
+  // Marks opening hours that are missing or could not be parsed; such restaurants are closed.
+  public static final short UNKNOWN = -1;
+
+  private static final long NANOS_PER_MINUTE = TimeUnit.MINUTES.toNanos(1);
+
+  private OpeningHours() {
+  }
+
+  /**
+   * Parses an "HH:mm" time into its minute of the day. Times with seconds are accepted and
+   * truncated to the minute.
+   * @return minute of the day, or UNKNOWN if the time is missing or malformed
+   */
+  public static short parseMinuteOfDay(String time) {
+    if (time == null) {
+      return UNKNOWN;
+    }
+    // Plain "HH:mm", which is what restaurants store, is read without going through LocalTime.
+    if (time.length() == 5 && time.charAt(2) == ':') {
+      int hour = twoDigits(time, 0);
+      int minute = twoDigits(time, 3);
+      return hour < 0 || hour > 23 || minute < 0 || minute > 59
+          ? UNKNOWN : (short) (hour * 60 + minute);
+    }
+    try {
+      LocalTime parsed = LocalTime.parse(time);
+      return (short) (parsed.getHour() * 60 + parsed.getMinute());
+    } catch (DateTimeParseException e) {
+      return UNKNOWN;
+    }
+  }
+
+  // -1 unless both characters are digits.
+  private static int twoDigits(String time, int index) {
+    char tens = time.charAt(index);
+    char units = time.charAt(index + 1);
+    if (tens < '0' || tens > '9' || units < '0' || units > '9') {
+      return -1;
+    }
+    return (tens - '0') * 10 + (units - '0');
+  }
+
+  public static boolean isOpen(String opensAt, String closesAt, LocalTime time) {
+    return isOpen(parseMinuteOfDay(opensAt), parseMinuteOfDay(closesAt), time.toNanoOfDay());
+  }
+
+  public static boolean isOpen(short opensAtMinute, short closesAtMinute, LocalTime time) {
+    return isOpen(opensAtMinute, closesAtMinute, time.toNanoOfDay());
+  }
+
+  /**
+   * Checks the time against the opening hours without parsing or allocating.
+   * The time is compared at full precision so 18:00:30 is after an 18:00 opening.
+   */
+  public static boolean isOpen(short opensAtMinute, short closesAtMinute, long nanoOfDay) {
+    if (opensAtMinute < 0 || closesAtMinute < 0) {
+      return false;
+    }
+    long opensAt = opensAtMinute * NANOS_PER_MINUTE;
+    long closesAt = closesAtMinute * NANOS_PER_MINUTE;
+    if (opensAtMinute < closesAtMinute) {
+      return nanoOfDay > opensAt && nanoOfDay < closesAt;
+    }
+    if (opensAtMinute > closesAtMinute) {
+      return nanoOfDay > opensAt || nanoOfDay < closesAt;
+    }
+    return false;
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import com.crio.qeats.dto.Restaurant;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Turns lists of restaurants into cache values and back.
+ * Implementations are thread safe and meant to be shared.
+ */
+public interface RestaurantListCodec {
+
+  byte[] encode(List<Restaurant> restaurants) throws IOException;
+
+  /**
+   * Decodes a value written by this codec.
+   * @throws IOException if the value is corrupt or in a format this codec does not read
+   */
+  List<Restaurant> decode(byte[] value) throws IOException;
+
+  /**
+   * Encodes one restaurant on its own, with nothing shared with other values.
+   */
+  byte[] encodeRestaurant(Restaurant restaurant) throws IOException;
+
+  /**
+   * Decodes a value written by encodeRestaurant, or a list of one written by encode.
+   * @throws IOException if the value is corrupt or does not hold exactly one restaurant
+   */
+  Restaurant decodeRestaurant(byte[] value) throws IOException;
+}
@@ -0,0 +1,197 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import com.google.common.base.Ticker;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * Weight bounded segmented LRU cache whose entries expire a fixed time after being written.
+ * New entries start on probation and are promoted to the protected segment when read again,
+ * so a burst of entries read only once evicts other probationary entries before anything read
+ * twice. The protected segment holds at most 80% of the weight; its least recently used
+ * entries are demoted back to probation when it overflows. Every operation takes one lock.
+ */
+public final class SegmentedLruCache<K, V> {
+
+  private static final double PROTECTED_SHARE = 0.8;
+
+  private final long maximumWeight;
+  private final long maximumProtectedWeight;
+  private final ToIntFunction<V> weigher;
+  private final long expireAfterWriteInNanos;
+  private final Ticker ticker;
+
+  // Both segments are kept least recently used first.
+  private final LinkedHashMap<K, Entry<V>> probation = new LinkedHashMap<>();
+  private final LinkedHashMap<K, Entry<V>> protectedSegment = new LinkedHashMap<>();
+  private long probationWeight;
+  private long protectedWeight;
+
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+
+  /**
+   * Creates an empty cache.
+   * @param maximumWeight weight held over both segments; 0 keeps nothing
+   * @param weigher weight of a value, at least 1
+   * @param expireAfterWrite how long an entry is served after it was written
+   * @param unit unit of expireAfterWrite
+   * @param ticker source of nanosecond time
+   */
+  public SegmentedLruCache(long maximumWeight, ToIntFunction<V> weigher, long expireAfterWrite,
+      TimeUnit unit, Ticker ticker) {
+    this.maximumWeight = maximumWeight;
+    this.maximumProtectedWeight = (long) (maximumWeight * PROTECTED_SHARE);
+    this.weigher = weigher;
+    this.expireAfterWriteInNanos = unit.toNanos(expireAfterWrite);
+    this.ticker = ticker;
+  }
+
+  /**
+   * Get the value if present and not expired, counting a hit or a miss.
+   * @return cached value, or null
+   */
+  public synchronized V getIfPresent(K key) {
+    Entry<V> entry = protectedSegment.remove(key);
+    if (entry != null) {
+      protectedWeight -= entry.weight;
+    } else {
+      entry = probation.remove(key);
+      if (entry != null) {
+        probationWeight -= entry.weight;
+      }
+    }
+    if (entry == null || ticker.read() - entry.writtenAt >= expireAfterWriteInNanos) {
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    protectedSegment.put(key, entry);
+    protectedWeight += entry.weight;
+    while (protectedWeight > maximumProtectedWeight) {
+      Map.Entry<K, Entry<V>> demoted = removeEldest(protectedSegment);
+      protectedWeight -= demoted.getValue().weight;
+      probation.put(demoted.getKey(), demoted.getValue());
+      probationWeight += demoted.getValue().weight;
+    }
+    evict();
+    return entry.value;
+  }
+
+  /**
+   * Caches the value, replacing the one cached for the key.
+   * A replaced entry keeps its segment, and a new one starts on probation.
+   */
+  public synchronized void put(K key, V value) {
+    Entry<V> entry = new Entry<>(value, weigher.applyAsInt(value), ticker.read());
+    Entry<V> replaced = protectedSegment.get(key);
+    if (replaced != null) {
+      protectedSegment.put(key, entry);
+      protectedWeight += entry.weight - replaced.weight;
+    } else {
+      replaced = probation.remove(key);
+      if (replaced != null) {
+        probationWeight -= replaced.weight;
+      }
+      probation.put(key, entry);
+      probationWeight += entry.weight;
+    }
+    evict();
+  }
+
+  /**
+   * Caches the value unless an entry that has not expired is cached for the key.
+   * @return whether the value was cached
+   */
+  public synchronized boolean putIfAbsent(K key, V value) {
+    Entry<V> cached = protectedSegment.get(key);
+    if (cached == null) {
+      cached = probation.get(key);
+    }
+    if (cached != null && ticker.read() - cached.writtenAt < expireAfterWriteInNanos) {
+      return false;
+    }
+    put(key, value);
+    return true;
+  }
+
+  /**
+   * Drops every entry. Evictions are not counted.
+   */
+  public synchronized void invalidateAll() {
+    probation.clear();
+    protectedSegment.clear();
+    probationWeight = 0;
+    protectedWeight = 0;
+  }
+
+  public synchronized long size() {
+    return probation.size() + protectedSegment.size();
+  }
+
+  public synchronized long weight() {
+    return probationWeight + protectedWeight;
+  }
+
+  public synchronized long hitCount() {
+    return hitCount;
+  }
+
+  public synchronized long missCount() {
+    return missCount;
+  }
+
+  public synchronized long evictionCount() {
+    return evictionCount;
+  }
+
+  /**
+   * Get the share of lookups that were hits.
+   * @return hit rate, or 0 before the first lookup
+   */
+  public synchronized double hitRate() {
+    long lookups = hitCount + missCount;
+    return lookups == 0 ? 0 : (double) hitCount / lookups;
+  }
+
+  // Probationary entries go first; the protected segment only shrinks once probation is empty.
+  private void evict() {
+    while (probationWeight + protectedWeight > maximumWeight) {
+      if (!probation.isEmpty()) {
+        probationWeight -= removeEldest(probation).getValue().weight;
+      } else {
+        protectedWeight -= removeEldest(protectedSegment).getValue().weight;
+      }
+      evictionCount++;
+    }
+  }
+
+  private static <K, V> Map.Entry<K, Entry<V>> removeEldest(LinkedHashMap<K, Entry<V>> segment) {
+    Iterator<Map.Entry<K, Entry<V>>> eldest = segment.entrySet().iterator();
+    Map.Entry<K, Entry<V>> removed = eldest.next();
+    eldest.remove();
+    return removed;
+  }
+
+  private static final class Entry<V> {
+    private final V value;
+    private final int weight;
+    private final long writtenAt;
+
+    private Entry(V value, int weight, long writtenAt) {
+      this.value = value;
+      this.weight = weight;
+      this.writtenAt = writtenAt;
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable trigram inverted index over the texts of a list of documents.
+ * Every lower-cased three character sequence maps to the sorted ordinals of the documents that
+ * contain it. A substring query intersects the postings of its own trigrams and then confirms
+ * the few remaining candidates with String.contains, so it never scans the whole list unless
+ * the query is shorter than a trigram.
+ */
+public final class TrigramIndex {
+
+  private static final int[] NO_ORDINALS = new int[0];
+
+  // Lower-cased texts of every document, indexed by ordinal.
+  private final String[][] texts;
+  private final Map<Long, int[]> postings;
+
+  private TrigramIndex(String[][] texts, Map<Long, int[]> postings) {
+    this.texts = texts;
+    this.postings = postings;
+  }
+
+  /**
+   * Builds the index.
+   * @param documents texts of every document, in ordinal order; null texts are ignored
+   * @return trigram index over the documents
+   */
+  public static TrigramIndex build(List<? extends List<String>> documents) {
+    String[][] texts = new String[documents.size()][];
+    for (int ordinal = 0; ordinal < documents.size(); ordinal++) {
+      List<String> document = documents.get(ordinal);
+      List<String> lowerCaseTexts = new ArrayList<>();
+      if (document != null) {
+        for (String text : document) {
+          if (text != null) {
+            lowerCaseTexts.add(text.toLowerCase(Locale.ROOT));
+          }
+        }
+      }
+      texts[ordinal] = lowerCaseTexts.toArray(new String[0]);
+    }
+
+    // First pass counts the documents of every trigram, second pass fills exact sized arrays.
+    // The last ordinal seen is tracked so a trigram repeated within a document counts once.
+    Map<Long, int[]> counts = new HashMap<>();
+    for (int ordinal = 0; ordinal < texts.length; ordinal++) {
+      for (String text : texts[ordinal]) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+          int[] count = counts.computeIfAbsent(trigram(text, i), k -> new int[] {0, -1});
+          if (count[1] != ordinal) {
+            count[0]++;
+            count[1] = ordinal;
+          }
+        }
+      }
+    }
+    Map<Long, int[]> postings = new HashMap<>(counts.size() * 2);
+    for (Map.Entry<Long, int[]> entry : counts.entrySet()) {
+      postings.put(entry.getKey(), new int[entry.getValue()[0]]);
+      entry.getValue()[0] = 0;
+    }
+    for (int ordinal = 0; ordinal < texts.length; ordinal++) {
+      for (String text : texts[ordinal]) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+          long key = trigram(text, i);
+          int[] posting = postings.get(key);
+          int size = counts.get(key)[0];
+          if (size == 0 || posting[size - 1] != ordinal) {
+            posting[size] = ordinal;
+            counts.get(key)[0]++;
+          }
+        }
+      }
+    }
+
+    return new TrigramIndex(texts, postings);
+  }
+
+  /**
+   * Get the documents with a text containing the query, ignoring case.
+   * @return ordinals of the matching documents, in increasing order
+   */
+  public int[] findContaining(String query) {
+    String lowerCaseQuery = query.toLowerCase(Locale.ROOT);
+    if (lowerCaseQuery.length() < 3) {
+      return filterContaining(null, texts.length, lowerCaseQuery);
+    }
+
+    int[][] queryPostings = new int[lowerCaseQuery.length() - 2][];
+    for (int i = 0; i + 3 <= lowerCaseQuery.length(); i++) {
+      int[] posting = postings.get(trigram(lowerCaseQuery, i));
+      if (posting == null) {
+        return NO_ORDINALS;
+      }
+      queryPostings[i] = posting;
+    }
+    // Intersect from the shortest posting so the candidate set shrinks as fast as possible.
+    Arrays.sort(queryPostings, (a, b) -> Integer.compare(a.length, b.length));
+
+    int[] candidates = queryPostings[0].clone();
+    int candidateCount = candidates.length;
+    for (int p = 1; p < queryPostings.length && candidateCount > 0; p++) {
+      if (queryPostings[p] != queryPostings[p - 1]) {
+        candidateCount = intersect(candidates, candidateCount, queryPostings[p]);
+      }
+    }
+    return filterContaining(candidates, candidateCount, lowerCaseQuery);
+  }
+
+  public int size() {
+    return texts.length;
+  }
+
+  public int trigramCount() {
+    return postings.size();
+  }
+
+  // Trigrams only prove the query's pieces occur somewhere in the document, so every candidate
+  // is confirmed against its texts. Null candidates means every document.
+  private int[] filterContaining(int[] candidates, int candidateCount, String lowerCaseQuery) {
+    int[] matches = new int[candidateCount];
+    int matchCount = 0;
+    for (int i = 0; i < candidateCount; i++) {
+      int ordinal = candidates == null ? i : candidates[i];
+      for (String text : texts[ordinal]) {
+        if (text.contains(lowerCaseQuery)) {
+          matches[matchCount++] = ordinal;
+          break;
+        }
+      }
+    }
+    return matchCount == matches.length ? matches : Arrays.copyOf(matches, matchCount);
+  }
+
+  // Keeps the candidates present in the sorted posting, in place.
+  private static int intersect(int[] candidates, int candidateCount, int[] posting) {
+    int kept = 0;
+    int j = 0;
+    for (int i = 0; i < candidateCount && j < posting.length; i++) {
+      while (j < posting.length && posting[j] < candidates[i]) {
+        j++;
+      }
+      if (j < posting.length && posting[j] == candidates[i]) {
+        candidates[kept++] = candidates[i];
+      }
+    }
+    return kept;
+  }
+
+  private static long trigram(String text, int start) {
+    return ((long) text.charAt(start) << 32) | ((long) text.charAt(start + 1) << 16)
+        | text.charAt(start + 2);
+  }
+}
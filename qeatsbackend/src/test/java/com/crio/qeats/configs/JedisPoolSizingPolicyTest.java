@@ -0,0 +1,36 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class JedisPoolSizingPolicyTest {
+
+  private final JedisPoolSizingPolicy policy = new JedisPoolSizingPolicy(128, 200, 5);
+
+  @Test
+  void growsWhileBorrowsWaitUpToTheLimit() {
+    assertEquals(160, policy.nextMaxTotal(128, 128, 12));
+    assertEquals(200, policy.nextMaxTotal(160, 160, 12));
+    assertEquals(200, policy.nextMaxTotal(200, 200, 12));
+  }
+
+  @Test
+  void shrinksWhenMostlyIdleDownToTheMinimum() {
+    assertEquals(175, policy.nextMaxTotal(200, 20, 0));
+    assertEquals(128, policy.nextMaxTotal(130, 20, 0));
+  }
+
+  @Test
+  void keepsItsSizeOtherwise() {
+    // Waits under the target, or a busy pool that hardly waits.
+    assertEquals(160, policy.nextMaxTotal(160, 40, 2));
+    assertEquals(160, policy.nextMaxTotal(160, 120, 0));
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.configs.RedisHealthMonitor.State;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.embedded.RedisServer;
+
+class RedisConfigurationTest {
+
+  private static final int REDIS_PORT = 6383;
+  private static final int UNUSED_PORT = 6384;
+
+  private static RedisServer redisServer;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final ExecutorService executor = Executors.newSingleThreadExecutor();
+  private RedisConfiguration redisConfiguration;
+
+  @BeforeAll
+  static void startRedis() throws IOException {
+    redisServer = new RedisServer(REDIS_PORT);
+    redisServer.start();
+  }
+
+  @AfterAll
+  static void stopRedis() {
+    redisServer.stop();
+  }
+
+  @AfterEach
+  void teardown() {
+    executor.shutdownNow();
+    redisConfiguration.closeProbe();
+    redisConfiguration.getJedisPool().destroy();
+  }
+
+  @Test
+  void probeIsNotHeldUpByAnExhaustedPool() {
+    redisConfiguration = newInstance(REDIS_PORT, 1);
+    try (Jedis borrowed = redisConfiguration.getJedisPool().getResource()) {
+      assertTimeoutPreemptively(Duration.ofSeconds(2), redisConfiguration::probe);
+    }
+
+    assertEquals(State.UP, redisConfiguration.getCacheState());
+  }
+
+  @Test
+  void probeConnectionIsClosedOnShutdown() {
+    redisConfiguration = newInstance(REDIS_PORT, 1);
+    redisConfiguration.probe();
+    Jedis probeConnection =
+        (Jedis) ReflectionTestUtils.getField(redisConfiguration, "probeConnection");
+
+    redisConfiguration.closeProbe();
+
+    assertFalse(probeConnection.isConnected());
+    assertNull(ReflectionTestUtils.getField(redisConfiguration, "probeConnection"));
+  }
+
+  @Test
+  void probesThatCannotConnectTakeRedisDown() {
+    redisConfiguration = newInstance(UNUSED_PORT, 1);
+    for (int i = 0; i < 5; i++) {
+      redisConfiguration.probe();
+    }
+
+    assertEquals(State.DOWN, redisConfiguration.getCacheState());
+  }
+
+  @Test
+  void redisIsUpOnlyOnceItHasAnswered() {
+    redisConfiguration = newInstance(REDIS_PORT, 1);
+    assertEquals(State.DEGRADED, redisConfiguration.getCacheState());
+
+    redisConfiguration.reportSuccess();
+
+    assertEquals(State.UP, redisConfiguration.getCacheState());
+  }
+
+  @Test
+  void restartOnlyFailsOneCommandWhenIdleConnectionsAreNotValidated() {
+    redisConfiguration = newInstance(REDIS_PORT, 8);
+    ReflectionTestUtils.setField(redisConfiguration, "poolValidation",
+        RedisConfiguration.POOL_VALIDATION_IDLE);
+    redisConfiguration.getJedisPool().destroy();
+    redisConfiguration.initCache();
+    redisConfiguration.reportSuccess();
+    List<Jedis> borrowed = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      borrowed.add(redisConfiguration.getJedisPool().getResource());
+    }
+    borrowed.forEach(Jedis::close);
+
+    redisServer.stop();
+    redisServer.start();
+    int failures = 0;
+    for (int i = 0; i < 5; i++) {
+      try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+        jedis.ping();
+        redisConfiguration.reportSuccess();
+      } catch (JedisConnectionException e) {
+        redisConfiguration.reportFailure(e);
+        failures++;
+      }
+    }
+
+    assertEquals(1, failures);
+    assertEquals(State.UP, redisConfiguration.getCacheState());
+  }
+
+  @Test
+  void poolMetricsFollowThePool() throws Exception {
+    redisConfiguration = newInstance(REDIS_PORT, 1, meterRegistry);
+    assertEquals(1.0, gauge("qeats.redis.pool.max"));
+
+    Future<?> waiter;
+    try (Jedis borrowed = redisConfiguration.getJedisPool().getResource()) {
+      assertEquals(1.0, gauge("qeats.redis.pool.connections", "state", "active"));
+      waiter = executor.submit(() -> redisConfiguration.getJedisPool().getResource().close());
+      awaitGauge("qeats.redis.pool.waiters", 1.0);
+    }
+    waiter.get(2, TimeUnit.SECONDS);
+
+    assertEquals(0.0, gauge("qeats.redis.pool.connections", "state", "active"));
+    assertEquals(1.0, gauge("qeats.redis.pool.connections", "state", "idle"));
+    assertEquals(0.0, gauge("qeats.redis.pool.waiters"));
+    assertEquals(2, meterRegistry.get("qeats.redis.pool.borrow.wait").timer().count());
+  }
+
+  @Test
+  void adaptiveSizingGrowsALivePoolWhoseBorrowsWait() throws Exception {
+    redisConfiguration = newInstance(REDIS_PORT, 1, meterRegistry);
+    ReflectionTestUtils.setField(redisConfiguration, "adaptivePoolEnabled", true);
+    ReflectionTestUtils.setField(redisConfiguration, "adaptivePoolMaxTotal", 4);
+
+    Future<?> waiter;
+    try (Jedis borrowed = redisConfiguration.getJedisPool().getResource()) {
+      waiter = executor.submit(() -> redisConfiguration.getJedisPool().getResource().close());
+      awaitGauge("qeats.redis.pool.waiters", 1.0);
+      Thread.sleep(50);
+    }
+    waiter.get(2, TimeUnit.SECONDS);
+
+    redisConfiguration.adaptPoolSize();
+
+    assertEquals(2.0, gauge("qeats.redis.pool.max"));
+    try (Jedis first = redisConfiguration.getJedisPool().getResource();
+        Jedis second = redisConfiguration.getJedisPool().getResource()) {
+      assertEquals(2.0, gauge("qeats.redis.pool.connections", "state", "active"));
+    }
+  }
+
+  private double gauge(String name, String... tags) {
+    return meterRegistry.get(name).tags(tags).gauge().value();
+  }
+
+  private void awaitGauge(String name, double value) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+    while (gauge(name) != value && System.nanoTime() < deadline) {
+      Thread.sleep(5);
+    }
+    assertTrue(gauge(name) == value, name);
+  }
+
+  private static RedisConfiguration newInstance(int port, int poolMaxTotal) {
+    return newInstance(port, poolMaxTotal, null);
+  }
+
+  private static RedisConfiguration newInstance(int port, int poolMaxTotal,
+      MeterRegistry meterRegistry) {
+    RedisConfiguration redisConfiguration = new RedisConfiguration();
+    ReflectionTestUtils.setField(redisConfiguration, "meterRegistry", meterRegistry);
+    redisConfiguration.setRedisPort(port);
+    ReflectionTestUtils.setField(redisConfiguration, "poolMaxTotal", poolMaxTotal);
+    ReflectionTestUtils.setField(redisConfiguration, "poolMinIdle", 0);
+    redisConfiguration.initCache();
+    return redisConfiguration;
+  }
+}
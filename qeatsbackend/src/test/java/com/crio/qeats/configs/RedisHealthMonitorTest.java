@@ -0,0 +1,74 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.configs.RedisHealthMonitor.State;
+import org.junit.jupiter.api.Test;
+
+class RedisHealthMonitorTest {
+
+  @Test
+  void startsHalfOpen() {
+    RedisHealthMonitor monitor = new RedisHealthMonitor(3);
+    assertEquals(State.DEGRADED, monitor.getState());
+    assertTrue(monitor.allowRequest());
+
+    monitor.recordFailure();
+    assertEquals(State.DOWN, monitor.getState());
+  }
+
+  @Test
+  void failuresDegradeThenOpenTheCircuit() {
+    RedisHealthMonitor monitor = new RedisHealthMonitor(3);
+    monitor.recordSuccess();
+    assertEquals(State.UP, monitor.getState());
+
+    monitor.recordFailure();
+    monitor.recordFailure();
+    assertEquals(State.DEGRADED, monitor.getState());
+    assertTrue(monitor.allowRequest());
+
+    monitor.recordFailure();
+    assertEquals(State.DOWN, monitor.getState());
+    assertFalse(monitor.allowRequest());
+  }
+
+  @Test
+  void successResetsTheFailureCount() {
+    RedisHealthMonitor monitor = new RedisHealthMonitor(3);
+    monitor.recordSuccess();
+    monitor.recordFailure();
+    monitor.recordFailure();
+    monitor.recordSuccess();
+    assertEquals(State.UP, monitor.getState());
+
+    monitor.recordFailure();
+    monitor.recordFailure();
+    assertEquals(State.DEGRADED, monitor.getState());
+  }
+
+  @Test
+  void recoveryIsHalfOpen() {
+    RedisHealthMonitor monitor = new RedisHealthMonitor(3);
+    for (int i = 0; i < 3; i++) {
+      monitor.recordFailure();
+    }
+
+    monitor.recordSuccess();
+    assertEquals(State.DEGRADED, monitor.getState());
+    monitor.recordFailure();
+    assertEquals(State.DOWN, monitor.getState());
+
+    monitor.recordSuccess();
+    monitor.recordSuccess();
+    assertEquals(State.UP, monitor.getState());
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.controller;
+
+import static com.crio.qeats.controller.RestaurantController.APPLICATION_NDJSON_VALUE;
+import static com.crio.qeats.controller.RestaurantController.RESTAURANTS_API;
+import static com.crio.qeats.controller.RestaurantController.RESTAURANT_API_ENDPOINT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.exchanges.GetRestaurantsRequest;
+import com.crio.qeats.exchanges.GetRestaurantsResponse;
+import com.crio.qeats.services.RestaurantService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.util.NestedServletException;
+
+class RestaurantControllerStreamingTest {
+
+  private static final String SEARCH_URI = RESTAURANT_API_ENDPOINT + RESTAURANTS_API
+      + "?latitude=20.21&longitude=30.31&searchFor=a2b";
+
+  @InjectMocks
+  private RestaurantController restaurantController;
+  @Mock
+  private RestaurantService restaurantService;
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private MockMvc mvc;
+
+  @BeforeEach
+  void setup() {
+    MockitoAnnotations.initMocks(this);
+    ReflectionTestUtils.setField(restaurantController, "objectMapper", objectMapper);
+    mvc = MockMvcBuilders.standaloneSetup(restaurantController).build();
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void ndjsonSearchWritesEveryBatchAsLines() throws Exception {
+    doAnswer(invocation -> {
+      Consumer<List<Restaurant>> sink = invocation.getArgument(2);
+      sink.accept(Arrays.asList(restaurant("1", "A2B"), restaurant("2", "A2B Adyar")));
+      sink.accept(Arrays.asList(restaurant("3", "Saravana")));
+      return null;
+    }).when(restaurantService).streamRestaurantsBySearchQuery(
+        any(GetRestaurantsRequest.class), any(LocalTime.class), any(Consumer.class));
+
+    MvcResult started = mvc.perform(get(SEARCH_URI).accept(APPLICATION_NDJSON_VALUE))
+        .andExpect(request().asyncStarted())
+        .andReturn();
+    MvcResult result = mvc.perform(asyncDispatch(started))
+        .andExpect(status().isOk())
+        .andExpect(content().contentType(APPLICATION_NDJSON_VALUE))
+        .andReturn();
+
+    String[] lines = result.getResponse().getContentAsString().split("\n");
+    assertEquals(3, lines.length);
+    assertEquals("1", objectMapper.readValue(lines[0], Restaurant.class).getRestaurantId());
+    assertEquals("2", objectMapper.readValue(lines[1], Restaurant.class).getRestaurantId());
+    assertEquals("3", objectMapper.readValue(lines[2], Restaurant.class).getRestaurantId());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  void searchIsOnlyStreamedWhenAskedFor() throws Exception {
+    when(restaurantService.findAllRestaurantsCloseBy(any(GetRestaurantsRequest.class),
+        any(LocalTime.class))).thenReturn(new GetRestaurantsResponse(Arrays.asList()));
+    when(restaurantService.findRestaurantsBySearchQuery(any(GetRestaurantsRequest.class),
+        any(LocalTime.class)))
+        .thenReturn(new GetRestaurantsResponse(Arrays.asList(restaurant("1", "A2B"))));
+
+    mvc.perform(get(SEARCH_URI))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    mvc.perform(get(SEARCH_URI).accept(MediaType.ALL))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    mvc.perform(get(SEARCH_URI).accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isOk())
+        .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+
+    verify(restaurantService, never()).streamRestaurantsBySearchQuery(
+        any(GetRestaurantsRequest.class), any(LocalTime.class), any(Consumer.class));
+  }
+
+  @Test
+  void invalidLocationIsRejectedBeforeStreaming() throws Exception {
+    mvc.perform(get(RESTAURANT_API_ENDPOINT + RESTAURANTS_API
+        + "?latitude=91&longitude=30.31&searchFor=a2b").accept(APPLICATION_NDJSON_VALUE))
+        .andExpect(status().isBadRequest());
+  }
+
+  @Test
+  void malformedPageIsRejectedWithoutCallingTheService() throws Exception {
+    String nearbyUri = RESTAURANT_API_ENDPOINT + RESTAURANTS_API
+        + "?latitude=20.21&longitude=30.31";
+    mvc.perform(get(nearbyUri + "&cursor=garbage").accept(MediaType.APPLICATION_JSON))
+        .andExpect(status().isBadRequest());
+    mvc.perform(get(nearbyUri + "&limit=0").accept(APPLICATION_NDJSON_VALUE))
+        .andExpect(status().isBadRequest());
+
+    verify(restaurantService, never()).findAllRestaurantsCloseBy(
+        any(GetRestaurantsRequest.class), any(LocalTime.class));
+  }
+
+  @Test
+  void internalErrorsAreNotClientErrors() {
+    when(restaurantService.findAllRestaurantsCloseBy(any(GetRestaurantsRequest.class),
+        any(LocalTime.class))).thenThrow(new IllegalArgumentException("bug"));
+
+    assertThrows(NestedServletException.class, () -> mvc.perform(
+        get(RESTAURANT_API_ENDPOINT + RESTAURANTS_API + "?latitude=20.21&longitude=30.31")
+            .accept(MediaType.APPLICATION_JSON)));
+  }
+
+  private static Restaurant restaurant(String restaurantId, String name) {
+    Restaurant restaurant = new Restaurant();
+    restaurant.setRestaurantId(restaurantId);
+    restaurant.setName(name);
+    return restaurant;
+  }
+}
@@ -15,10 +15,12 @@ import static com.crio.qeats.controller.RestaurantController.MENU_API;
 import static com.crio.qeats.controller.RestaurantController.POST_ORDER_API;
 import static com.crio.qeats.controller.RestaurantController.RESTAURANTS_API;
 import static com.crio.qeats.controller.RestaurantController.RESTAURANT_API_ENDPOINT;
+import static com.crio.qeats.controller.RestaurantController.SUGGEST_API;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -32,13 +34,17 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import com.crio.qeats.QEatsApplication;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
+import com.crio.qeats.exchanges.GetSuggestionsRequest;
+import com.crio.qeats.exchanges.GetSuggestionsResponse;
 import com.crio.qeats.services.RestaurantService;
+import com.crio.qeats.services.SuggestionService;
 import com.crio.qeats.utils.FixtureHelpers;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.net.URI;
 import java.time.LocalTime;
+import java.util.Arrays;
 import java.util.List;
 import java.util.NoSuchElementException;
 import org.junit.jupiter.api.BeforeEach;
@@ -79,6 +85,7 @@ public class RestaurantControllerTest {
   private static final String CLEAR_CART_API_URI = RESTAURANT_API_ENDPOINT + CART_CLEAR_API;
   private static final String POST_ORDER_API_URI = RESTAURANT_API_ENDPOINT + POST_ORDER_API;
   private static final String LIST_ORDERS_API_URI = RESTAURANT_API_ENDPOINT + GET_ORDERS_API;
+  private static final String SUGGEST_API_URI = RESTAURANT_API_ENDPOINT + SUGGEST_API;
 
   private static final String FIXTURES = "fixtures/exchanges";
   private ObjectMapper objectMapper;
@@ -88,6 +95,9 @@ public class RestaurantControllerTest {
   @MockBean
   private RestaurantService restaurantService;
 
+  @MockBean
+  private SuggestionService suggestionService;
+
 
   @InjectMocks
   private RestaurantController restaurantController;
@@ -165,6 +175,8 @@ public class RestaurantControllerTest {
 
     verify(restaurantService, times(1))
         .findRestaurantsBySearchQuery(argumentCaptor.capture(), any(LocalTime.class));
+    verify(restaurantService, never())
+        .findAllRestaurantsCloseBy(any(GetRestaurantsRequest.class), any(LocalTime.class));
 
     assertEquals("20.21", argumentCaptor.getValue().getLatitude().toString());
 
@@ -328,7 +340,49 @@ public class RestaurantControllerTest {
     assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
   }
 
+  @Test
+  public void suggestReturnsCompletionsOfThePrefix() throws Exception {
+    when(suggestionService.findSuggestions(any(GetSuggestionsRequest.class)))
+        .thenReturn(new GetSuggestionsResponse(Arrays.asList("Biryani", "Biryani Blues")));
+
+    URI uri = UriComponentsBuilder
+        .fromPath(SUGGEST_API_URI)
+        .queryParam("latitude", "20.21")
+        .queryParam("longitude", "30.31")
+        .queryParam("prefix", "bir")
+        .queryParam("limit", "5")
+        .build().toUri();
+
+    MockHttpServletResponse response = mvc.perform(
+        get(uri.toString()).accept(APPLICATION_JSON_UTF8)
+    ).andReturn().getResponse();
 
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertEquals("{\"suggestions\":[\"Biryani\",\"Biryani Blues\"]}",
+        response.getContentAsString());
+
+    ArgumentCaptor<GetSuggestionsRequest> argumentCaptor = ArgumentCaptor
+        .forClass(GetSuggestionsRequest.class);
+    verify(suggestionService, times(1)).findSuggestions(argumentCaptor.capture());
+    assertEquals("bir", argumentCaptor.getValue().getPrefix());
+    assertEquals(5, argumentCaptor.getValue().getLimit().intValue());
+  }
+
+  @Test
+  public void suggestWithoutPrefixResultsInBadHttpRequest() throws Exception {
+    URI uri = UriComponentsBuilder
+        .fromPath(SUGGEST_API_URI)
+        .queryParam("latitude", "20.21")
+        .queryParam("longitude", "30.31")
+        .build().toUri();
+
+    MockHttpServletResponse response = mvc.perform(
+        get(uri.toString()).accept(APPLICATION_JSON_UTF8)
+    ).andReturn().getResponse();
+
+    assertEquals(HttpStatus.BAD_REQUEST.value(), response.getStatus());
+    verify(suggestionService, times(0)).findSuggestions(any(GetSuggestionsRequest.class));
+  }
 
   private GetRestaurantsResponse loadSampleResponseList() throws IOException {
     String fixture =
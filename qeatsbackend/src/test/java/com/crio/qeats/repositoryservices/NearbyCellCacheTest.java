@@ -0,0 +1,426 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ch.hsr.geohash.GeoHash;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.globals.GlobalConstants;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.embedded.RedisServer;
+
+class NearbyCellCacheTest {
+
+  private static final int REDIS_PORT = 6381;
+  private static final GeoHash CELL = GeoHash.withCharacterPrecision(20.0, 30.0,
+      GlobalConstants.NEARBY_CACHE_GEOHASH_PRECISION);
+  private static final String KEY = GlobalConstants.NEARBY_CACHE_KEY_PREFIX + CELL.toBase32();
+  private static final String LEASE_KEY = KEY + NearbyCellCache.LEASE_KEY_SUFFIX;
+
+  private static RedisServer redisServer;
+  private static JedisPool jedisPool;
+
+  @Mock
+  private RedisConfiguration redisConfiguration;
+
+  private NearbyCellCache nearbyCellCache;
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @BeforeAll
+  static void startRedis() throws IOException {
+    redisServer = new RedisServer(REDIS_PORT);
+    redisServer.start();
+    jedisPool = new JedisPool("localhost", REDIS_PORT);
+  }
+
+  @AfterAll
+  static void stopRedis() {
+    jedisPool.destroy();
+    redisServer.stop();
+  }
+
+  @BeforeEach
+  void setup() {
+    MockitoAnnotations.initMocks(this);
+    when(redisConfiguration.isCacheAvailable()).thenReturn(true);
+    when(redisConfiguration.getJedisPool()).thenReturn(jedisPool);
+    nearbyCellCache = newInstance(meterRegistry);
+  }
+
+  @AfterEach
+  void teardown() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.flushAll();
+    }
+  }
+
+  @Test
+  void secondLookupIsServedInProcess() {
+    List<Restaurant> first = nearbyCellCache.getCandidates(CELL, loader("11", "12"));
+    List<Restaurant> second = nearbyCellCache.getCandidates(CELL, loader("13"));
+
+    assertEquals(1, loads.get());
+    assertEquals(Arrays.asList("11", "12"), ids(second));
+    assertSame(first, second);
+    assertNotNull(redisValue(KEY));
+    assertNull(redisValue(LEASE_KEY));
+    assertEquals(1.0, meterRegistry.get("cache.gets").tags("cache", "nearby.redis", "result",
+        "miss").counter().count());
+    assertEquals(0.5, meterRegistry.get("qeats.nearby.cache.hit.ratio").tag("tier", "local")
+        .gauge().value());
+  }
+
+  @Test
+  void redisServesCellsDroppedInProcess() {
+    nearbyCellCache.getCandidates(CELL, loader("11", "12"));
+    nearbyCellCache.invalidateLocal();
+
+    List<Restaurant> candidates = nearbyCellCache.getCandidates(CELL, loader("13"));
+
+    assertEquals(1, loads.get());
+    assertEquals(Arrays.asList("11", "12"), ids(candidates));
+    assertEquals(0.5, meterRegistry.get("qeats.nearby.cache.hit.ratio").tag("tier", "redis")
+        .gauge().value());
+  }
+
+  @Test
+  void cellsListIdsOfRestaurantsStoredOnce() {
+    GeoHash neighbour = GeoHash.withCharacterPrecision(20.01, 30.01,
+        GlobalConstants.NEARBY_CACHE_GEOHASH_PRECISION);
+    nearbyCellCache.getCandidates(CELL, loader("11", "12"));
+    nearbyCellCache.getCandidates(neighbour, loader("12", "13"));
+    nearbyCellCache.invalidateLocal();
+
+    assertEquals("[\"11\",\"12\"]", redisValue(KEY));
+    assertEquals(3, redisKeys(GlobalConstants.RESTAURANT_CACHE_KEY_PREFIX + "*").size());
+    assertEquals(Arrays.asList("12", "13"),
+        ids(nearbyCellCache.getCandidates(neighbour, loader("14"))));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void reloadedCellsReplaceTheRestaurantsTheyList() {
+    GeoHash neighbour = GeoHash.withCharacterPrecision(20.01, 30.01,
+        GlobalConstants.NEARBY_CACHE_GEOHASH_PRECISION);
+    nearbyCellCache.getCandidates(CELL, loader("11", "12"));
+    ageEntry(GlobalConstants.RESTAURANT_CACHE_KEY_PREFIX + "12");
+
+    nearbyCellCache.getCandidates(neighbour, () -> {
+      Restaurant renamed = new Restaurant();
+      renamed.setRestaurantId("12");
+      renamed.setName("Renamed");
+      return Collections.singletonList(renamed);
+    });
+    nearbyCellCache.invalidateLocal();
+
+    assertEquals(GlobalConstants.RESTAURANT_CACHE_EXPIRY_IN_SECONDS,
+        redisTtl(GlobalConstants.RESTAURANT_CACHE_KEY_PREFIX + "12"), 5);
+    assertEquals("Renamed", nearbyCellCache.getCandidates(CELL, loader("13")).get(1).getName());
+  }
+
+  @Test
+  void cellMissingARestaurantIsReloaded() {
+    nearbyCellCache.getCandidates(CELL, loader("11", "12"));
+    nearbyCellCache.invalidateLocal();
+    redisDelete(GlobalConstants.RESTAURANT_CACHE_KEY_PREFIX + "12");
+
+    assertEquals(Arrays.asList("11", "13"),
+        ids(nearbyCellCache.getCandidates(CELL, loader("11", "13"))));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  void coveringCellsAreReadTogetherAndMissesLoadedTogether() {
+    List<GeoHash> cells = Arrays.asList(GeoHash.withCharacterPrecision(12.9, 77.6, 5),
+        GeoHash.withCharacterPrecision(12.9, 77.65, 5),
+        GeoHash.withCharacterPrecision(12.9, 77.7, 5));
+    List<List<GeoHash>> loaded = new ArrayList<>();
+    Function<List<GeoHash>, Map<String, List<Restaurant>>> loader = geoHashes -> {
+      loaded.add(geoHashes);
+      Map<String, List<Restaurant>> restaurants = new HashMap<>();
+      restaurants.put(geoHashes.get(0).toBase32(), loader("11", "12").get());
+      return restaurants;
+    };
+
+    nearbyCellCache.getRestaurantsInCells(cells.subList(0, 2), loader);
+    nearbyCellCache.invalidateLocal();
+    Map<String, List<Restaurant>> restaurants =
+        nearbyCellCache.getRestaurantsInCells(cells, loader);
+
+    assertEquals(Arrays.asList(cells.subList(0, 2), cells.subList(2, 3)), loaded);
+    assertEquals(Arrays.asList("11", "12"), ids(restaurants.get(cells.get(0).toBase32())));
+    assertEquals(Collections.emptyList(), restaurants.get(cells.get(1).toBase32()));
+    assertEquals(Arrays.asList("11", "12"), ids(restaurants.get(cells.get(2).toBase32())));
+    assertEquals("[]", redisValue(GlobalConstants.CELL_CACHE_KEY_PREFIX
+        + cells.get(1).toBase32()));
+    assertEquals(2.0, meterRegistry.get("cache.gets").tags("cache", "nearby.redis", "result",
+        "hit").counter().count());
+  }
+
+  @Test
+  void concurrentMissesInProcessLoadOnce() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Supplier<List<Restaurant>> slowLoader = () -> {
+      loading.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return loader("11").get();
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<List<Restaurant>> first = executor.submit(
+          () -> nearbyCellCache.getCandidates(CELL, slowLoader));
+      loading.await();
+      Future<List<Restaurant>> second = executor.submit(
+          () -> nearbyCellCache.getCandidates(CELL, loader("12")));
+      Thread.sleep(100);
+      release.countDown();
+
+      assertEquals(Arrays.asList("11"), ids(first.get(5, TimeUnit.SECONDS)));
+      assertEquals(Arrays.asList("11"), ids(second.get(5, TimeUnit.SECONDS)));
+      assertEquals(1, loads.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void concurrentCellMissesInProcessLoadEachCellOnce() throws Exception {
+    List<GeoHash> cells = Arrays.asList(GeoHash.withCharacterPrecision(12.9, 77.6, 5),
+        GeoHash.withCharacterPrecision(12.9, 77.65, 5),
+        GeoHash.withCharacterPrecision(12.9, 77.7, 5));
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Function<List<GeoHash>, Map<String, List<Restaurant>>> slowLoader = geoHashes -> {
+      loading.countDown();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      return Collections.singletonMap(cells.get(1).toBase32(), loader("11").get());
+    };
+    List<List<GeoHash>> loaded = new ArrayList<>();
+    Function<List<GeoHash>, Map<String, List<Restaurant>>> loader = geoHashes -> {
+      loaded.add(geoHashes);
+      return Collections.singletonMap(cells.get(1).toBase32(), loader("12").get());
+    };
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Future<Map<String, List<Restaurant>>> first = executor.submit(
+          () -> nearbyCellCache.getRestaurantsInCells(cells.subList(0, 2), slowLoader));
+      loading.await();
+      Future<Map<String, List<Restaurant>>> second = executor.submit(
+          () -> nearbyCellCache.getRestaurantsInCells(cells.subList(1, 3), loader));
+      Thread.sleep(100);
+      release.countDown();
+
+      assertEquals(Arrays.asList("11"),
+          ids(first.get(5, TimeUnit.SECONDS).get(cells.get(1).toBase32())));
+      assertEquals(Arrays.asList("11"),
+          ids(second.get(5, TimeUnit.SECONDS).get(cells.get(1).toBase32())));
+      assertEquals(Collections.singletonList(cells.subList(2, 3)), loaded);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void instanceWaitsForTheCellLeasedByAnother() throws Exception {
+    redisSet(LEASE_KEY, "another instance");
+    // Stands in for the instance holding the lease, which it does not check again.
+    NearbyCellCache anotherInstance = newInstance(new SimpleMeterRegistry());
+    ReflectionTestUtils.setField(anotherInstance, "leaseInMs", 0L);
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<Restaurant>> waiting = executor.submit(
+          () -> nearbyCellCache.getCandidates(CELL, loader("12")));
+      Thread.sleep(100);
+      anotherInstance.getCandidates(CELL, loader("11"));
+      redisDelete(LEASE_KEY);
+
+      assertEquals(Arrays.asList("11"), ids(waiting.get(5, TimeUnit.SECONDS)));
+      assertEquals(1, loads.get());
+      assertEquals(1.0, meterRegistry.get("qeats.nearby.cache.lease.waits").counter().count());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void staleEntryIsServedAndRefreshedInTheBackground() {
+    nearbyCellCache.getCandidates(CELL, loader("11"));
+    ageEntry(KEY);
+    nearbyCellCache.invalidateLocal();
+
+    List<Restaurant> stale = nearbyCellCache.getCandidates(CELL, loader("12"));
+
+    // Refreshes run on the caller here, so this one is already done.
+    assertEquals(Arrays.asList("11"), ids(stale));
+    assertEquals(2, loads.get());
+    assertEquals(Arrays.asList("12"), ids(nearbyCellCache.getCandidates(CELL, loader("13"))));
+    assertEquals(GlobalConstants.REDIS_ENTRY_EXPIRY_IN_SECONDS, redisTtl(KEY), 5);
+    assertEquals(1.0, meterRegistry.get("qeats.nearby.cache.refreshes").tag("trigger", "stale")
+        .counter().count());
+  }
+
+  @Test
+  void hotCellsAreRefreshedBeforeTheyExpire() {
+    nearbyCellCache.getCandidates(CELL, loader("11"));
+
+    nearbyCellCache.refreshHotCells();
+    assertEquals(1, loads.get());
+
+    ageEntry(KEY);
+    nearbyCellCache.refreshHotCells();
+
+    assertEquals(2, loads.get());
+    assertEquals(GlobalConstants.REDIS_ENTRY_EXPIRY_IN_SECONDS, redisTtl(KEY), 5);
+    assertEquals(1.0, meterRegistry.get("qeats.nearby.cache.refreshes").tag("trigger", "hot")
+        .counter().count());
+  }
+
+  @Test
+  void refreshIsLeftToTheInstanceHoldingTheLease() {
+    nearbyCellCache.getCandidates(CELL, loader("11"));
+    ageEntry(KEY);
+    redisSet(LEASE_KEY, "another instance");
+
+    nearbyCellCache.refreshHotCells();
+
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  void cellsAreStillCachedInProcessWithoutRedis() {
+    when(redisConfiguration.isCacheAvailable()).thenReturn(false);
+
+    nearbyCellCache.getCandidates(CELL, loader("11"));
+    List<Restaurant> candidates = nearbyCellCache.getCandidates(CELL, loader("12"));
+
+    assertEquals(1, loads.get());
+    assertEquals(Arrays.asList("11"), ids(candidates));
+    verify(redisConfiguration, never()).getJedisPool();
+  }
+
+  @Test
+  void cachedCandidatesCannotBeChanged() {
+    List<Restaurant> candidates = nearbyCellCache.getCandidates(CELL, loader("11"));
+
+    assertThrows(UnsupportedOperationException.class, () -> candidates.remove(0));
+  }
+
+  private NearbyCellCache newInstance(SimpleMeterRegistry registry) {
+    NearbyCellCache instance = new NearbyCellCache();
+    ReflectionTestUtils.setField(instance, "redisConfiguration", redisConfiguration);
+    ReflectionTestUtils.setField(instance, "meterRegistry", registry);
+    ReflectionTestUtils.setField(instance, "refreshExecutor", (Executor) Runnable::run);
+    instance.initialize();
+    return instance;
+  }
+
+  // Leaves the entry with less time to live than the soft expiry allows.
+  private static void ageEntry(String key) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.expire(key, 60);
+    }
+  }
+
+  private static String redisValue(String key) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      return jedis.get(key);
+    }
+  }
+
+  private static Set<String> redisKeys(String pattern) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      return jedis.keys(pattern);
+    }
+  }
+
+  private static long redisTtl(String key) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      return jedis.ttl(key);
+    }
+  }
+
+  private static void redisSet(String key, String value) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.set(key, value);
+    }
+  }
+
+  private static void redisDelete(String key) {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.del(key);
+    }
+  }
+
+  private Supplier<List<Restaurant>> loader(String... restaurantIds) {
+    return () -> {
+      loads.incrementAndGet();
+      List<Restaurant> restaurants = new ArrayList<>();
+      for (String restaurantId : restaurantIds) {
+        Restaurant restaurant = new Restaurant();
+        restaurant.setRestaurantId(restaurantId);
+        restaurants.add(restaurant);
+      }
+      return restaurants;
+    };
+  }
+
+  private static List<String> ids(List<Restaurant> restaurants) {
+    List<String> ids = new ArrayList<>();
+    for (Restaurant restaurant : restaurants) {
+      ids.add(restaurant.getRestaurantId());
+    }
+    return ids;
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.utils.GeoUtils;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class NearestRestaurantSelectorTest {
+
+  @Test
+  void selectsNearestInOrder() {
+    List<Restaurant> restaurants = randomRestaurants(500);
+
+    List<String> expected = sortedByDistance(restaurants).stream()
+        .limit(10)
+        .map(Restaurant::getRestaurantId)
+        .collect(Collectors.toList());
+    List<String> actual = NearestRestaurantSelector
+        .select(restaurants, 12.9, 77.6, 10, null, null).stream()
+        .map(Restaurant::getRestaurantId)
+        .collect(Collectors.toList());
+
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  void pagesCoverEveryRestaurantOnceWithTies() {
+    List<Restaurant> restaurants = randomRestaurants(200);
+    // Same location as another restaurant, so the order relies on restaurantId.
+    for (int i = 0; i < 20; i++) {
+      restaurants.get(i).setLatitude(restaurants.get(i + 20).getLatitude());
+      restaurants.get(i).setLongitude(restaurants.get(i + 20).getLongitude());
+    }
+
+    List<Restaurant> paged = new ArrayList<>();
+    Double afterDistance = null;
+    String afterId = null;
+    while (true) {
+      List<Restaurant> page = NearestRestaurantSelector
+          .select(restaurants, 12.9, 77.6, 7, afterDistance, afterId);
+      if (page.isEmpty()) {
+        break;
+      }
+      paged.addAll(page);
+      Restaurant last = page.get(page.size() - 1);
+      afterDistance = GeoUtils.findDistanceInKm(12.9, 77.6, last.getLatitude(),
+          last.getLongitude());
+      afterId = last.getRestaurantId();
+    }
+
+    assertEquals(sortedByDistance(restaurants), paged);
+  }
+
+  private static List<Restaurant> sortedByDistance(List<Restaurant> restaurants) {
+    return restaurants.stream()
+        .sorted(Comparator.<Restaurant>comparingDouble(r -> GeoUtils.findDistanceInKm(12.9, 77.6,
+            r.getLatitude(), r.getLongitude())).thenComparing(Restaurant::getRestaurantId))
+        .collect(Collectors.toList());
+  }
+
+  private static List<Restaurant> randomRestaurants(int count) {
+    Random random = new Random(11);
+    List<Restaurant> restaurants = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      Restaurant restaurant = new Restaurant();
+      restaurant.setRestaurantId(String.valueOf(i));
+      restaurant.setLatitude(12.9 + (random.nextDouble() - 0.5) * 0.1);
+      restaurant.setLongitude(77.6 + (random.nextDouble() - 0.5) * 0.1);
+      restaurants.add(restaurant);
+    }
+    return restaurants;
+  }
+}
@@ -0,0 +1,140 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.crio.qeats.utils.GeoUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class RestaurantGridIndexTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  @Test
+  void findsRestaurantsWithinRadiusInLoadOrder() throws IOException {
+    RestaurantGridIndex gridIndex = RestaurantGridIndex.build(listOfRestaurants(), 0.05);
+
+    List<RestaurantEntity> closeBy = gridIndex.findWithinRadius(20.0, 30.0, 3.0);
+
+    assertEquals(2, closeBy.size());
+    assertEquals("11", closeBy.get(0).getRestaurantId());
+    assertEquals("12", closeBy.get(1).getRestaurantId());
+  }
+
+  @Test
+  void findsOnlyRestaurantsOpenAtTheGivenTime() throws IOException {
+    RestaurantGridIndex gridIndex = RestaurantGridIndex.build(listOfRestaurants(), 0.05);
+
+    assertEquals(2, gridIndex.findOpenWithinRadius(20.0, 30.0, 3.0, LocalTime.of(18, 1)).size());
+    assertEquals(0, gridIndex.findOpenWithinRadius(20.0, 30.0, 3.0, LocalTime.of(17, 59)).size());
+  }
+
+  @Test
+  void noRestaurantsFarAway() throws IOException {
+    RestaurantGridIndex gridIndex = RestaurantGridIndex.build(listOfRestaurants(), 0.05);
+
+    assertEquals(0, gridIndex.findWithinRadius(25.0, 35.0, 5.0).size());
+  }
+
+  @Test
+  void findsRestaurantsAcrossTheAntimeridian() {
+    List<RestaurantEntity> restaurants = new ArrayList<>();
+    for (double longitude : new double[] {179.99, -179.99, -179.9}) {
+      RestaurantEntity restaurant = new RestaurantEntity();
+      restaurant.setRestaurantId(String.valueOf(longitude));
+      restaurant.setLatitude(0.0);
+      restaurant.setLongitude(longitude);
+      restaurants.add(restaurant);
+    }
+
+    for (double cellSize : new double[] {0.05, 0.07}) {
+      RestaurantGridIndex gridIndex = RestaurantGridIndex.build(restaurants, cellSize);
+
+      assertEquals(Arrays.asList("179.99", "-179.99"), ids(gridIndex.findWithinRadius(0.0,
+          179.99, 2.226)));
+      assertEquals(Arrays.asList("179.99", "-179.99"), ids(gridIndex.findWithinRadius(0.0,
+          -179.99, 2.226)));
+    }
+  }
+
+  @Test
+  void matchesFullScanAcrossCellBoundaries() {
+    Random random = new Random(42);
+    List<RestaurantEntity> restaurants = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      RestaurantEntity restaurant = new RestaurantEntity();
+      restaurant.setRestaurantId(String.valueOf(i));
+      restaurant.setLatitude(12.8 + random.nextDouble() * 0.4);
+      restaurant.setLongitude(77.4 + random.nextDouble() * 0.4);
+      restaurants.add(restaurant);
+    }
+    RestaurantGridIndex gridIndex = RestaurantGridIndex.build(restaurants, 0.01);
+
+    for (int i = 0; i < 50; i++) {
+      double latitude = 12.8 + random.nextDouble() * 0.4;
+      double longitude = 77.4 + random.nextDouble() * 0.4;
+      List<String> expected = restaurants.stream()
+          .filter(r -> GeoUtils.findDistanceInKm(latitude, longitude,
+              r.getLatitude(), r.getLongitude()) < 5.0)
+          .map(RestaurantEntity::getRestaurantId)
+          .collect(Collectors.toList());
+      List<String> actual = gridIndex.findWithinRadius(latitude, longitude, 5.0).stream()
+          .map(RestaurantEntity::getRestaurantId)
+          .collect(Collectors.toList());
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  void findsRestaurantJustInsideTheRadiusInTheNextCellColumn() {
+    // The cell boundary at 77.63 lies between the query and the restaurant, which is 3 km
+    // away less a few meters, at the widest longitude of the circle.
+    double longitude = 77.63 - 0.02766;
+    RestaurantEntity restaurant = new RestaurantEntity();
+    restaurant.setRestaurantId("edge");
+    restaurant.setLatitude(12.9);
+    restaurant.setLongitude(77.63001);
+    assertTrue(GeoUtils.findDistanceInKm(12.9, longitude, 12.9, 77.63001) < 3.0);
+
+    RestaurantGridIndex gridIndex = RestaurantGridIndex.build(Arrays.asList(restaurant), 0.01);
+
+    assertEquals(1, gridIndex.findWithinRadius(12.9, longitude, 3.0).size());
+  }
+
+  @Test
+  void rejectsNonPositiveCellSize() {
+    assertThrows(IllegalArgumentException.class,
+        () -> RestaurantGridIndex.build(new ArrayList<>(), 0));
+  }
+
+  private static List<String> ids(List<RestaurantEntity> restaurants) {
+    return restaurants.stream().map(RestaurantEntity::getRestaurantId)
+        .collect(Collectors.toList());
+  }
+
+  private List<RestaurantEntity> listOfRestaurants() throws IOException {
+    String fixture =
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json");
+
+    return new ObjectMapper().readValue(fixture, new TypeReference<List<RestaurantEntity>>() {
+    });
+  }
+}
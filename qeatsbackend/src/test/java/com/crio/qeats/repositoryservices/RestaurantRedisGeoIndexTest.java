@@ -0,0 +1,293 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.globals.GlobalConstants;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.RestaurantRepository;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.crio.qeats.utils.GeoUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.inject.Provider;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.modelmapper.ModelMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.GeoRadiusResponse;
+import redis.clients.jedis.GeoUnit;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.params.geo.GeoRadiusParam;
+import redis.clients.util.SafeEncoder;
+import redis.embedded.RedisServer;
+
+class RestaurantRedisGeoIndexTest {
+
+  private static final int REDIS_PORT = 6382;
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  private static RedisServer redisServer;
+  private static JedisPool jedisPool;
+  private static boolean supportsGeo;
+
+  @Mock
+  private RedisConfiguration redisConfiguration;
+  @Mock
+  private RestaurantRepository restaurantRepository;
+
+  private List<RestaurantEntity> allRestaurants;
+
+  @BeforeAll
+  static void startRedis() throws IOException {
+    // The server bundled with embedded-redis is 2.8, without the GEO commands of 3.2; lookups
+    // against a real GEO set only run on a newer server given with -Dredis.server=<path>.
+    String executable = System.getProperty("redis.server");
+    redisServer = executable == null ? new RedisServer(REDIS_PORT)
+        : new RedisServer(new File(executable), REDIS_PORT);
+    redisServer.start();
+    jedisPool = new JedisPool("localhost", REDIS_PORT);
+    try (Jedis jedis = jedisPool.getResource()) {
+      Matcher version = Pattern.compile("redis_version:(\\d+)\\.(\\d+)")
+          .matcher(jedis.info("server"));
+      supportsGeo = version.find() && Integer.parseInt(version.group(1)) * 100
+          + Integer.parseInt(version.group(2)) >= 302;
+    }
+  }
+
+  @AfterAll
+  static void stopRedis() {
+    jedisPool.destroy();
+    redisServer.stop();
+  }
+
+  @BeforeEach
+  void setup() throws IOException {
+    MockitoAnnotations.initMocks(this);
+    when(redisConfiguration.isCacheAvailable()).thenReturn(true);
+    when(redisConfiguration.getJedisPool()).thenReturn(jedisPool);
+    allRestaurants = listOfRestaurants();
+    when(restaurantRepository.findAll()).thenReturn(allRestaurants);
+  }
+
+  @AfterEach
+  void teardown() {
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.flushAll();
+    }
+  }
+
+  @Test
+  void missingSetIsBuiltInTheBackground() {
+    List<Runnable> builds = new ArrayList<>();
+    RestaurantRedisGeoIndex geoIndex = newInstance(builds::add);
+
+    assertNull(geoIndex.findWithinRadius(20.0, 30.0, 3.0));
+    assertNull(geoIndex.findWithinRadius(20.0, 30.0, 3.0));
+    verify(restaurantRepository, never()).findAll();
+    assertEquals(1, builds.size());
+
+    builds.get(0).run();
+
+    verify(restaurantRepository, times(1)).findAll();
+  }
+
+  // GEORADIUS is answered from the fixture on the Haversine sphere Redis uses, since the bundled
+  // server has no GEO commands; the hashes are read from the server.
+  @Test
+  void lookupStretchesTheRadiusAndReadsTheHits() {
+    Jedis jedis = spy(new Jedis("localhost", REDIS_PORT));
+    JedisPool pool = mock(JedisPool.class);
+    when(pool.getResource()).thenReturn(jedis);
+    when(redisConfiguration.getJedisPool()).thenReturn(pool);
+    List<Double> radii = new ArrayList<>();
+    doAnswer(invocation -> {
+      double radius = invocation.getArgument(3);
+      radii.add(radius);
+      List<GeoRadiusResponse> members = new ArrayList<>();
+      for (RestaurantEntity restaurant : allRestaurants) {
+        if (GeoUtils.findDistanceInKm(20.0, 30.0, restaurant.getLatitude(),
+            restaurant.getLongitude()) * 6372.7976 / 6371.0 < radius) {
+          members.add(new GeoRadiusResponse(SafeEncoder.encode(restaurant.getRestaurantId())));
+        }
+      }
+      return members;
+    }).when(jedis).georadius(eq(GlobalConstants.REDIS_GEO_RESTAURANTS_KEY), eq(30.0), eq(20.0),
+        anyDouble(), eq(GeoUnit.KM), any(GeoRadiusParam.class));
+    RestaurantRedisGeoIndex geoIndex = newInstance();
+    assertNull(geoIndex.findWithinRadius(20.0, 30.0, 3.0));
+    doReturn(true).when(jedis).exists(GlobalConstants.REDIS_GEO_RESTAURANTS_KEY);
+
+    for (double radius : new double[] {3.0, 5.0, 100.0}) {
+      List<Restaurant> restaurants = geoIndex.findWithinRadius(20.0, 30.0, radius);
+
+      assertEquals(expectedIds(20.0, 30.0, radius), ids(restaurants));
+      assertEquals(radius * 6372.7976 / 6371.0, radii.get(radii.size() - 1), 1e-12);
+    }
+    jedis.close();
+  }
+
+  @Test
+  void firstLookupLoadsTheSetAndMatchesHaversine() {
+    assumeTrue(supportsGeo);
+    RestaurantRedisGeoIndex geoIndex = newInstance();
+    assertNull(geoIndex.findWithinRadius(20.0, 30.0, 3.0));
+
+    for (double radius : new double[] {3.0, 5.0, 100.0}) {
+      assertEquals(expectedIds(20.0, 30.0, radius),
+          ids(geoIndex.findWithinRadius(20.0, 30.0, radius)));
+    }
+    verify(restaurantRepository, times(1)).findAll();
+  }
+
+  @Test
+  void refreshIsSkippedUntilTheSetIsUsed() {
+    newInstance().refresh();
+
+    verify(restaurantRepository, never()).findAll();
+  }
+
+  @Test
+  void setFoundAfterRestartIsReconciled() {
+    assumeTrue(supportsGeo);
+    newInstance().load();
+
+    // Another instance, or this one after a restart, finds the set already there.
+    RestaurantRedisGeoIndex restarted = newInstance();
+    restarted.findWithinRadius(20.0, 30.0, 100.0);
+    List<RestaurantEntity> remaining = new ArrayList<>(allRestaurants);
+    RestaurantEntity removed = remaining.remove(0);
+    when(restaurantRepository.findAll()).thenReturn(remaining);
+    restarted.refresh();
+
+    Set<String> found = ids(restarted.findWithinRadius(20.0, 30.0, 100.0));
+    assertFalse(found.contains(removed.getRestaurantId()));
+    assertEquals(expectedIds(remaining, 20.0, 30.0, 100.0), found);
+  }
+
+  @Test
+  void failedLookupFallsBackToTheDatabase() {
+    RestaurantRedisGeoIndex geoIndex = mock(RestaurantRedisGeoIndex.class);
+    when(geoIndex.findWithinRadius(anyDouble(), anyDouble(), anyDouble()))
+        .thenThrow(new JedisConnectionException("Connection refused"));
+    RestaurantRepositoryServiceImpl restaurantRepositoryService =
+        new RestaurantRepositoryServiceImpl();
+    ReflectionTestUtils.setField(restaurantRepositoryService, "nearbyMode",
+        RestaurantRepositoryServiceImpl.NEARBY_MODE_REDIS_GEO);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "restaurantRedisGeoIndex",
+        geoIndex);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "redisConfiguration",
+        redisConfiguration);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "restaurantRepository",
+        restaurantRepository);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "modelMapperProvider",
+        (Provider<ModelMapper>) ModelMapper::new);
+
+    List<Restaurant> restaurants = restaurantRepositoryService.findAllRestaurantsCloseBy(
+        20.0, 30.0, LocalTime.of(18, 1), 3.0);
+
+    assertEquals(2, restaurants.size());
+    verify(redisConfiguration).reportFailure(any());
+  }
+
+  @Test
+  void lookupWhileTheSetIsBuiltIsServedFromTheDatabase() {
+    RestaurantRedisGeoIndex geoIndex = mock(RestaurantRedisGeoIndex.class);
+    when(geoIndex.findWithinRadius(anyDouble(), anyDouble(), anyDouble())).thenReturn(null);
+    RestaurantRepositoryServiceImpl restaurantRepositoryService =
+        new RestaurantRepositoryServiceImpl();
+    ReflectionTestUtils.setField(restaurantRepositoryService, "nearbyMode",
+        RestaurantRepositoryServiceImpl.NEARBY_MODE_REDIS_GEO);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "restaurantRedisGeoIndex",
+        geoIndex);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "redisConfiguration",
+        redisConfiguration);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "restaurantRepository",
+        restaurantRepository);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "modelMapperProvider",
+        (Provider<ModelMapper>) ModelMapper::new);
+
+    List<Restaurant> restaurants = restaurantRepositoryService.findAllRestaurantsCloseBy(
+        20.0, 30.0, LocalTime.of(18, 1), 3.0);
+
+    assertEquals(2, restaurants.size());
+    verify(redisConfiguration, never()).reportFailure(any());
+  }
+
+  private RestaurantRedisGeoIndex newInstance() {
+    return newInstance(Runnable::run);
+  }
+
+  private RestaurantRedisGeoIndex newInstance(Executor indexBuildExecutor) {
+    RestaurantRedisGeoIndex geoIndex = new RestaurantRedisGeoIndex();
+    ReflectionTestUtils.setField(geoIndex, "redisConfiguration", redisConfiguration);
+    ReflectionTestUtils.setField(geoIndex, "restaurantRepository", restaurantRepository);
+    ReflectionTestUtils.setField(geoIndex, "indexBuildExecutor", indexBuildExecutor);
+    return geoIndex;
+  }
+
+  private Set<String> expectedIds(double latitude, double longitude, double radius) {
+    return expectedIds(allRestaurants, latitude, longitude, radius);
+  }
+
+  private static Set<String> expectedIds(List<RestaurantEntity> restaurants, double latitude,
+      double longitude, double radius) {
+    return restaurants.stream()
+        .filter(r -> GeoUtils.findDistanceInKm(latitude, longitude, r.getLatitude(),
+            r.getLongitude()) < radius)
+        .map(RestaurantEntity::getRestaurantId)
+        .collect(Collectors.toCollection(TreeSet::new));
+  }
+
+  private static Set<String> ids(List<Restaurant> restaurants) {
+    return restaurants.stream().map(Restaurant::getRestaurantId)
+        .collect(Collectors.toCollection(TreeSet::new));
+  }
+
+  private List<RestaurantEntity> listOfRestaurants() throws IOException {
+    String fixture =
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json");
+
+    return new ObjectMapper().readValue(fixture, new TypeReference<List<RestaurantEntity>>() {
+    });
+  }
+}
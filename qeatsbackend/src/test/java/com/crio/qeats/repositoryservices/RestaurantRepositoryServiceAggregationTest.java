@@ -0,0 +1,173 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.utils.GeoUtils;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientURI;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.inject.Provider;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.modelmapper.ModelMapper;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RestaurantRepositoryServiceAggregationTest {
+
+  // Runs the comparison against a Mongo loaded with setup_mongo_performance.sh, e.g.
+  // -Dqeats.perf.mongo-uri=mongodb://localhost:27017/restaurant-database
+  private static final String PERF_MONGO_URI = "qeats.perf.mongo-uri";
+  private static final List<String> ITEM_NAMES = Arrays.asList("chicken", "paneer", "briyani",
+      "pizza", "dosa", "noodles", "cake");
+  private static final List<String> ITEM_ATTRIBUTES = Arrays.asList("spicy", "veg", "sweet");
+  private static final int ROUNDS = 20;
+
+  @Test
+  void joinsMatchingMenusToRestaurantsInsideTheBox() {
+    List<Document> pipeline = pipeline(RestaurantRepositoryServiceImpl.menuSearchAggregation(
+        Criteria.where("items.name").regex("briyani", "i"), 12.9, 77.6, 5.0));
+
+    assertEquals(Arrays.asList("$match", "$project", "$lookup", "$unwind", "$match", "$project"),
+        pipeline.stream().map(stage -> stage.keySet().iterator().next())
+            .collect(Collectors.toList()));
+    Document lookup = (Document) pipeline.get(2).get("$lookup");
+    assertEquals("restaurants", lookup.get("from"));
+    assertEquals("restaurantId", lookup.get("localField"));
+    assertEquals("restaurantId", lookup.get("foreignField"));
+
+    Document inBox = (Document) pipeline.get(4).get("$match");
+    Document latitude = (Document) inBox.get("restaurant.latitude");
+    // 5 km is 0.04497 degrees of latitude on the 6371 km sphere.
+    assertTrue((Double) latitude.get("$gte") < 12.9 - 0.04496);
+    assertTrue((Double) latitude.get("$lte") > 12.9 + 0.04496);
+    assertTrue(inBox.containsKey("restaurant.longitude"));
+
+    Document fields = (Document) pipeline.get(5).get("$project");
+    assertEquals(0, fields.get("_id"));
+    assertEquals("$restaurant.name", fields.get("name"));
+    assertEquals("$restaurant.attributes", fields.get("attributes"));
+    assertEquals(10, fields.size());
+  }
+
+  // The two-query search keeps whatever lies within the radius, so the box must not drop a
+  // restaurant just inside it.
+  @Test
+  void boxKeepsRestaurantsJustInsideTheRadius() {
+    Document inBox = (Document) pipeline(RestaurantRepositoryServiceImpl.menuSearchAggregation(
+        Criteria.where("items.name").regex("briyani", "i"), 12.9, 77.6, 3.0))
+        .get(4).get("$match");
+    Document latitude = (Document) inBox.get("restaurant.latitude");
+    Document longitude = (Document) inBox.get("restaurant.longitude");
+
+    double[][] edges = {{12.9, 77.6 + 0.027651}, {12.9, 77.6 - 0.027651},
+        {12.9 + 0.026979, 77.6}, {12.9 - 0.026979, 77.6}};
+    for (double[] edge : edges) {
+      assertTrue(GeoUtils.findDistanceInKm(12.9, 77.6, edge[0], edge[1]) < 3.0);
+      assertTrue((Double) latitude.get("$gte") <= edge[0]
+          && edge[0] <= (Double) latitude.get("$lte"), Arrays.toString(edge));
+      assertTrue((Double) longitude.get("$gte") <= edge[1]
+          && edge[1] <= (Double) longitude.get("$lte"), Arrays.toString(edge));
+    }
+  }
+
+  @Test
+  void boxIsNotAppliedAcrossTheAntimeridian() {
+    Document inBox = (Document) pipeline(RestaurantRepositoryServiceImpl.menuSearchAggregation(
+        Criteria.where("items.name").regex("briyani", "i"), 0.0, 179.99, 5.0))
+        .get(4).get("$match");
+
+    assertTrue(inBox.containsKey("restaurant.latitude"));
+    assertFalse(inBox.containsKey("restaurant.longitude"));
+  }
+
+  @Test
+  @EnabledIfSystemProperty(named = PERF_MONGO_URI, matches = ".+")
+  void aggregationMatchesTwoQuerySearchOnPerfDataset() {
+    MongoClientURI uri = new MongoClientURI(System.getProperty(PERF_MONGO_URI));
+    MongoClient mongoClient = new MongoClient(uri);
+    try {
+      MongoTemplate mongoTemplate = new MongoTemplate(mongoClient, uri.getDatabase());
+      RestaurantRepositoryServiceImpl twoQueries = repositoryService(mongoTemplate,
+          RestaurantRepositoryServiceImpl.SEARCH_MODE_MONGO);
+      RestaurantRepositoryServiceImpl aggregation = repositoryService(mongoTemplate,
+          RestaurantRepositoryServiceImpl.SEARCH_MODE_AGGREGATION);
+      double latitude = Double.parseDouble(System.getProperty("qeats.perf.latitude", "12.9"));
+      double longitude = Double.parseDouble(System.getProperty("qeats.perf.longitude", "77.8"));
+      LocalTime time = LocalTime.of(20, 0);
+
+      for (String itemName : ITEM_NAMES) {
+        assertEquals(ids(twoQueries.findRestaurantsByItemName(latitude, longitude, itemName,
+            time, 5.0)), ids(aggregation.findRestaurantsByItemName(latitude, longitude,
+            itemName, time, 5.0)), itemName);
+      }
+      for (String itemAttribute : ITEM_ATTRIBUTES) {
+        assertEquals(ids(twoQueries.findRestaurantsByItemAttributes(latitude, longitude,
+            itemAttribute, time, 5.0)), ids(aggregation.findRestaurantsByItemAttributes(
+            latitude, longitude, itemAttribute, time, 5.0)), itemAttribute);
+      }
+
+      System.out.printf("Item search over %d rounds: two queries %d ms, aggregation %d ms%n",
+          ROUNDS, timeInMs(twoQueries, latitude, longitude, time),
+          timeInMs(aggregation, latitude, longitude, time));
+    } finally {
+      mongoClient.close();
+    }
+  }
+
+  private static RestaurantRepositoryServiceImpl repositoryService(MongoTemplate mongoTemplate,
+      String searchMode) {
+    RestaurantRepositoryServiceImpl repositoryService = new RestaurantRepositoryServiceImpl();
+    ReflectionTestUtils.setField(repositoryService, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(repositoryService, "modelMapperProvider",
+        (Provider<ModelMapper>) ModelMapper::new);
+    ReflectionTestUtils.setField(repositoryService, "searchMode", searchMode);
+    return repositoryService;
+  }
+
+  // The first round warms up connections and the server's caches and is not counted.
+  private static long timeInMs(RestaurantRepositoryServiceImpl repositoryService,
+      double latitude, double longitude, LocalTime time) {
+    long start = 0;
+    for (int round = 0; round <= ROUNDS; round++) {
+      if (round == 1) {
+        start = System.nanoTime();
+      }
+      for (String itemName : ITEM_NAMES) {
+        repositoryService.findRestaurantsByItemName(latitude, longitude, itemName, time, 5.0);
+      }
+      for (String itemAttribute : ITEM_ATTRIBUTES) {
+        repositoryService.findRestaurantsByItemAttributes(latitude, longitude, itemAttribute,
+            time, 5.0);
+      }
+    }
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static List<Document> pipeline(Aggregation aggregation) {
+    return (List<Document>) aggregation.toDocument("menus", Aggregation.DEFAULT_CONTEXT)
+        .get("pipeline");
+  }
+
+  private static List<String> ids(List<Restaurant> restaurants) {
+    return restaurants.stream().map(Restaurant::getRestaurantId).sorted()
+        .collect(Collectors.toList());
+  }
+}
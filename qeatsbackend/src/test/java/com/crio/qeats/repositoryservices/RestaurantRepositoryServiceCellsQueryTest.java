@@ -0,0 +1,94 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ch.hsr.geohash.BoundingBox;
+import ch.hsr.geohash.GeoHash;
+import com.crio.qeats.globals.GlobalConstants;
+import com.crio.qeats.utils.GeoUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.query.GeoCommand;
+
+class RestaurantRepositoryServiceCellsQueryTest {
+
+  @Test
+  void polygonHoldsEveryCoveringCell() {
+    for (double latitude : new double[] {12.9, 60.0, -45.0}) {
+      List<GeoHash> cells = GeoUtils.findCoveringGeoHashes(latitude, 77.6, 5.0,
+          GlobalConstants.CELL_CACHE_GEOHASH_PRECISION);
+      Document query = RestaurantRepositoryServiceImpl.cellsQuery(cells).getQueryObject();
+
+      assertHoldsCells(polygon((Document) query.get("location")), cells);
+    }
+  }
+
+  @Test
+  void cellsAcrossTheAntimeridianGetOneBoxPerSide() {
+    List<GeoHash> cells = GeoUtils.findCoveringGeoHashes(0.0, 179.99, 5.0,
+        GlobalConstants.CELL_CACHE_GEOHASH_PRECISION);
+    Document query = RestaurantRepositoryServiceImpl.cellsQuery(cells).getQueryObject();
+
+    @SuppressWarnings("unchecked")
+    List<Document> sides = (List<Document>) query.get("$or");
+    assertEquals(2, sides.size());
+    List<GeoHash> east = new ArrayList<>();
+    List<GeoHash> west = new ArrayList<>();
+    for (GeoHash cell : cells) {
+      (cell.getBoundingBox().getMinLon() >= 0 ? east : west).add(cell);
+    }
+    assertHoldsCells(polygon((Document) sides.get(0).get("location")), east);
+    assertHoldsCells(polygon((Document) sides.get(1).get("location")), west);
+  }
+
+  private static GeoJsonPolygon polygon(Document location) {
+    return (GeoJsonPolygon) ((GeoCommand) ((Document) location.get("$geoWithin"))
+        .get("$geometry")).getShape();
+  }
+
+  // The south and north edges are great circle arcs; their middle must not cut into a cell.
+  private static void assertHoldsCells(GeoJsonPolygon polygon, List<GeoHash> cells) {
+    List<Point> corners = polygon.getPoints();
+    double minLongitude = corners.get(0).getX();
+    double maxLongitude = corners.get(1).getX();
+    double south = middleLatitude(corners.get(0), corners.get(1));
+    double north = middleLatitude(corners.get(2), corners.get(3));
+    for (GeoHash cell : cells) {
+      BoundingBox box = cell.getBoundingBox();
+      assertTrue(minLongitude <= box.getMinLon() && box.getMaxLon() <= maxLongitude,
+          Arrays.asList(corners, cell.toBase32()).toString());
+      assertTrue(south <= box.getMinLat() && box.getMaxLat() <= north,
+          Arrays.asList(corners, cell.toBase32()).toString());
+      assertTrue(corners.get(0).getY() <= box.getMinLat()
+          && box.getMaxLat() <= corners.get(2).getY());
+    }
+  }
+
+  private static double middleLatitude(Point from, Point to) {
+    double[] a = unitVector(from);
+    double[] b = unitVector(to);
+    double x = a[0] + b[0];
+    double y = a[1] + b[1];
+    double z = a[2] + b[2];
+    return Math.toDegrees(Math.atan2(z, Math.sqrt(x * x + y * y)));
+  }
+
+  private static double[] unitVector(Point point) {
+    double latitude = Math.toRadians(point.getY());
+    double longitude = Math.toRadians(point.getX());
+    return new double[] {Math.cos(latitude) * Math.cos(longitude),
+        Math.cos(latitude) * Math.sin(longitude), Math.sin(latitude)};
+  }
+}
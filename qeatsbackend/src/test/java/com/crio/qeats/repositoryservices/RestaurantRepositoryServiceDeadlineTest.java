@@ -0,0 +1,92 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.inject.Provider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.modelmapper.ModelMapper;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RestaurantRepositoryServiceDeadlineTest {
+
+  private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+  private final RestaurantRepositoryServiceImpl restaurantRepositoryService =
+      new RestaurantRepositoryServiceImpl();
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(restaurantRepositoryService, "mongoTemplate", mongoTemplate);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "modelMapperProvider",
+        (Provider<ModelMapper>) ModelMapper::new);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "searchMode",
+        RestaurantRepositoryServiceImpl.SEARCH_MODE_MONGO);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "nearbyMode",
+        RestaurantRepositoryServiceImpl.NEARBY_MODE_CACHE);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "restaurantsSearchTimeoutInMs",
+        300L);
+    ReflectionTestUtils.setField(restaurantRepositoryService, "menusSearchTimeoutInMs", 500L);
+    when(mongoTemplate.find(any(Query.class), eq(RestaurantEntity.class), eq("restaurants")))
+        .thenReturn(new ArrayList<>());
+    MenuEntity menu = new MenuEntity();
+    menu.setRestaurantId("11");
+    when(mongoTemplate.find(any(Query.class), eq(MenuEntity.class), eq("menus")))
+        .thenReturn(Collections.singletonList(menu));
+  }
+
+  @Test
+  void concurrentSearchQueriesStopAtTheirDeadline() {
+    restaurantRepositoryService.findRestaurantsByNameAsync(20.0, 30.0, "a2b",
+        LocalTime.of(18, 1), 5.0);
+    assertMaxTimeAtMost(300, captureRestaurantQueries().get(0));
+
+    restaurantRepositoryService.findRestaurantsByItemNameAsync(20.0, 30.0, "dosa",
+        LocalTime.of(18, 1), 5.0);
+    ArgumentCaptor<Query> menuQuery = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate).find(menuQuery.capture(), eq(MenuEntity.class), eq("menus"));
+    assertMaxTimeAtMost(500, menuQuery.getValue());
+    assertMaxTimeAtMost(500, captureRestaurantQueries().get(1));
+  }
+
+  @Test
+  void sequentialSearchQueriesRunToCompletion() {
+    restaurantRepositoryService.findRestaurantsByName(20.0, 30.0, "a2b", LocalTime.of(18, 1),
+        5.0);
+
+    assertNull(captureRestaurantQueries().get(0).getMeta().getMaxTimeMsec());
+  }
+
+  private List<Query> captureRestaurantQueries() {
+    ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+    verify(mongoTemplate, atLeastOnce())
+        .find(query.capture(), eq(RestaurantEntity.class), eq("restaurants"));
+    return query.getAllValues();
+  }
+
+  private static void assertMaxTimeAtMost(long timeoutInMs, Query query) {
+    Long maxTimeMsec = query.getMeta().getMaxTimeMsec();
+    assertTrue(maxTimeMsec != null && maxTimeMsec > 0 && maxTimeMsec <= timeoutInMs);
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import com.crio.qeats.QEatsApplication;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.crio.qeats.utils.GeoUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+@SpringBootTest(classes = {QEatsApplication.class}, properties = {"qeats.nearby.mode=mongo"})
+@DirtiesContext
+@ActiveProfiles("test")
+class RestaurantRepositoryServiceGeoQueryTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+  private List<RestaurantEntity> allRestaurants = new ArrayList<>();
+
+  @Autowired
+  private RestaurantRepositoryServiceImpl restaurantRepositoryService;
+  @Autowired
+  private MongoTemplate mongoTemplate;
+  @Autowired
+  private ObjectMapper objectMapper;
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+
+  @BeforeEach
+  void setup() throws IOException {
+    allRestaurants = listOfRestaurants();
+    for (RestaurantEntity restaurantEntity : allRestaurants) {
+      mongoTemplate.save(restaurantEntity, "restaurants");
+    }
+    restaurantRepositoryService.ensureLocationIndex();
+  }
+
+  @AfterEach
+  void teardown() {
+    mongoTemplate.dropCollection("restaurants");
+    redisConfiguration.destroyCache();
+  }
+
+  @Test
+  void geoQueryMatchesHaversineScan() {
+    for (double radius : new double[] {3.0, 5.0, 100.0}) {
+      List<Restaurant> closeBy = restaurantRepositoryService
+          .findAllRestaurantsCloseBy(20.0, 30.0, LocalTime.of(18, 1), radius);
+
+      Set<String> expected = allRestaurants.stream()
+          .filter(r -> GeoUtils.findDistanceInKm(20.0, 30.0, r.getLatitude(), r.getLongitude())
+              < radius)
+          .map(RestaurantEntity::getRestaurantId)
+          .collect(Collectors.toCollection(TreeSet::new));
+      Set<String> actual = closeBy.stream()
+          .map(Restaurant::getRestaurantId)
+          .collect(Collectors.toCollection(TreeSet::new));
+      assertEquals(expected, actual);
+    }
+  }
+
+  @Test
+  void backfillsLocationOfImportedRestaurants() {
+    mongoTemplate.getCollection("restaurants").updateMany(new org.bson.Document(),
+        new org.bson.Document("$unset", new org.bson.Document("location", "")));
+
+    restaurantRepositoryService.ensureLocationIndex();
+
+    for (RestaurantEntity restaurantEntity :
+        mongoTemplate.findAll(RestaurantEntity.class, "restaurants")) {
+      assertNotNull(restaurantEntity.getLocation());
+      assertEquals(restaurantEntity.getLongitude().doubleValue(),
+          restaurantEntity.getLocation().getX());
+      assertEquals(restaurantEntity.getLatitude().doubleValue(),
+          restaurantEntity.getLocation().getY());
+    }
+  }
+
+  @Test
+  void closedRestaurantsAreFilteredOut() {
+    assertEquals(0, restaurantRepositoryService
+        .findAllRestaurantsCloseBy(20.0, 30.0, LocalTime.of(17, 59), 3.0).size());
+  }
+
+  private List<RestaurantEntity> listOfRestaurants() throws IOException {
+    String fixture =
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json");
+
+    return objectMapper.readValue(fixture, new TypeReference<List<RestaurantEntity>>() {
+    });
+  }
+}
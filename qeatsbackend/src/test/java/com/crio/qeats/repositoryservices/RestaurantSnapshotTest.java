@@ -0,0 +1,99 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.crio.qeats.utils.GeoUtils;
+import com.crio.qeats.utils.OpeningHours;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class RestaurantSnapshotTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  @Test
+  void findsOpenRestaurantsWithinRadius() throws IOException {
+    RestaurantSnapshot snapshot = RestaurantSnapshot.build(listOfRestaurants(), 50000);
+
+    List<RestaurantEntity> closeBy =
+        snapshot.findOpenWithinRadius(20.0, 30.0, 3.0, LocalTime.of(18, 1));
+
+    assertEquals(2, closeBy.size());
+    assertEquals("11", closeBy.get(0).getRestaurantId());
+    assertEquals("12", closeBy.get(1).getRestaurantId());
+    assertEquals(0, snapshot.findOpenWithinRadius(20.0, 30.0, 3.0, LocalTime.of(17, 59)).size());
+  }
+
+  @Test
+  void filtersByAttributeIgnoringCase() throws IOException {
+    RestaurantSnapshot snapshot = RestaurantSnapshot.build(listOfRestaurants(), 50000);
+
+    assertEquals(2, snapshot.findOpenWithinRadiusByAttribute(20.0, 30.0, 3.0,
+        LocalTime.of(18, 1), "south").size());
+    assertEquals(0, snapshot.findOpenWithinRadiusByAttribute(20.0, 30.0, 3.0,
+        LocalTime.of(18, 1), "punjabi").size());
+  }
+
+  @Test
+  void parallelScanMatchesSequentialScan() {
+    Random random = new Random(3);
+    String[] cuisines = {"Tamil", "Punjabi", "Chinese", "Bengali", "Italian"};
+    List<RestaurantEntity> restaurants = new ArrayList<>();
+    for (int i = 0; i < 20000; i++) {
+      RestaurantEntity restaurant = new RestaurantEntity();
+      restaurant.setRestaurantId(String.valueOf(i));
+      restaurant.setLatitude(12.8 + random.nextDouble() * 0.4);
+      restaurant.setLongitude(77.4 + random.nextDouble() * 0.4);
+      restaurant.setOpensAt(String.format("%02d:00", random.nextInt(24)));
+      restaurant.setClosesAt(String.format("%02d:30", random.nextInt(24)));
+      restaurant.setAttributes(Arrays.asList(cuisines[random.nextInt(cuisines.length)],
+          cuisines[random.nextInt(cuisines.length)]));
+      restaurants.add(restaurant);
+    }
+    RestaurantSnapshot sequential = RestaurantSnapshot.build(restaurants, restaurants.size());
+    RestaurantSnapshot parallel = RestaurantSnapshot.build(restaurants, 700);
+
+    LocalTime time = LocalTime.of(21, 15);
+    List<String> expected = restaurants.stream()
+        .filter(r -> GeoUtils.findDistanceInKm(13.0, 77.6, r.getLatitude(), r.getLongitude())
+            < 5.0)
+        .filter(r -> OpeningHours.isOpen(r.getOpensAt(), r.getClosesAt(), time))
+        .map(RestaurantEntity::getRestaurantId)
+        .collect(Collectors.toList());
+
+    assertEquals(expected, ids(sequential.findOpenWithinRadius(13.0, 77.6, 5.0, time)));
+    assertEquals(expected, ids(parallel.findOpenWithinRadius(13.0, 77.6, 5.0, time)));
+    assertEquals(
+        ids(sequential.findOpenWithinRadiusByAttribute(13.0, 77.6, 5.0, time, "ital")),
+        ids(parallel.findOpenWithinRadiusByAttribute(13.0, 77.6, 5.0, time, "ital")));
+  }
+
+  private static List<String> ids(List<RestaurantEntity> restaurants) {
+    return restaurants.stream().map(RestaurantEntity::getRestaurantId)
+        .collect(Collectors.toList());
+  }
+
+  private List<RestaurantEntity> listOfRestaurants() throws IOException {
+    String fixture =
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json");
+
+    return new ObjectMapper().readValue(fixture, new TypeReference<List<RestaurantEntity>>() {
+    });
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RestaurantSpellingIndexTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+  private static final long NO_DEADLINE = Long.MAX_VALUE / 2;
+
+  @Test
+  void correctsToWordsOfNamesCuisinesAndDishes() throws IOException {
+    RestaurantSpellingIndex spellingIndex =
+        RestaurantSpellingIndex.build(listOfRestaurants(), listOfMenus());
+
+    assertEquals(Arrays.asList("briyani"), correct(spellingIndex, "Biriyani", 3));
+    assertEquals(Arrays.asList("tamil"), correct(spellingIndex, "tamill", 3));
+    assertEquals(Arrays.asList("ananda"), correct(spellingIndex, "anand", 3));
+    assertEquals(Arrays.asList("fish briyani"), correct(spellingIndex, "fish biryani", 3));
+  }
+
+  @Test
+  void shortOrCorrectQueriesAreNotCorrected() throws IOException {
+    RestaurantSpellingIndex spellingIndex =
+        RestaurantSpellingIndex.build(listOfRestaurants(), listOfMenus());
+
+    assertTrue(correct(spellingIndex, "a2c", 3).isEmpty());
+    assertTrue(correct(spellingIndex, "tamil", 3).isEmpty());
+    assertTrue(correct(spellingIndex, "pizza", 3).isEmpty());
+  }
+
+  @Test
+  void closerAndMorePopularTermsComeFirst() {
+    RestaurantSpellingIndex spellingIndex = RestaurantSpellingIndex.build(Arrays.asList(
+        restaurant("1", "Rosa Cafe"), restaurant("2", "Dosa Corner"),
+        restaurant("3", "Dosa Plaza"), restaurant("4", "Hosa Thindi")), new ArrayList<>());
+
+    assertEquals(Arrays.asList("dosa", "rosa"), correct(spellingIndex, "hosa", 3));
+    assertEquals(Arrays.asList("dosa"), correct(spellingIndex, "dosai", 1));
+  }
+
+  private static RestaurantEntity restaurant(String restaurantId, String name) {
+    RestaurantEntity restaurant = new RestaurantEntity();
+    restaurant.setRestaurantId(restaurantId);
+    restaurant.setName(name);
+    return restaurant;
+  }
+
+  private static List<String> correct(RestaurantSpellingIndex spellingIndex, String searchFor,
+      int limit) {
+    return spellingIndex.correct(searchFor, limit, System.nanoTime() + NO_DEADLINE);
+  }
+
+  private List<MenuEntity> listOfMenus() throws IOException {
+    String fixture = FixtureHelpers.fixture(FIXTURES + "/initial_data_set_menus.json");
+
+    return new ObjectMapper().readValue(fixture, new TypeReference<List<MenuEntity>>() {
+    });
+  }
+
+  private List<RestaurantEntity> listOfRestaurants() throws IOException {
+    String fixture =
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json");
+
+    return new ObjectMapper().readValue(fixture, new TypeReference<List<RestaurantEntity>>() {
+    });
+  }
+}
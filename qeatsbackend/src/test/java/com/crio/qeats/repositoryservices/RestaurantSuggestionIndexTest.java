@@ -0,0 +1,97 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RestaurantSuggestionIndexTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  @Test
+  void completesNamesCuisinesAndDishesIgnoringCase() throws IOException {
+    RestaurantSuggestionIndex suggestionIndex =
+        RestaurantSuggestionIndex.build(listOfRestaurants(), listOfMenus());
+
+    assertEquals(Arrays.asList("A2B", "A2B Adyar Ananda Bhavan"),
+        suggestionIndex.suggest(20.0, 30.0, "a", 10));
+    assertEquals(Arrays.asList("South Indian"), suggestionIndex.suggest(20.0, 30.0, "SOU", 10));
+    assertEquals(Arrays.asList("Fish Briyani"), suggestionIndex.suggest(20.0, 30.0, "fish", 10));
+  }
+
+  @Test
+  void restaurantsNearbyOutweighRestaurantsElsewhere() {
+    List<RestaurantEntity> restaurants = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      restaurants.add(restaurant("far" + i, "Pizza Hut", 28.6, 77.2));
+    }
+    restaurants.add(restaurant("near", "Pizza Corner", 12.9, 77.6));
+    RestaurantSuggestionIndex suggestionIndex =
+        RestaurantSuggestionIndex.build(restaurants, new ArrayList<>());
+
+    assertEquals(Arrays.asList("Pizza Corner", "Pizza Hut"),
+        suggestionIndex.suggest(12.9, 77.6, "pi", 10));
+    assertEquals(Arrays.asList("Pizza Hut", "Pizza Corner"),
+        suggestionIndex.suggest(28.6, 77.2, "pi", 10));
+    assertEquals(Arrays.asList("Pizza Hut", "Pizza Corner"),
+        suggestionIndex.suggest(0.0, 0.0, "pi", 10));
+  }
+
+  @Test
+  void returnsAtMostTheLimit() throws IOException {
+    RestaurantSuggestionIndex suggestionIndex =
+        RestaurantSuggestionIndex.build(listOfRestaurants(), listOfMenus());
+
+    assertEquals(Arrays.asList("A2B"), suggestionIndex.suggest(20.0, 30.0, "a2b", 1));
+  }
+
+  @Test
+  void unknownOrBlankPrefixHasNoCompletions() throws IOException {
+    RestaurantSuggestionIndex suggestionIndex =
+        RestaurantSuggestionIndex.build(listOfRestaurants(), listOfMenus());
+
+    assertTrue(suggestionIndex.suggest(20.0, 30.0, "zz", 10).isEmpty());
+    assertTrue(suggestionIndex.suggest(20.0, 30.0, "  ", 10).isEmpty());
+  }
+
+  private static RestaurantEntity restaurant(String restaurantId, String name, double latitude,
+      double longitude) {
+    RestaurantEntity restaurant = new RestaurantEntity();
+    restaurant.setRestaurantId(restaurantId);
+    restaurant.setName(name);
+    restaurant.setLatitude(latitude);
+    restaurant.setLongitude(longitude);
+    return restaurant;
+  }
+
+  private List<MenuEntity> listOfMenus() throws IOException {
+    String fixture = FixtureHelpers.fixture(FIXTURES + "/initial_data_set_menus.json");
+
+    return new ObjectMapper().readValue(fixture, new TypeReference<List<MenuEntity>>() {
+    });
+  }
+
+  private List<RestaurantEntity> listOfRestaurants() throws IOException {
+    String fixture =
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json");
+
+    return new ObjectMapper().readValue(fixture, new TypeReference<List<RestaurantEntity>>() {
+    });
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.LocalTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class RestaurantTextIndexTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  @Test
+  void findsOpenRestaurantsByNameWithinRadius() throws IOException {
+    RestaurantTextIndex textIndex = RestaurantTextIndex.build(listOfRestaurants(), listOfMenus());
+
+    List<RestaurantEntity> found =
+        textIndex.findByName(20.8, 30.1, 5.0, LocalTime.of(20, 0), "a2b");
+
+    assertEquals(2, found.size());
+    assertEquals("A2B", found.get(0).getName());
+    assertEquals("A2B Adyar Ananda Bhavan", found.get(1).getName());
+    assertEquals(1, textIndex.findByName(20.8, 30.1, 5.0, LocalTime.of(20, 0), "ADYAR").size());
+    assertEquals(0, textIndex.findByName(20.8, 30.1, 5.0, LocalTime.of(17, 0), "a2b").size());
+  }
+
+  @Test
+  void findsOpenRestaurantsByAttributeWithinRadius() throws IOException {
+    RestaurantTextIndex textIndex = RestaurantTextIndex.build(listOfRestaurants(), listOfMenus());
+
+    assertEquals(3, textIndex.findByAttribute(20.0, 30.0, 5.0, LocalTime.of(20, 0), "indian")
+        .size());
+    assertEquals(0, textIndex.findByAttribute(20.0, 30.0, 5.0, LocalTime.of(20, 0), "punjabi")
+        .size());
+  }
+
+  @Test
+  void resolvesMenuMatchesToOpenRestaurantsWithinRadius() throws IOException {
+    RestaurantTextIndex textIndex = RestaurantTextIndex.build(listOfRestaurants(), listOfMenus());
+
+    List<RestaurantEntity> found =
+        textIndex.findByItemName(20.0, 30.0, 5.0, LocalTime.of(20, 0), "briyani");
+
+    assertEquals(2, found.size());
+    assertEquals("11", found.get(0).getRestaurantId());
+    assertEquals("12", found.get(1).getRestaurantId());
+    assertEquals(1, textIndex.findByItemName(20.0, 30.0, 5.0, LocalTime.of(20, 0), "FISH")
+        .size());
+    assertEquals(2, textIndex.findByItemAttribute(20.0, 30.0, 5.0, LocalTime.of(20, 0), "mughal")
+        .size());
+  }
+
+  private List<MenuEntity> listOfMenus() throws IOException {
+    String fixture = FixtureHelpers.fixture(FIXTURES + "/initial_data_set_menus.json");
+
+    return new ObjectMapper().readValue(fixture, new TypeReference<List<MenuEntity>>() {
+    });
+  }
+
+  private List<RestaurantEntity> listOfRestaurants() throws IOException {
+    String fixture =
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json");
+
+    return new ObjectMapper().readValue(fixture, new TypeReference<List<RestaurantEntity>>() {
+    });
+  }
+}
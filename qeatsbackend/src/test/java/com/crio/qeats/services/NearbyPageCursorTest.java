@@ -0,0 +1,30 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+class NearbyPageCursorTest {
+
+  @Test
+  void roundTripsExactDistanceAndId() {
+    NearbyPageCursor cursor = NearbyPageCursor.decode(
+        new NearbyPageCursor(2.9999999999999996, "restaurant:42").encode());
+
+    assertEquals(2.9999999999999996, cursor.getDistanceInKms());
+    assertEquals("restaurant:42", cursor.getRestaurantId());
+  }
+
+  @Test
+  void rejectsMalformedCursors() {
+    assertThrows(IllegalArgumentException.class, () -> NearbyPageCursor.decode("not a cursor"));
+    assertThrows(IllegalArgumentException.class, () -> NearbyPageCursor.decode("djE6eno6MTE"));
+  }
+}
@@ -0,0 +1,276 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.exchanges.GetRestaurantsRequest;
+import com.crio.qeats.exchanges.GetRestaurantsResponse;
+import com.crio.qeats.repositoryservices.RestaurantRepositoryService;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RestaurantServiceMtTest {
+
+  private static final long LATENCY_IN_MS = 100;
+  private static final LocalTime TIME = LocalTime.of(18, 1);
+
+  @InjectMocks
+  private RestaurantServiceImpl restaurantService;
+  @Mock
+  private RestaurantRepositoryService restaurantRepositoryServiceMock;
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setup() {
+    MockitoAnnotations.initMocks(this);
+    ReflectionTestUtils.setField(restaurantService, "restaurantsTimeoutInMs", 500L);
+    ReflectionTestUtils.setField(restaurantService, "menusTimeoutInMs", 500L);
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @AfterEach
+  void teardown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void concurrentSearchMatchesAndBeatsSequentialSearch() {
+    when(restaurantRepositoryServiceMock.findRestaurantsByName(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> slowly(restaurants("1", "2")));
+    when(restaurantRepositoryServiceMock.findRestaurantsByAttributes(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> slowly(restaurants("2", "3")));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemName(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> slowly(restaurants("4")));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemAttributes(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> slowly(restaurants("1", "5")));
+    when(restaurantRepositoryServiceMock.findRestaurantsByNameAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(restaurants("1", "2")));
+    when(restaurantRepositoryServiceMock.findRestaurantsByAttributesAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(restaurants("2", "3")));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemNameAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(restaurants("4")));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemAttributesAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(restaurants("1", "5")));
+
+    long start = System.nanoTime();
+    GetRestaurantsResponse sequential =
+        restaurantService.findRestaurantsBySearchQuery(request(), TIME);
+    long sequentialInNanos = System.nanoTime() - start;
+
+    start = System.nanoTime();
+    GetRestaurantsResponse concurrent =
+        restaurantService.findRestaurantsBySearchQueryMt(request(), TIME);
+    long concurrentInNanos = System.nanoTime() - start;
+
+    assertEquals(ids(sequential), ids(concurrent));
+    assertEquals(5, concurrent.getRestaurants().size());
+    assertTrue(sequentialInNanos > 1.5 * concurrentInNanos,
+        "sequential " + sequentialInNanos + " ns, concurrent " + concurrentInNanos + " ns");
+  }
+
+  @Test
+  void sourceMissingItsDeadlineIsLeftOut() {
+    ReflectionTestUtils.setField(restaurantService, "menusTimeoutInMs", 200L);
+    when(restaurantRepositoryServiceMock.findRestaurantsByNameAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(restaurants("1")));
+    when(restaurantRepositoryServiceMock.findRestaurantsByAttributesAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(restaurants("2")));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemNameAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(new CompletableFuture<>());
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemAttributesAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> {
+          CompletableFuture<List<Restaurant>> failed = new CompletableFuture<>();
+          failed.completeExceptionally(new IllegalStateException("menus unavailable"));
+          return failed;
+        });
+
+    long start = System.nanoTime();
+    GetRestaurantsResponse response =
+        restaurantService.findRestaurantsBySearchQueryMt(request(), TIME);
+    long elapsedInMs = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals(2, response.getRestaurants().size());
+    assertEquals("1", response.getRestaurants().get(0).getRestaurantId());
+    assertEquals("2", response.getRestaurants().get(1).getRestaurantId());
+    assertTrue(elapsedInMs < 1000, "waited " + elapsedInMs + " ms");
+  }
+
+  @Test
+  void searchFindingNothingIsRetriedWithSpellingCorrections() {
+    ReflectionTestUtils.setField(restaurantService, "spellingCorrectionEnabled", true);
+    when(restaurantRepositoryServiceMock.findSpellingCorrections(eq("biryani"), anyInt(),
+        anyLong())).thenReturn(Arrays.asList("briyani", "biriyani"));
+    when(restaurantRepositoryServiceMock.findRestaurantsByNameAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(new ArrayList<>()));
+    when(restaurantRepositoryServiceMock.findRestaurantsByAttributesAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(new ArrayList<>()));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemNameAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(
+            "briyani".equals(invocation.getArgument(2)) ? restaurants("1", "2")
+                : "biriyani".equals(invocation.getArgument(2)) ? restaurants("2", "3")
+                : new ArrayList<>()));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemAttributesAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(new ArrayList<>()));
+
+    GetRestaurantsResponse response =
+        restaurantService.findRestaurantsBySearchQueryMt(request(), TIME);
+
+    assertEquals(Arrays.asList("1", "2", "3"), ids(response));
+    verify(restaurantRepositoryServiceMock).findSpellingCorrections(eq("biryani"), anyInt(),
+        anyLong());
+  }
+
+  @Test
+  void noCorrectionIsSearchedOnceTheBudgetHasRunOut() {
+    ReflectionTestUtils.setField(restaurantService, "spellingCorrectionEnabled", true);
+    ReflectionTestUtils.setField(restaurantService, "spellingCorrectionBudgetInMs",
+        LATENCY_IN_MS / 2);
+    when(restaurantRepositoryServiceMock.findSpellingCorrections(eq("biryani"), anyInt(),
+        anyLong())).thenReturn(Arrays.asList("briyani", "biriyani"));
+    when(restaurantRepositoryServiceMock.findRestaurantsByNameAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(new ArrayList<>()));
+    when(restaurantRepositoryServiceMock.findRestaurantsByAttributesAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(new ArrayList<>()));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemNameAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(
+            "briyani".equals(invocation.getArgument(2)) ? restaurants("1", "2")
+                : new ArrayList<>()));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemAttributesAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(new ArrayList<>()));
+
+    GetRestaurantsResponse response =
+        restaurantService.findRestaurantsBySearchQueryMt(request(), TIME);
+
+    assertEquals(Arrays.asList("1", "2"), ids(response));
+    verify(restaurantRepositoryServiceMock, never()).findRestaurantsByNameAsync(
+        anyDouble(), anyDouble(), eq("biriyani"), any(LocalTime.class), anyDouble());
+  }
+
+  @Test
+  void streamedBatchesFollowTheSourcesAsTheyAnswer() {
+    when(restaurantRepositoryServiceMock.findRestaurantsByNameAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> async(Arrays.asList(restaurant("1", "Biryani House"),
+            restaurant("2", "biryani"))));
+    when(restaurantRepositoryServiceMock.findRestaurantsByAttributesAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(CompletableFuture.completedFuture(restaurants("3")));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemNameAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenReturn(CompletableFuture.completedFuture(new ArrayList<>()));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemAttributesAsync(
+        anyDouble(), anyDouble(), anyString(), any(LocalTime.class), anyDouble()))
+        .thenAnswer(invocation -> CompletableFuture.supplyAsync(() -> {
+          slowly(null);
+          return slowly(restaurants("2", "4"));
+        }, executor));
+    List<List<String>> batches = new ArrayList<>();
+
+    restaurantService.streamRestaurantsBySearchQuery(request(), TIME, batch -> batches.add(
+        batch.stream().map(Restaurant::getRestaurantId).collect(Collectors.toList())));
+
+    assertEquals(Arrays.asList(Arrays.asList("3"), Arrays.asList("2", "1"),
+        Arrays.asList("4")), batches);
+  }
+
+  @Test
+  void emptySearchReturnsNoRestaurants() {
+    GetRestaurantsRequest request = request();
+    request.setSearchFor("");
+
+    assertEquals(0, restaurantService.findRestaurantsBySearchQueryMt(request, TIME)
+        .getRestaurants().size());
+  }
+
+  private GetRestaurantsRequest request() {
+    GetRestaurantsRequest request = new GetRestaurantsRequest(20.0, 30.0);
+    request.setSearchFor("biryani");
+    return request;
+  }
+
+  private Future<List<Restaurant>> async(List<Restaurant> restaurants) {
+    return CompletableFuture.supplyAsync(() -> slowly(restaurants), executor);
+  }
+
+  private static List<Restaurant> slowly(List<Restaurant> restaurants) {
+    try {
+      Thread.sleep(LATENCY_IN_MS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return restaurants;
+  }
+
+  private static Restaurant restaurant(String id, String name) {
+    Restaurant restaurant = new Restaurant();
+    restaurant.setRestaurantId(id);
+    restaurant.setName(name);
+    return restaurant;
+  }
+
+  private static List<Restaurant> restaurants(String... ids) {
+    List<Restaurant> restaurants = new ArrayList<>();
+    for (String id : ids) {
+      Restaurant restaurant = new Restaurant();
+      restaurant.setRestaurantId(id);
+      restaurants.add(restaurant);
+    }
+    return restaurants;
+  }
+
+  private static List<String> ids(GetRestaurantsResponse response) {
+    return response.getRestaurants().stream()
+        .map(Restaurant::getRestaurantId)
+        .collect(Collectors.toList());
+  }
+}
@@ -8,7 +8,10 @@
 package com.crio.qeats.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -203,7 +206,24 @@ class RestaurantServiceTest {
     assertEquals(0, allRestaurantsCloseBy.getRestaurants().size());
   }
 
-  
+  @Test
+  void limitedRequestReturnsOnePageWithNextCursor() throws IOException {
+    when(restaurantRepositoryServiceMock.findNearestRestaurantsCloseBy(any(Double.class),
+        any(Double.class), any(LocalTime.class), any(Double.class), eq(3), isNull(), isNull()))
+        .thenReturn(loadRestaurantsDuringNormalHours());
+
+    GetRestaurantsRequest getRestaurantsRequest = new GetRestaurantsRequest(20.0, 30.0);
+    getRestaurantsRequest.setLimit(2);
+    GetRestaurantsResponse firstPage = restaurantService
+        .findAllRestaurantsCloseBy(getRestaurantsRequest, LocalTime.of(17, 0));
+
+    assertEquals(2, firstPage.getRestaurants().size());
+    assertNotNull(firstPage.getNextCursor());
+    verify(restaurantRepositoryServiceMock, times(0))
+        .findAllRestaurantsCloseBy(any(Double.class), any(Double.class), any(LocalTime.class),
+            any(Double.class));
+  }
+
   private List<Restaurant> loadRestaurantsDuringNormalHours() throws IOException {
     String fixture =
         FixtureHelpers.fixture(FIXTURES + "/normal_hours_list_of_restaurants.json");
@@ -0,0 +1,191 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import ch.hsr.geohash.GeoHash;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.dto.Restaurant;
+import com.crio.qeats.globals.GlobalConstants;
+import com.crio.qeats.repositoryservices.RestaurantRepositoryService;
+import com.crio.qeats.utils.GeoUtils;
+import com.crio.qeats.utils.OpeningHours;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+class SearchResultCacheTest {
+
+  private static final LocalTime TIME = LocalTime.of(18, 30);
+
+  @InjectMocks
+  private SearchResultCache searchResultCache;
+  @Mock
+  private RedisConfiguration redisConfiguration;
+  @Mock
+  private RestaurantRepositoryService restaurantRepositoryService;
+  @Mock
+  private JedisPool jedisPool;
+  @Mock
+  private Jedis jedis;
+
+  private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+  private final Map<String, String> redis = new HashMap<>();
+  private final List<Restaurant> restaurants = new ArrayList<>();
+  private final AtomicInteger searches = new AtomicInteger();
+
+  @BeforeEach
+  void setup() {
+    MockitoAnnotations.initMocks(this);
+    ReflectionTestUtils.setField(searchResultCache, "meterRegistry", meterRegistry);
+    searchResultCache.registerMeters();
+
+    when(redisConfiguration.isCacheAvailable()).thenReturn(true);
+    when(redisConfiguration.getJedisPool()).thenReturn(jedisPool);
+    when(jedisPool.getResource()).thenReturn(jedis);
+    when(jedis.get(anyString())).thenAnswer(invocation -> redis.get(invocation.getArgument(0)));
+    when(jedis.setex(anyString(), anyInt(), anyString())).thenAnswer(invocation -> {
+      redis.put(invocation.getArgument(0), invocation.getArgument(2));
+      return "OK";
+    });
+    when(restaurantRepositoryService.findRestaurantsByIds(anyList())).thenAnswer(invocation -> {
+      List<String> ids = invocation.getArgument(0);
+      return restaurants.stream()
+          .filter(restaurant -> ids.contains(restaurant.getRestaurantId()))
+          .collect(Collectors.toList());
+    });
+
+    Random random = new Random(42);
+    for (int i = 0; i < 500; i++) {
+      Restaurant restaurant = new Restaurant();
+      restaurant.setRestaurantId(String.valueOf(i));
+      restaurant.setName(i % 3 == 0 ? "Biryani House " + i : "Pizza Place " + i);
+      restaurant.setLatitude(12.85 + random.nextDouble() * 0.1);
+      restaurant.setLongitude(77.55 + random.nextDouble() * 0.1);
+      restaurant.setOpensAt(i % 4 == 0 ? "19:00" : "10:00");
+      restaurant.setClosesAt("23:00");
+      restaurants.add(restaurant);
+    }
+  }
+
+  @Test
+  void entryServesEveryPointInTheCell() {
+    assertEquals(GeoHash.withCharacterPrecision(12.9000, 77.6000, 6),
+        GeoHash.withCharacterPrecision(12.9020, 77.6050, 6));
+    List<Restaurant> first = searchResultCache.search(12.9000, 77.6000, "Biryani", TIME, 3.0,
+        this::search);
+    List<Restaurant> second = searchResultCache.search(12.9020, 77.6050, "Biryani", TIME, 3.0,
+        this::search);
+
+    assertEquals(1, searches.get());
+    assertEquals(ids(search(12.9000, 77.6000, "biryani", TIME, 3.0).getRestaurants()),
+        ids(first));
+    assertEquals(ids(search(12.9020, 77.6050, "biryani", TIME, 3.0).getRestaurants()),
+        ids(second));
+    assertTrue(first.size() > 0);
+    assertEquals(1.0, meterRegistry.counter("qeats.search.cache.requests", "result", "hit")
+        .count());
+    assertEquals(0.5, meterRegistry.get("qeats.search.cache.hit.ratio").gauge().value());
+  }
+
+  @Test
+  void queriesAreNormalized() {
+    searchResultCache.search(12.9, 77.6, "  BIRYANI ", TIME, 3.0, this::search);
+    searchResultCache.search(12.9, 77.6, "biryani", TIME, 3.0, this::search);
+
+    assertEquals(1, searches.get());
+    assertEquals(1, redis.size());
+    assertTrue(redis.keySet().iterator().next()
+        .startsWith(GlobalConstants.SEARCH_CACHE_KEY_PREFIX));
+    assertTrue(redis.keySet().iterator().next().endsWith(":3.0:biryani"));
+  }
+
+  @Test
+  void radiusIsPartOfTheKey() {
+    searchResultCache.search(12.9, 77.6, "biryani", TIME, 3.0, this::search);
+    searchResultCache.search(12.9, 77.6, "biryani", TIME, 5.0, this::search);
+
+    assertEquals(2, searches.get());
+  }
+
+  @Test
+  void emptyResultsExpireSooner() {
+    assertEquals(0, searchResultCache.search(12.9, 77.6, "dosa", TIME, 3.0, this::search)
+        .size());
+    assertEquals(0, searchResultCache.search(12.9, 77.6, "dosa", TIME, 3.0, this::search)
+        .size());
+
+    assertEquals(1, searches.get());
+    verify(jedis).setex(anyString(),
+        eq(GlobalConstants.SEARCH_CACHE_NEGATIVE_EXPIRY_IN_SECONDS), eq("[]"));
+    verify(restaurantRepositoryService, never()).findRestaurantsByIds(anyList());
+  }
+
+  @Test
+  void incompleteResultsAreNotCached() {
+    SearchResultCache.Search partial = (latitude, longitude, searchFor, currentTime, radius) ->
+        new SearchResultCache.Results(
+            search(latitude, longitude, searchFor, currentTime, radius).getRestaurants(), false);
+
+    searchResultCache.search(12.9, 77.6, "biryani", TIME, 3.0, partial);
+
+    assertEquals(0, redis.size());
+  }
+
+  @Test
+  void bypassedWhenRedisIsUnavailable() {
+    when(redisConfiguration.isCacheAvailable()).thenReturn(false);
+
+    List<Restaurant> restaurants = searchResultCache.search(12.9, 77.6, "biryani", TIME, 3.0,
+        this::search);
+
+    assertEquals(ids(search(12.9, 77.6, "biryani", TIME, 3.0).getRestaurants()),
+        ids(restaurants));
+    verify(redisConfiguration, never()).getJedisPool();
+  }
+
+  private SearchResultCache.Results search(Double latitude, Double longitude, String searchFor,
+      LocalTime currentTime, Double servingRadiusInKms) {
+    searches.incrementAndGet();
+    List<Restaurant> found = restaurants.stream()
+        .filter(restaurant -> restaurant.getName().toLowerCase().contains(searchFor))
+        .filter(restaurant -> OpeningHours.isOpen(restaurant.getOpensAt(),
+            restaurant.getClosesAt(), currentTime))
+        .filter(restaurant -> GeoUtils.findDistanceInKm(latitude, longitude,
+            restaurant.getLatitude(), restaurant.getLongitude()) < servingRadiusInKms)
+        .collect(Collectors.toList());
+    return new SearchResultCache.Results(found, true);
+  }
+
+  private static List<String> ids(List<Restaurant> restaurants) {
+    return restaurants.stream().map(Restaurant::getRestaurantId).collect(Collectors.toList());
+  }
+}
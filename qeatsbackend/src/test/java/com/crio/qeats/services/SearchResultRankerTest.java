@@ -0,0 +1,115 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.dto.Restaurant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class SearchResultRankerTest {
+
+  @Test
+  void ranksBySourceThenMatchTypeKeepingSourceOrderForTies() {
+    SearchResultCache.Results results = SearchResultRanker.rank("Pizza", sources(
+        Arrays.asList(restaurant("1", "Best Pizza"), restaurant("2", "Pizza Hut"),
+            restaurant("3", "pizza"), restaurant("4", "Pizza Corner")),
+        Arrays.asList(restaurant("5", "Cafe", "Italian"), restaurant("6", "Deli", "Pizza")),
+        Arrays.asList(restaurant("7", "Diner")),
+        Arrays.asList(restaurant("8", "Bistro"))), 100);
+
+    assertEquals(Arrays.asList("3", "2", "4", "1", "6", "5", "7", "8"), ids(results));
+    assertTrue(results.isComplete());
+  }
+
+  @Test
+  void restaurantCountsOnceWithItsFirstHit() {
+    Restaurant byName = restaurant("1", "Pizza Hut");
+    Restaurant byAttributes = restaurant("1", "Pizza Hut", "Pizza");
+    SearchResultCache.Results results = SearchResultRanker.rank("pizza", sources(
+        Arrays.asList(byName, restaurant("2", "Pizza Corner")),
+        Arrays.asList(byAttributes, restaurant("3", "Deli", "Pizza")),
+        new ArrayList<>(), Arrays.asList(restaurant("2", "Pizza Corner"))), 100);
+
+    assertEquals(Arrays.asList("1", "2", "3"), ids(results));
+    assertTrue(results.getRestaurants().get(0) == byName);
+  }
+
+  @Test
+  void keepsOnlyTheBestWithinTheLimit() {
+    SearchResultCache.Results results = SearchResultRanker.rank("pizza", sources(
+        Arrays.asList(restaurant("1", "Best Pizza"), restaurant("2", "Pizza Hut"),
+            restaurant("3", "Pizza")),
+        new ArrayList<>(), new ArrayList<>(), new ArrayList<>()), 2);
+
+    assertEquals(Arrays.asList("3", "2"), ids(results));
+  }
+
+  @Test
+  void laterSourcesAreNotConsumedOnceTheTopResultsAreFound() {
+    AtomicInteger consumed = new AtomicInteger();
+    List<Supplier<List<Restaurant>>> sources = Arrays.<Supplier<List<Restaurant>>>asList(
+        () -> Arrays.asList(restaurant("1", "Pizza"), restaurant("2", "Pizza Hut")),
+        () -> {
+          consumed.incrementAndGet();
+          return Arrays.asList(restaurant("3", "Deli", "Pizza"));
+        },
+        () -> {
+          consumed.incrementAndGet();
+          return null;
+        },
+        () -> {
+          consumed.incrementAndGet();
+          return new ArrayList<>();
+        });
+
+    SearchResultCache.Results results = SearchResultRanker.rank("pizza", sources, 2);
+
+    assertEquals(Arrays.asList("1", "2"), ids(results));
+    assertEquals(0, consumed.get());
+    assertTrue(results.isComplete());
+  }
+
+  @Test
+  void missingSourceMakesResultsIncomplete() {
+    SearchResultCache.Results results = SearchResultRanker.rank("pizza", sources(
+        Arrays.asList(restaurant("1", "Pizza")), null, new ArrayList<>(),
+        Arrays.asList(restaurant("2", "Bistro"))), 100);
+
+    assertEquals(Arrays.asList("1", "2"), ids(results));
+    assertFalse(results.isComplete());
+  }
+
+  private static List<Supplier<List<Restaurant>>> sources(List<Restaurant> byName,
+      List<Restaurant> byAttributes, List<Restaurant> byItemName,
+      List<Restaurant> byItemAttributes) {
+    return Arrays.<Supplier<List<Restaurant>>>asList(() -> byName, () -> byAttributes,
+        () -> byItemName, () -> byItemAttributes);
+  }
+
+  private static Restaurant restaurant(String restaurantId, String name, String... attributes) {
+    Restaurant restaurant = new Restaurant();
+    restaurant.setRestaurantId(restaurantId);
+    restaurant.setName(name);
+    restaurant.setAttributes(Arrays.asList(attributes));
+    return restaurant;
+  }
+
+  private static List<String> ids(SearchResultCache.Results results) {
+    return results.getRestaurants().stream()
+        .map(Restaurant::getRestaurantId)
+        .collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,103 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.dto.Restaurant;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class BinaryRestaurantListCodecTest {
+
+  @Test
+  void restaurantsSurviveTheRoundTrip() throws IOException {
+    List<Restaurant> restaurants = Arrays.asList(
+        new Restaurant("10", "A2B", "Hsr Layout", "www.google.com", 20.027, 30.0, "18:00",
+            "23:00", Arrays.asList("Tamil", "South Indian")),
+        new Restaurant("11", "Café Ünïcode", null, null, null, -179.999999, null, null,
+            Collections.emptyList()),
+        new Restaurant("12", "Saravana", "Adyar", "", 12.9, 77.6, "06:00", "22:00", null));
+
+    BinaryRestaurantListCodec codec = new BinaryRestaurantListCodec(-1);
+    List<Restaurant> decoded = codec.decode(codec.encode(restaurants));
+
+    assertEquals(restaurants, decoded);
+    assertNull(decoded.get(2).getAttributes());
+  }
+
+  @Test
+  void largeValuesAreDeflatedAndSmallerThanJson() throws IOException {
+    List<Restaurant> restaurants = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      restaurants.add(new Restaurant(String.valueOf(i), "Restaurant " + i, "Bengaluru",
+          "https://images.example.com/restaurants/" + i + ".jpg", 12.9 + i / 1000.0, 77.6,
+          "10:00", "23:00", Arrays.asList("North Indian", i % 2 == 0 ? "Veg" : "Non Veg")));
+    }
+
+    byte[] plain = new BinaryRestaurantListCodec(-1).encode(restaurants);
+    BinaryRestaurantListCodec codec = new BinaryRestaurantListCodec(1024);
+    byte[] deflated = codec.encode(restaurants);
+    byte[] json = new JsonRestaurantListCodec().encode(restaurants);
+
+    assertEquals(BinaryRestaurantListCodec.FORMAT_PLAIN, plain[0]);
+    assertEquals(BinaryRestaurantListCodec.FORMAT_DEFLATED, deflated[0]);
+    assertTrue(deflated.length < plain.length / 2);
+    assertTrue(plain.length < json.length);
+    assertEquals(restaurants, codec.decode(deflated));
+  }
+
+  @Test
+  void jsonValuesAreStillRead() throws IOException {
+    List<Restaurant> restaurants = Arrays.asList(new Restaurant("10", "A2B", "Hsr Layout",
+        "www.google.com", 20.027, 30.0, "18:00", "23:00", Arrays.asList("Tamil")));
+
+    assertEquals(restaurants, new BinaryRestaurantListCodec(1024)
+        .decode(new JsonRestaurantListCodec().encode(restaurants)));
+  }
+
+  @Test
+  void singleRestaurantsCarryTheirAttributesInline() throws IOException {
+    Restaurant restaurant = new Restaurant("10", "A2B", "Hsr Layout", "www.google.com", 20.027,
+        30.0, "18:00", "23:00", Arrays.asList("Tamil", "South Indian"));
+    BinaryRestaurantListCodec codec = new BinaryRestaurantListCodec(1024);
+
+    byte[] value = codec.encodeRestaurant(restaurant);
+
+    assertEquals(BinaryRestaurantListCodec.FORMAT_RESTAURANT, value[0]);
+    assertTrue(value.length < codec.encode(Collections.singletonList(restaurant)).length);
+    assertEquals(restaurant, codec.decodeRestaurant(value));
+    // Values written as lists of one, in either format, are still read.
+    assertEquals(restaurant,
+        codec.decodeRestaurant(codec.encode(Collections.singletonList(restaurant))));
+    assertEquals(restaurant, codec.decodeRestaurant(
+        new JsonRestaurantListCodec().encode(Collections.singletonList(restaurant))));
+    assertEquals(restaurant, codec.decodeRestaurant(
+        new JsonRestaurantListCodec().encodeRestaurant(restaurant)));
+    assertThrows(IOException.class, () -> codec.decodeRestaurant(
+        codec.encode(Arrays.asList(restaurant, restaurant))));
+  }
+
+  @Test
+  void corruptValuesAreRejected() throws IOException {
+    BinaryRestaurantListCodec codec = new BinaryRestaurantListCodec(-1);
+    byte[] value = codec.encode(Arrays.asList(new Restaurant("10", "A2B", "Hsr Layout",
+        "www.google.com", 20.027, 30.0, "18:00", "23:00", Arrays.asList("Tamil"))));
+
+    assertThrows(IOException.class,
+        () -> codec.decode(Arrays.copyOf(value, value.length - 3)));
+    assertThrows(IOException.class, () -> codec.decode(new byte[] {9, 0}));
+    assertThrows(IOException.class, () -> codec.decode(new byte[0]));
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class BkTreeTest {
+
+  private static final long NO_DEADLINE = Long.MAX_VALUE / 2;
+
+  @Test
+  void distanceCountsInsertionsDeletionsAndSubstitutions() {
+    assertEquals(0, BkTree.distance("dosa", "dosa"));
+    assertEquals(1, BkTree.distance("dosai", "dosa"));
+    assertEquals(1, BkTree.distance("biriyani", "briyani"));
+    assertEquals(3, BkTree.distance("kitten", "sitting"));
+    assertEquals(4, BkTree.distance("", "idli"));
+  }
+
+  @Test
+  void findsEveryTermWithinTheDistance() {
+    Random random = new Random(7);
+    List<String> terms = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      char[] term = new char[4 + random.nextInt(5)];
+      for (int j = 0; j < term.length; j++) {
+        term[j] = (char) ('a' + random.nextInt(6));
+      }
+      terms.add(new String(term));
+    }
+    BkTree tree = BkTree.build(terms);
+
+    for (String query : Arrays.asList("abcde", "ffff", "bacdefab")) {
+      List<String> expected = terms.stream().distinct()
+          .filter(term -> BkTree.distance(query, term) <= 2)
+          .sorted()
+          .collect(Collectors.toList());
+      List<String> found = tree.search(query, 2, System.nanoTime() + NO_DEADLINE).stream()
+          .map(BkTree.Match::getTerm)
+          .sorted()
+          .collect(Collectors.toList());
+      assertEquals(expected, found);
+    }
+  }
+
+  @Test
+  void stopsAtTheDeadline() {
+    BkTree tree = BkTree.build(Arrays.asList("dosa", "idli", "vada"));
+
+    assertTrue(tree.search("dosa", 4, System.nanoTime()).isEmpty());
+    assertEquals(3, tree.size());
+  }
+}
@@ -10,7 +10,15 @@
 package com.crio.qeats.utils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import ch.hsr.geohash.GeoHash;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
 import org.junit.jupiter.api.Test;
 
 class GeoUtilsTest {
@@ -29,4 +37,184 @@ class GeoUtilsTest {
     assertEquals(3.04, distanceBetweenA2bHsrAndA2bBtm, 0.1);
   }
 
+  @Test
+  public void batchedSearchMatchesPerCallDistance() {
+    Random random = new Random(7);
+    int count = 20000;
+    double[] latitudes = new double[count];
+    double[] longitudes = new double[count];
+    for (int i = 0; i < count; i++) {
+      latitudes[i] = 12.9 + (random.nextDouble() - 0.5) * 0.5;
+      longitudes[i] = 77.6 + (random.nextDouble() - 0.5) * 0.5;
+    }
+    int[] hits = new int[count];
+
+    for (double radius : new double[] {0.5, 3.0, 5.0, 50.0}) {
+      int hitCount = GeoUtils.findIndicesWithinRadius(12.9, 77.6, latitudes, longitudes,
+          count, radius, hits);
+
+      int expected = 0;
+      for (int i = 0; i < count; i++) {
+        if (GeoUtils.findDistanceInKm(12.9, 77.6, latitudes[i], longitudes[i]) < radius) {
+          assertEquals(i, hits[expected++]);
+        }
+      }
+      assertEquals(expected, hitCount);
+    }
+  }
+
+  @Test
+  public void batchedSearchOnlyConsidersFirstCountPoints() {
+    double[] latitudes = {12.9, 12.9, 12.9};
+    double[] longitudes = {77.6, 77.6, 77.6};
+    int[] hits = new int[3];
+
+    assertEquals(2, GeoUtils.findIndicesWithinRadius(12.9, 77.6, latitudes, longitudes,
+        2, 1.0, hits));
+    assertEquals(0, hits[0]);
+    assertEquals(1, hits[1]);
+  }
+
+  @Test
+  public void batchedSearchRejectsSmallHitBuffer() {
+    double[] latitudes = {12.9, 12.9};
+    double[] longitudes = {77.6, 77.6};
+
+    assertThrows(IllegalArgumentException.class, () -> GeoUtils.findIndicesWithinRadius(
+        12.9, 77.6, latitudes, longitudes, 2, 1.0, new int[1]));
+  }
+
+  @Test
+  public void pointJustInsideTheRadiusAtTheLongitudeEdgeIsFound() {
+    double[] latitudes = {12.9};
+    double[] longitudes = {77.6 + 0.027651};
+    assertTrue(GeoUtils.findDistanceInKm(12.9, 77.6, latitudes[0], longitudes[0]) < 3.0);
+
+    assertEquals(1, GeoUtils.findIndicesWithinRadius(12.9, 77.6, latitudes, longitudes,
+        1, 3.0, new int[1]));
+  }
+
+  @Test
+  public void pointJustInsideALargeRadiusAtHighLatitudeIsFound() {
+    double[] latitudes = {70.0};
+    double[] longitudes = {40.0};
+    double distance = GeoUtils.findDistanceInKm(70.0, 0.0, 70.0, 40.0);
+
+    assertEquals(1, GeoUtils.findIndicesWithinRadius(70.0, 0.0, latitudes, longitudes,
+        1, distance + 1.0, new int[1]));
+  }
+
+  @Test
+  public void pointAcrossTheAntimeridianIsFound() {
+    double[] latitudes = {0.0, 0.0};
+    double[] longitudes = {-179.99, 179.99};
+    int[] hits = new int[2];
+
+    assertTrue(GeoUtils.findDistanceInKm(0.0, 179.99, 0.0, -179.99) < 2.226);
+
+    assertEquals(2, GeoUtils.findIndicesWithinRadius(0.0, 179.99, latitudes, longitudes,
+        2, 2.226, hits));
+    assertEquals(2, GeoUtils.findIndicesWithinRadius(0.0, -179.99, latitudes, longitudes,
+        2, 2.226, hits));
+  }
+
+  @Test
+  public void batchedSearchMatchesPerCallDistanceAtHighLatitudes() {
+    Random random = new Random(11);
+    int count = 20000;
+    double[] latitudes = new double[count];
+    double[] longitudes = new double[count];
+    for (int i = 0; i < count; i++) {
+      latitudes[i] = 50.0 + random.nextDouble() * 40.0;
+      longitudes[i] = (random.nextDouble() - 0.5) * 360.0;
+    }
+    int[] hits = new int[count];
+
+    for (double latitude : new double[] {60.0, 75.0, 89.5}) {
+      for (double radius : new double[] {5.0, 200.0, 1500.0, 4000.0}) {
+        int hitCount = GeoUtils.findIndicesWithinRadius(latitude, 170.0, latitudes, longitudes,
+            count, radius, hits);
+
+        int expected = 0;
+        for (int i = 0; i < count; i++) {
+          if (GeoUtils.findDistanceInKm(latitude, 170.0, latitudes[i], longitudes[i]) < radius) {
+            assertEquals(i, hits[expected++]);
+          }
+        }
+        assertEquals(expected, hitCount, latitude + " " + radius);
+      }
+    }
+  }
+
+  @Test
+  public void boundingBoxHoldsTheWholeCircle() {
+    for (double latitude : new double[] {0.0, 12.9, 45.0, -60.0, 80.0}) {
+      for (double radius : new double[] {0.5, 3.0, 50.0}) {
+        double latitudeSpan = GeoUtils.findLatitudeSpanInDegrees(radius);
+        double longitudeSpan = GeoUtils.findLongitudeSpanInDegrees(latitude, radius);
+        // Points just inside the circle, all the way round.
+        double angularRadius = radius * (1 - 1e-9) / 6371;
+        double latitudeInRadians = Math.toRadians(latitude);
+        for (int bearing = 0; bearing < 3600; bearing++) {
+          double theta = Math.toRadians(bearing / 10.0);
+          double pointLatitude = Math.asin(Math.sin(latitudeInRadians) * Math.cos(angularRadius)
+              + Math.cos(latitudeInRadians) * Math.sin(angularRadius) * Math.cos(theta));
+          double deltaLongitude = Math.atan2(
+              Math.sin(theta) * Math.sin(angularRadius) * Math.cos(latitudeInRadians),
+              Math.cos(angularRadius) - Math.sin(latitudeInRadians) * Math.sin(pointLatitude));
+          assertTrue(Math.abs(Math.toDegrees(pointLatitude) - latitude) <= latitudeSpan);
+          assertTrue(Math.abs(Math.toDegrees(deltaLongitude)) <= longitudeSpan);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void coveringCellsHoldEveryPointWithinTheRadius() {
+    Random random = new Random(11);
+    double[][] centers = {{12.9, 77.6}, {0.0, 179.99}, {-33.9, -0.01}, {64.1, -21.9}};
+    for (double[] center : centers) {
+      for (double radius : new double[] {1.0, 5.0, 12.0}) {
+        Set<String> cells = new HashSet<>();
+        for (GeoHash geoHash : GeoUtils.findCoveringGeoHashes(center[0], center[1], radius, 5)) {
+          assertTrue(cells.add(geoHash.toBase32()));
+        }
+        for (int i = 0; i < 2000; i++) {
+          double latitude = center[0] + (random.nextDouble() - 0.5) * 0.3;
+          double longitude = center[1] + (random.nextDouble() - 0.5) * 0.6;
+          longitude = longitude >= 180 ? longitude - 360 : longitude;
+          if (GeoUtils.findDistanceInKm(center[0], center[1], latitude, longitude) < radius) {
+            assertTrue(cells.contains(
+                GeoHash.geoHashStringWithCharacterPrecision(latitude, longitude, 5)));
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void smallRadiusOnlyNeedsTheCellsItTouches() {
+    GeoHash cell = GeoHash.withCharacterPrecision(12.9, 77.6, 5);
+    Set<GeoHash> neighbourhood = new HashSet<>(Arrays.asList(cell.getAdjacent()));
+    neighbourhood.add(cell);
+
+    List<GeoHash> covering = GeoUtils.findCoveringGeoHashes(12.9, 77.6, 2.0, 5);
+    assertTrue(covering.contains(cell));
+    assertTrue(neighbourhood.containsAll(covering));
+    assertTrue(covering.size() < neighbourhood.size());
+    assertEquals(neighbourhood,
+        new HashSet<>(GeoUtils.findCoveringGeoHashes(12.9, 77.6, 4.0, 5)));
+  }
+
+  @Test
+  public void cellJustInsideTheRadiusAtTheLongitudeEdgeIsCovered() {
+    // 77.6953125 is the western edge of a column of precision 5 cells.
+    double longitude = 77.6953125 - 0.027648;
+    double[] edge = {12.9, longitude + 0.02765};
+    assertTrue(GeoUtils.findDistanceInKm(12.9, longitude, edge[0], edge[1]) < 3.0);
+
+    assertTrue(GeoUtils.findCoveringGeoHashes(12.9, longitude, 3.0, 5)
+        .contains(GeoHash.withCharacterPrecision(edge[0], edge[1], 5)));
+  }
+
 }
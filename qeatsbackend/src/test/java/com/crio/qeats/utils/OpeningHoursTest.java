@@ -0,0 +1,51 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+
+class OpeningHoursTest {
+
+  @Test
+  public void parsesMinuteOfDay() {
+    assertEquals(0, OpeningHours.parseMinuteOfDay("00:00"));
+    assertEquals(18 * 60 + 30, OpeningHours.parseMinuteOfDay("18:30"));
+    assertEquals(OpeningHours.UNKNOWN, OpeningHours.parseMinuteOfDay("6pm"));
+    assertEquals(OpeningHours.UNKNOWN, OpeningHours.parseMinuteOfDay(null));
+    assertEquals(OpeningHours.UNKNOWN, OpeningHours.parseMinuteOfDay("24:00"));
+    assertEquals(OpeningHours.UNKNOWN, OpeningHours.parseMinuteOfDay("1a:00"));
+    assertEquals(18 * 60 + 30, OpeningHours.parseMinuteOfDay("18:30:59.999"));
+  }
+
+  @Test
+  public void boundariesAreExclusive() {
+    assertFalse(OpeningHours.isOpen("18:00", "23:00", LocalTime.of(18, 0)));
+    assertTrue(OpeningHours.isOpen("18:00", "23:00", LocalTime.of(18, 0, 30)));
+    assertTrue(OpeningHours.isOpen("18:00", "23:00", LocalTime.of(22, 59)));
+    assertFalse(OpeningHours.isOpen("18:00", "23:00", LocalTime.of(23, 0)));
+  }
+
+  @Test
+  public void overnightHoursWrapPastMidnight() {
+    assertTrue(OpeningHours.isOpen("20:00", "02:00", LocalTime.of(23, 30)));
+    assertTrue(OpeningHours.isOpen("20:00", "02:00", LocalTime.of(0, 15)));
+    assertTrue(OpeningHours.isOpen("20:00", "02:00", LocalTime.of(1, 59)));
+    assertFalse(OpeningHours.isOpen("20:00", "02:00", LocalTime.of(2, 0)));
+    assertFalse(OpeningHours.isOpen("20:00", "02:00", LocalTime.of(12, 0)));
+  }
+
+  @Test
+  public void malformedHoursAreClosed() {
+    assertFalse(OpeningHours.isOpen("18:00", null, LocalTime.of(19, 0)));
+    assertFalse(OpeningHours.isOpen("late", "23:00", LocalTime.of(19, 0)));
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.common.base.Ticker;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class SegmentedLruCacheTest {
+
+  private long nanos;
+  private final Ticker ticker = new Ticker() {
+    @Override
+    public long read() {
+      return nanos;
+    }
+  };
+
+  @Test
+  void entriesReadAgainSurviveAScanOfNewEntries() {
+    SegmentedLruCache<String, String> cache = cache(10);
+    cache.put("hot", "hot");
+    assertEquals("hot", cache.getIfPresent("hot"));
+
+    for (int i = 0; i < 100; i++) {
+      cache.put("scan" + i, "scan");
+    }
+
+    assertEquals("hot", cache.getIfPresent("hot"));
+    assertEquals(10, cache.size());
+    assertEquals(91, cache.evictionCount());
+  }
+
+  @Test
+  void leastRecentlyUsedProbationaryEntryIsEvictedFirst() {
+    SegmentedLruCache<String, String> cache = cache(3);
+    cache.put("a", "a");
+    cache.put("b", "b");
+    cache.put("c", "c");
+    assertEquals("a", cache.getIfPresent("a"));
+
+    cache.put("d", "d");
+
+    assertNull(cache.getIfPresent("b"));
+    assertEquals("a", cache.getIfPresent("a"));
+    assertEquals("c", cache.getIfPresent("c"));
+    assertEquals("d", cache.getIfPresent("d"));
+  }
+
+  @Test
+  void protectedSegmentOverflowIsDemotedToProbation() {
+    SegmentedLruCache<String, String> cache = cache(5);
+    for (String key : new String[] {"a", "b", "c", "d", "e"}) {
+      cache.put(key, key);
+      cache.getIfPresent(key);
+    }
+
+    // Only four fit the protected segment, so "a" went back to probation and goes first.
+    cache.put("f", "f");
+
+    assertNull(cache.getIfPresent("a"));
+    assertEquals("b", cache.getIfPresent("b"));
+    assertEquals(5, cache.size());
+  }
+
+  @Test
+  void weightBoundsTheCache() {
+    SegmentedLruCache<String, String> cache =
+        new SegmentedLruCache<>(10, String::length, 30, TimeUnit.SECONDS, ticker);
+    cache.put("a", "aaaa");
+    cache.put("b", "bbbb");
+    cache.put("c", "cccc");
+
+    assertEquals(2, cache.size());
+    assertEquals(8, cache.weight());
+    assertNull(cache.getIfPresent("a"));
+  }
+
+  @Test
+  void entriesExpireAfterWrite() {
+    SegmentedLruCache<String, String> cache = cache(10);
+    cache.put("a", "a");
+    nanos += TimeUnit.SECONDS.toNanos(29);
+    assertEquals("a", cache.getIfPresent("a"));
+
+    nanos += TimeUnit.SECONDS.toNanos(1);
+
+    assertNull(cache.getIfPresent("a"));
+    assertEquals(0, cache.size());
+    assertEquals(0.5, cache.hitRate());
+  }
+
+  @Test
+  void putIfAbsentKeepsALiveEntry() {
+    SegmentedLruCache<String, String> cache = cache(10);
+    cache.put("a", "fresh");
+
+    assertFalse(cache.putIfAbsent("a", "stale"));
+    assertEquals("fresh", cache.getIfPresent("a"));
+
+    nanos += TimeUnit.SECONDS.toNanos(30);
+    assertTrue(cache.putIfAbsent("a", "stale"));
+    assertEquals("stale", cache.getIfPresent("a"));
+  }
+
+  @Test
+  void zeroWeightKeepsNothing() {
+    SegmentedLruCache<String, String> cache = cache(0);
+    cache.put("a", "a");
+
+    assertNull(cache.getIfPresent("a"));
+    assertEquals(0, cache.size());
+  }
+
+  private SegmentedLruCache<String, String> cache(long maximumSize) {
+    return new SegmentedLruCache<>(maximumSize, value -> 1, 30, TimeUnit.SECONDS, ticker);
+  }
+}
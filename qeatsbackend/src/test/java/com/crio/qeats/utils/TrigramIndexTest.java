@@ -0,0 +1,72 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class TrigramIndexTest {
+
+  @Test
+  public void findsSubstringsIgnoringCase() {
+    TrigramIndex index = TrigramIndex.build(Arrays.asList(
+        Collections.singletonList("A2B Adyar Ananda Bhavan"),
+        Arrays.asList("Tamil", "South Indian"),
+        Collections.singletonList("Banana Leaf"),
+        null));
+
+    assertArrayEquals(new int[] {0}, index.findContaining("ananda"));
+    assertArrayEquals(new int[] {0, 1, 2}, index.findContaining("AN"));
+    assertArrayEquals(new int[] {1}, index.findContaining("south ind"));
+    assertArrayEquals(new int[] {2}, index.findContaining("anana"));
+    assertArrayEquals(new int[0], index.findContaining("nanan"));
+    assertArrayEquals(new int[0], index.findContaining("pizza"));
+  }
+
+  @Test
+  public void matchesFullScan() {
+    Random random = new Random(5);
+    String alphabet = "abcde ";
+    List<List<String>> documents = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      documents.add(Arrays.asList(randomText(random, alphabet, 12), randomText(random, alphabet,
+          6)));
+    }
+    TrigramIndex index = TrigramIndex.build(documents);
+
+    for (int i = 0; i < 200; i++) {
+      String query = randomText(random, alphabet, 1 + random.nextInt(5));
+      int[] expected = new int[documents.size()];
+      int count = 0;
+      for (int ordinal = 0; ordinal < documents.size(); ordinal++) {
+        for (String text : documents.get(ordinal)) {
+          if (text.toLowerCase(Locale.ROOT).contains(query.toLowerCase(Locale.ROOT))) {
+            expected[count++] = ordinal;
+            break;
+          }
+        }
+      }
+      assertArrayEquals(Arrays.copyOf(expected, count), index.findContaining(query));
+    }
+  }
+
+  private static String randomText(Random random, String alphabet, int length) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < length; i++) {
+      char c = alphabet.charAt(random.nextInt(alphabet.length()));
+      text.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+    }
+    return text.toString();
+  }
+}